@@ -0,0 +1,126 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.LazyBSONCallback;
+import org.bson.LazyBSONObject;
+import org.bson.NewBSONDecoder;
+import org.bson.io.ByteBufferOutputBuffer;
+import org.bson.io.PoolOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of single documents, with no database involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BSONBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private DBObject document;
+    private byte[] bytes;
+    private LazyBSONObject lazy;
+    private String lastKey;
+
+    private final BasicBSONEncoder encoder = new BasicBSONEncoder();
+    private final BasicBSONDecoder decoder = new BasicBSONDecoder();
+    private final NewBSONDecoder newDecoder = new NewBSONDecoder();
+    private final DBEncoder defaultDBEncoder = DefaultDBEncoder.FACTORY.create();
+    private final DBEncoder byteBufferDBEncoder = ByteBufferDBEncoder.FACTORY.create();
+    private final ByteBufferOutputBuffer byteBufferMessageBuffer = new ByteBufferOutputBuffer();
+    @SuppressWarnings("deprecation")
+    private final PoolOutputBuffer messageBuffer = new PoolOutputBuffer();
+
+    @Setup
+    public void setUp() {
+        document = BenchmarkDocuments.create(size);
+        bytes = encoder.encode(document);
+        lazy = new LazyBSONObject(bytes, new LazyBSONCallback());
+        lastKey = null;
+        for (String key : document.keySet()) {
+            lastKey = key;
+        }
+    }
+
+    @Benchmark
+    public byte[] basicBSONEncoder() {
+        return encoder.encode(document);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public int defaultDBEncoderToMessageBuffer() {
+        messageBuffer.reset();
+        return defaultDBEncoder.writeObject(messageBuffer, document);
+    }
+
+    @Benchmark
+    public int byteBufferDBEncoderToMessageBuffer() {
+        byteBufferMessageBuffer.reset();
+        return byteBufferDBEncoder.writeObject(byteBufferMessageBuffer, document);
+    }
+
+    @Benchmark
+    public BSONObject basicBSONDecoder() {
+        return decoder.readObject(bytes);
+    }
+
+    @Benchmark
+    public BSONObject newBSONDecoder() {
+        return newDecoder.readObject(bytes);
+    }
+
+    @Benchmark
+    public BSONObject lazyBSONDecode() {
+        return new LazyBSONObject(bytes, new LazyBSONCallback());
+    }
+
+    @Benchmark
+    public void lazyBSONFieldAccess(final Blackhole blackhole) {
+        // the last field is the worst case, as lookups walk the document from the start
+        blackhole.consume(lastKey == null ? null : lazy.get(lastKey));
+    }
+
+    @Benchmark
+    public void lazyBSONIterateAll(final Blackhole blackhole) {
+        for (String key : lazy.keySet()) {
+            blackhole.consume(lazy.get(key));
+        }
+    }
+}
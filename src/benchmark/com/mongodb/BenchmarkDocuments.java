@@ -0,0 +1,112 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BasicBSONEncoder;
+import org.bson.types.BasicBSONList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * The small, medium and large documents from {@code PerformanceTest}, and canned wire bytes built from them.
+ */
+final class BenchmarkDocuments {
+
+    static DBObject create(final String size) {
+        if (size.equals("small")) {
+            return new BasicDBObject();
+        } else if (size.equals("medium")) {
+            BasicBSONList a = new BasicBSONList();
+            a.put("0", "test");
+            a.put("1", "benchmark");
+            return BasicDBObjectBuilder.start()
+                                       .add("integer", 5)
+                                       .add("number", 5.05)
+                                       .add("boolean", false)
+                                       .add("array", a)
+                                       .get();
+        } else if (size.equals("large")) {
+            BasicBSONList harvest = new BasicBSONList();
+            for (int i = 0; i < 20; i++) {
+                harvest.put(i * 14 + 0, "10gen");
+                harvest.put(i * 14 + 1, "web");
+                harvest.put(i * 14 + 2, "open");
+                harvest.put(i * 14 + 3, "source");
+                harvest.put(i * 14 + 4, "application");
+                harvest.put(i * 14 + 5, "paas");
+                harvest.put(i * 14 + 6, "platform-as-a-service");
+                harvest.put(i * 14 + 7, "technology");
+                harvest.put(i * 14 + 8, "helps");
+                harvest.put(i * 14 + 9, "developers");
+                harvest.put(i * 14 + 10, "focus");
+                harvest.put(i * 14 + 11, "building");
+                harvest.put(i * 14 + 12, "mongodb");
+                harvest.put(i * 14 + 13, "mongo");
+            }
+            return BasicDBObjectBuilder.start()
+                                       .add("base_url", "http://www.example.com/test-me")
+                                       .add("total_word_count", 6743)
+                                       .add("access_time", new Date(0))
+                                       .add("meta_tags", BasicDBObjectBuilder.start()
+                                                                             .add("description", "i am a long description string")
+                                                                             .add("author", "Holly Man")
+                                                                             .add("dynamically_created_meta_tag", "who know\n what")
+                                                                             .get())
+                                       .add("page_structure", BasicDBObjectBuilder.start()
+                                                                                  .add("counted_tags", 3450)
+                                                                                  .add("no_of_js_attached", 10)
+                                                                                  .add("no_of_images", 6)
+                                                                                  .get())
+                                       .add("harvested_words", harvest)
+                                       .get();
+        }
+        throw new IllegalArgumentException("unknown document size: " + size);
+    }
+
+    /**
+     * @return an OP_REPLY message holding {@code count} copies of the document
+     */
+    static byte[] createReply(final DBObject document, final int count) throws IOException {
+        byte[] doc = new BasicBSONEncoder().encode(document);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, Response.HEADER_LENGTH + doc.length * count);
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);
+        writeInt(bytes, 1);  // OP_REPLY
+        writeInt(bytes, 0);  // flags
+        writeInt(bytes, 0);  // cursor id
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);  // starting from
+        writeInt(bytes, count);
+        for (int i = 0; i < count; i++) {
+            bytes.write(doc);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final int x) {
+        out.write(x);
+        out.write(x >> 8);
+        out.write(x >> 16);
+        out.write(x >> 24);
+    }
+
+    private BenchmarkDocuments() {
+    }
+}
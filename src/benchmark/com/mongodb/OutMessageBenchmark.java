@@ -0,0 +1,108 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building wire messages, including writing them out to a stream that discards the bytes.  The Mongo instance is
+ * never connected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OutMessageBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private Mongo mongo;
+    private DBCollection collection;
+    private DBObject document;
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws UnknownHostException {
+        mongo = new MongoClient();
+        collection = mongo.getDB("benchmark").getCollection(size);
+        document = BenchmarkDocuments.create(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongo.close();
+    }
+
+    @Benchmark
+    public int insert() throws IOException {
+        OutMessage om = OutMessage.insert(collection, DefaultDBEncoder.FACTORY.create(), WriteConcern.ACKNOWLEDGED);
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                om.putObject(document);
+            }
+            om.prepare();
+            om.pipe(NULL_OUTPUT);
+            return om.size();
+        } finally {
+            om.doneWithMessage();
+        }
+    }
+
+    @Benchmark
+    public int query() throws IOException {
+        OutMessage om = OutMessage.query(collection, 0, 0, batchSize, document, null, ReadPreference.primary(),
+                                         DefaultDBEncoder.FACTORY.create());
+        try {
+            om.prepare();
+            om.pipe(NULL_OUTPUT);
+            return om.size();
+        } finally {
+            om.doneWithMessage();
+        }
+    }
+}
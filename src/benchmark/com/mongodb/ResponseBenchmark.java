@@ -0,0 +1,71 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing canned OP_REPLY messages the way {@link DBPort} does, with a reusable read buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    @Param({"1", "100"})
+    public int numDocuments;
+
+    @Param({"default", "lazy"})
+    public String decoder;
+
+    private byte[] reply;
+    private DBDecoder dbDecoder;
+    private ServerAddress address;
+    private final Response.ReadBuffer readBuffer = new Response.ReadBuffer();
+
+    @Setup
+    public void setUp() throws IOException {
+        address = new ServerAddress();
+        reply = BenchmarkDocuments.createReply(BenchmarkDocuments.create(size), numDocuments);
+        dbDecoder = decoder.equals("lazy") ? LazyDBDecoder.FACTORY.create() : DefaultDBDecoder.FACTORY.create();
+    }
+
+    @Benchmark
+    public Response parse() throws IOException {
+        return new Response(address, null, new ByteArrayInputStream(reply), dbDecoder, readBuffer);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares checkout and return of {@link SimplePool} and {@link ConcurrentPool} with many more threads than pool
+ * members, which is how DBPortPool is used by busy applications.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}, optionally adding JMH options such as
+ * {@code -Djmh.args="PoolBenchmark -t 200"}.
+ * </p>
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(200)
+public class PoolBenchmark {
+
+    @Param({"simple", "concurrent"})
+    public String pool;
+
+    @Param({"10", "100"})
+    public int connectionsPerHost;
+
+    private Checkout<Object> checkout;
+
+    @Setup
+    public void setUp() {
+        if (pool.equals("simple")) {
+            final SimplePool<Object> simplePool = new SimplePool<Object>("benchmark", connectionsPerHost) {
+                @Override
+                protected Object createNew() {
+                    return new Object();
+                }
+            };
+            checkout = new Checkout<Object>() {
+                public Object get() throws InterruptedException {
+                    return simplePool.get();
+                }
+
+                public void done(final Object o) {
+                    simplePool.done(o);
+                }
+            };
+        } else {
+            final ConcurrentPool<Object> concurrentPool = new ConcurrentPool<Object>("benchmark", connectionsPerHost) {
+                @Override
+                protected Object createNew() {
+                    return new Object();
+                }
+            };
+            checkout = new Checkout<Object>() {
+                public Object get() throws InterruptedException {
+                    return concurrentPool.get();
+                }
+
+                public void done(final Object o) {
+                    concurrentPool.done(o);
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public void getAndDone(final Blackhole blackhole) throws InterruptedException {
+        Object o = checkout.get();
+        blackhole.consume(o);
+        checkout.done(o);
+    }
+
+    interface Checkout<T> {
+        T get() throws InterruptedException;
+
+        void done(T t);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+/**
+ * The {@code Future} handed out by the asynchronous operations.  It is completed exactly once by the driver, at which
+ * point the optional callback is invoked on the completing thread.  Operations can not be cancelled once sent.
+ */
+class AsyncResult<T> implements Future<T> {
+
+    AsyncResult( ResultCallback<T> callback ){
+        _callback = callback;
+    }
+
+    /**
+     * @return true if this call completed the result, false if it was already complete
+     */
+    boolean setResult( T result ){
+        return complete( result , null );
+    }
+
+    /**
+     * @return true if this call completed the result, false if it was already complete
+     */
+    boolean setError( Throwable t ){
+        return complete( null , t );
+    }
+
+    private boolean complete( T result , Throwable t ){
+        synchronized ( this ){
+            if ( isDone() )
+                return false;
+            _result = result;
+            _error = t;
+            _done.countDown();
+        }
+
+        if ( _callback != null ){
+            try {
+                _callback.onResult( result , t );
+            }
+            catch ( RuntimeException e ){
+                Bytes.LOGGER.log( Level.WARNING , "exception thrown from callback" , e );
+            }
+        }
+        return true;
+    }
+
+    public boolean cancel( boolean mayInterruptIfRunning ){
+        return false;
+    }
+
+    public boolean isCancelled(){
+        return false;
+    }
+
+    public boolean isDone(){
+        return _done.getCount() == 0;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        _done.await();
+        return getResult();
+    }
+
+    public T get( long timeout , TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException {
+        if ( ! _done.await( timeout , unit ) )
+            throw new TimeoutException();
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if ( _error != null )
+            throw new ExecutionException( _error );
+        return _result;
+    }
+
+    private final ResultCallback<T> _callback;
+    private final CountDownLatch _done = new CountDownLatch( 1 );
+    private volatile T _result;
+    private volatile Throwable _error;
+}
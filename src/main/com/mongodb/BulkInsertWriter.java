@@ -0,0 +1,411 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import com.mongodb.util.BSONWriterCallback;
+import com.mongodb.util.JSONParseException;
+import com.mongodb.util.JSONStreamParser;
+import org.bson.io.ByteBufferOutputBuffer;
+import org.bson.types.ObjectId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Inserts a stream of documents without holding them all in memory.
+ * <p>
+ * Each document is encoded straight into the current insert message, which is handed to a background thread once
+ * it reaches {@link #maxBatchBytes(int)} bytes or {@link #maxBatchSize(int)} documents.  At most
+ * {@link #maxPendingBatches(int)} batches wait to be sent; once that many are queued, {@link #insert(DBObject)}
+ * blocks until the background threads catch up.
+ * </p>
+ * <p>
+ * If a batch fails, the error is thrown from the next call to {@code insert}, {@code flush} or {@code close}.
+ * Unless the write concern continues on error, no further batches are sent, and documents in batches that were
+ * queued after the failure are not inserted.  With {@link WriteConcern#continueOnErrorForInsert(boolean)}, every
+ * batch is still sent, and the first error is thrown once they have been.
+ * </p>
+ * <p>
+ * Batches are sent by one thread, and so in order, unless {@link #parallelism(int)} is raised.  Parallel batches
+ * are sent over that many pooled connections at once, in no particular order.
+ * </p>
+ * <p>
+ * A writer is meant to be used by a single thread, and must be closed to send the last batch.
+ * </p>
+ * <pre>
+ * BulkInsertWriter writer = collection.bulkInsertWriter( WriteConcern.ACKNOWLEDGED );
+ * try {
+ *     writer.insertAll( documents );
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ *
+ * @see DBCollection#bulkInsertWriter(WriteConcern)
+ * @since 2.12
+ */
+public class BulkInsertWriter implements Closeable {
+
+    BulkInsertWriter( DBCollection collection , WriteConcern concern , DBEncoder encoder ){
+        if ( concern == null )
+            throw new IllegalArgumentException( "Write concern can not be null" );
+
+        _collection = collection;
+        _concern = concern;
+        _encoder = encoder == null ? DefaultDBEncoder.FACTORY.create() : encoder;
+        // limit for batch insert is 4 x maxbson on server, use 2 x to be safe
+        _maxBatchBytes = 2 * collection.getDB().getMongo().getMaxBsonObjectSize();
+    }
+
+    /**
+     * Sets the number of bytes after which a batch is sent.  The default, and the maximum, is twice the server's
+     * maximum document size.
+     * @param maxBatchBytes the maximum size of a batch, in bytes
+     * @return this
+     * @throws IllegalStateException if documents have already been inserted
+     */
+    public BulkInsertWriter maxBatchBytes( int maxBatchBytes ){
+        _checkNotStarted();
+        if ( maxBatchBytes <= 0 )
+            throw new IllegalArgumentException( "maxBatchBytes must be > 0" );
+        _maxBatchBytes = Math.min( maxBatchBytes , 2 * _collection.getDB().getMongo().getMaxBsonObjectSize() );
+        return this;
+    }
+
+    /**
+     * Sets the number of documents after which a batch is sent.  The default is 1000.
+     * @param maxBatchSize the maximum number of documents in a batch
+     * @return this
+     * @throws IllegalStateException if documents have already been inserted
+     */
+    public BulkInsertWriter maxBatchSize( int maxBatchSize ){
+        _checkNotStarted();
+        if ( maxBatchSize <= 0 )
+            throw new IllegalArgumentException( "maxBatchSize must be > 0" );
+        _maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of full batches that may wait to be sent before {@link #insert(DBObject)} blocks.  The default
+     * is 4.
+     * @param maxPendingBatches the maximum number of queued batches
+     * @return this
+     * @throws IllegalStateException if documents have already been inserted
+     */
+    public BulkInsertWriter maxPendingBatches( int maxPendingBatches ){
+        _checkNotStarted();
+        if ( maxPendingBatches <= 0 )
+            throw new IllegalArgumentException( "maxPendingBatches must be > 0" );
+        _maxPendingBatches = maxPendingBatches;
+        return this;
+    }
+
+    /**
+     * Sets the number of batches that are sent at once, each on its own pooled connection.  The default is 1.
+     * Since parallel batches are not applied in order, this requires a write concern that continues on error.
+     * @param parallelism the number of batches to send concurrently
+     * @return this
+     * @throws IllegalStateException if documents have already been inserted
+     * @throws IllegalArgumentException if parallelism is greater than 1 and the write concern does not continue on
+     *                                  error
+     */
+    public BulkInsertWriter parallelism( int parallelism ){
+        _checkNotStarted();
+        if ( parallelism <= 0 )
+            throw new IllegalArgumentException( "parallelism must be > 0" );
+        if ( parallelism > 1 && ! _concern.getContinueOnErrorForInsert() )
+            throw new IllegalArgumentException( "parallel batches are unordered, so the write concern must continue on error" );
+        _parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Adds a document to the current batch.  If the document doesn't have an _id, one will be added.
+     * @param o the document to insert
+     * @throws MongoException if an earlier batch failed, and the write concern does not continue on error
+     * @throws MongoInterruptedException if interrupted while waiting for room in the queue
+     */
+    public void insert( DBObject o ){
+        _checkOpen();
+        if ( ! _concern.getContinueOnErrorForInsert() )
+            _checkError();
+
+        _collection.apply( o );
+        _collection._checkObject( o , false , false );
+        Object id = o.get( "_id" );
+        if ( id instanceof ObjectId ){
+            ((ObjectId) id).notNew();
+        }
+
+        if ( _current == null )
+            _current = OutMessage.insert( _collection , _encoder , _concern );
+        _current.putObject( o );
+        _added();
+    }
+
+    /**
+     * Inserts every document in a stream of JSON, which may hold documents separated by whitespace, one per line
+     * as mongoexport writes them, or a single array of documents.  Each document is encoded straight to BSON and
+     * copied into the current batch, without building a {@code DBObject}.  Extended JSON types are converted as
+     * {@link BSONWriterCallback} describes, and an _id is added to documents without one.  As with lazy documents,
+     * field names are not checked.
+     * <p>
+     * Documents before a malformed one are still inserted.  The reader is not closed.
+     * </p>
+     * @param in the JSON to read
+     * @return the number of documents read
+     * @throws IOException if the reader fails
+     * @throws JSONParseException if the input is not valid JSON
+     * @throws IllegalArgumentException if a value in the stream is not a document
+     * @throws MongoException if an earlier batch failed, and the write concern does not continue on error
+     * @see DBCollection#importJSON(Reader, WriteConcern, int)
+     */
+    public long insertJSON( Reader in ) throws IOException {
+        _checkOpen();
+
+        ByteBufferOutputBuffer document = new ByteBufferOutputBuffer();
+        JSONStreamParser parser = new JSONStreamParser( in , new BSONWriterCallback( document , true ) );
+        long n = 0;
+        while ( parser.hasNext() ){
+            document.reset();
+            parser.next();
+            if ( document.size() == 0 )
+                throw new IllegalArgumentException( "can only insert documents" );
+
+            if ( ! _concern.getContinueOnErrorForInsert() )
+                _checkError();
+            if ( _current == null )
+                _current = OutMessage.insert( _collection , _encoder , _concern );
+            _current.putEncoded( document );
+            _added();
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Inserts every remaining document from the iterator.
+     * @param documents the documents to insert
+     * @throws MongoException if a batch failed
+     */
+    public void insertAll( Iterator<? extends DBObject> documents ){
+        while ( documents.hasNext() )
+            insert( documents.next() );
+    }
+
+    /**
+     * Sends the current batch, even if it is not full, and waits until every batch has been sent.
+     * @throws MongoException if a batch failed
+     */
+    public void flush(){
+        _checkOpen();
+        _sendCurrent();
+        _awaitSent();
+        _checkError();
+    }
+
+    /**
+     * Flushes the remaining documents and stops the background threads.
+     * @throws MongoException if a batch failed
+     */
+    public void close(){
+        if ( _closed )
+            return;
+        try {
+            _sendCurrent();
+            _awaitSent();
+        }
+        finally {
+            _closed = true;
+            if ( _flushers != null ){
+                for ( Thread t : _flushers )
+                    t.interrupt();
+            }
+            _discardQueued();
+        }
+        _checkError();
+    }
+
+    /**
+     * @return the number of documents in batches that have been sent successfully
+     */
+    public long getNumInserted(){
+        return _numInserted.get();
+    }
+
+    /**
+     * @return the result of the batch that completed last, or null if none has been sent
+     */
+    public WriteResult getLastResult(){
+        return _lastResult;
+    }
+
+    private void _added(){
+        _currentSize++;
+        if ( _current.size() >= _maxBatchBytes || _currentSize >= _maxBatchSize )
+            _sendCurrent();
+    }
+
+    private void _sendCurrent(){
+        if ( _current == null )
+            return;
+
+        Batch batch = new Batch( _current , _currentSize );
+        _current = null;
+        _currentSize = 0;
+
+        if ( _queue == null )
+            _start();
+
+        synchronized ( this ){
+            _pending++;
+        }
+        try {
+            _queue.put( batch );
+        }
+        catch ( InterruptedException e ){
+            batch._message.doneWithMessage();
+            _batchDone();
+            throw new MongoInterruptedException( e );
+        }
+    }
+
+    private void _start(){
+        _queue = new ArrayBlockingQueue<Batch>( Math.max( _maxPendingBatches , _parallelism ) );
+        _flushers = new Thread[ _parallelism ];
+        for ( int i = 0; i < _flushers.length; i++ ){
+            _flushers[i] = new Thread( new Flusher() , "BulkInsertWriter-flusher-" + i + ":" + _collection.getFullName() );
+            _flushers[i].setDaemon( true );
+            _flushers[i].start();
+        }
+    }
+
+    private synchronized void _awaitSent(){
+        boolean interrupted = false;
+        while ( _pending > 0 ){
+            try {
+                wait();
+            }
+            catch ( InterruptedException e ){
+                interrupted = true;
+            }
+        }
+        if ( interrupted ){
+            Thread.currentThread().interrupt();
+            throw new MongoInterruptedException( new InterruptedException( "interrupted waiting for batches to be sent" ) );
+        }
+    }
+
+    private synchronized void _batchDone(){
+        _pending--;
+        notifyAll();
+    }
+
+    private void _discardQueued(){
+        if ( _queue == null )
+            return;
+        Batch batch;
+        while ( ( batch = _queue.poll() ) != null ){
+            batch._message.doneWithMessage();
+            _batchDone();
+        }
+    }
+
+    private void _checkNotStarted(){
+        if ( _current != null || _queue != null )
+            throw new IllegalStateException( "can't change settings after inserting documents" );
+    }
+
+    private void _checkOpen(){
+        if ( _closed )
+            throw new IllegalStateException( "writer is closed" );
+    }
+
+    private void _checkError(){
+        RuntimeException e = _error.get();
+        if ( e != null )
+            throw e;
+    }
+
+    class Flusher implements Runnable {
+        public void run(){
+            while ( true ){
+                Batch batch;
+                try {
+                    batch = _queue.take();
+                }
+                catch ( InterruptedException e ){
+                    return;
+                }
+
+                try {
+                    if ( _error.get() == null || _concern.getContinueOnErrorForInsert() ){
+                        _lastResult = _collection.__insertBatch( batch._message , _concern );
+                        _numInserted.addAndGet( batch._size );
+                    }
+                    else {
+                        batch._message.doneWithMessage();
+                    }
+                }
+                catch ( RuntimeException e ){
+                    _error.compareAndSet( null , e );
+                }
+                finally {
+                    _batchDone();
+                }
+            }
+        }
+    }
+
+    static class Batch {
+        Batch( OutMessage message , int size ){
+            _message = message;
+            _size = size;
+        }
+
+        final OutMessage _message;
+        final int _size;
+    }
+
+    final DBCollection _collection;
+    final WriteConcern _concern;
+    final DBEncoder _encoder;
+
+    private int _maxBatchBytes;
+    private int _maxBatchSize = 1000;
+    private int _maxPendingBatches = 4;
+    private int _parallelism = 1;
+
+    // only touched by the inserting thread
+    private OutMessage _current;
+    private int _currentSize;
+    private BlockingQueue<Batch> _queue;
+    private Thread[] _flushers;
+    private boolean _closed;
+
+    private int _pending; // guarded by this
+    private final AtomicLong _numInserted = new AtomicLong();
+    private volatile WriteResult _lastResult;
+    private final AtomicReference<RuntimeException> _error = new AtomicReference<RuntimeException>();
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.mongodb;
+
+import org.bson.io.ByteBufferOutputBuffer;
+
+/**
+ * An encoder whose outgoing messages are built in pooled {@link ByteBufferOutputBuffer}s rather than in the segmented
+ * buffers used by default, so documents are encoded straight into a single growable {@code ByteBuffer}.
+ * <p>
+ * The pooled buffers backpatch sizes in place and write numbers and strings without per-field allocation or
+ * position juggling, which is cheaper than encoding into a segmented buffer field by field.  Given any other
+ * destination, this encodes like {@link DefaultDBEncoder}.
+ * </p>
+ * <p>
+ * Use {@link #FACTORY}, or {@link #DIRECT_FACTORY} for pooled direct buffers, with
+ * {@link MongoClientOptions.Builder#dbEncoderFactory(DBEncoderFactory)} or
+ * {@link DBCollection#setDBEncoderFactory(DBEncoderFactory)}.
+ * </p>
+ *
+ * @since 2.12
+ */
+public class ByteBufferDBEncoder extends DefaultDBEncoder {
+
+    /**
+     * Creates encoders that use pooled heap buffers.
+     */
+    public static final DBEncoderFactory FACTORY = new Factory( false );
+
+    /**
+     * Creates encoders that use pooled direct buffers.
+     */
+    public static final DBEncoderFactory DIRECT_FACTORY = new Factory( true );
+
+    ByteBufferDBEncoder( BufferPool pool ){
+        _pool = pool;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBufferDBEncoder";
+    }
+
+    static class Factory implements DBEncoderFactory {
+        Factory( boolean direct ){
+            _pool = new BufferPool( direct );
+        }
+
+        @Override
+        public DBEncoder create(){
+            return new ByteBufferDBEncoder( _pool );
+        }
+
+        @Override
+        public String toString() {
+            return "ByteBufferDBEncoder.Factory" + ( _pool._direct ? "(direct)" : "" );
+        }
+
+        final BufferPool _pool;
+    }
+
+    @SuppressWarnings("deprecation")
+    static class BufferPool extends org.bson.util.SimplePool<ByteBufferOutputBuffer> {
+        BufferPool( boolean direct ){
+            super( 100 );
+            _direct = direct;
+        }
+
+        @Override
+        protected ByteBufferOutputBuffer createNew(){
+            return new ByteBufferOutputBuffer( 4096 , _direct );
+        }
+
+        @Override
+        protected boolean ok( ByteBufferOutputBuffer buf ){
+            buf.reset();
+            return buf.capacity() <= MAX_RETAINED;
+        }
+
+        final boolean _direct;
+    }
+
+    // buffers that grew past this for a large document are dropped rather than pooled
+    static final int MAX_RETAINED = 4 * 1024 * 1024;
+
+    final BufferPool _pool;  // the buffers OutMessage builds messages in
+}
@@ -0,0 +1,121 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BSON;
+import org.bson.BSONObject;
+
+import java.util.List;
+
+/**
+ * A callback that builds documents as {@link CompactDBObject}s, putting int, long, double, boolean and date values
+ * into them without boxing.  Arrays are still decoded as {@link BasicDBList}s, and a collection's object class, if
+ * set, still takes precedence.
+ *
+ * @since 2.12
+ */
+public class CompactDBCallback extends DefaultDBCallback {
+
+    static class CompactFactory implements DBCallbackFactory {
+        @Override
+        public DBCallback create( DBCollection collection ){
+            return new CompactDBCallback( collection );
+        }
+    }
+
+    public static DBCallbackFactory FACTORY = new CompactFactory();
+
+    public CompactDBCallback( DBCollection coll ){
+        super( coll );
+    }
+
+    @Override
+    public BSONObject create(){
+        return _useObjectClass() ? super.create() : new CompactDBObject();
+    }
+
+    @Override
+    public BSONObject create( boolean array , List<String> path ){
+        if ( array || _useObjectClass() )
+            return super.create( array , path );
+        return new CompactDBObject();
+    }
+
+    @Override
+    public Object objectDone(){
+        BSONObject o = cur();
+        Object ret = super.objectDone();
+        if ( o instanceof CompactDBObject )
+            ((CompactDBObject) o).trimToSize();
+        return ret;
+    }
+
+    @Override
+    public void gotInt( String name , int v ){
+        CompactDBObject o = _compact();
+        if ( o != null )
+            o.putInt( name , v );
+        else
+            super.gotInt( name , v );
+    }
+
+    @Override
+    public void gotLong( String name , long v ){
+        CompactDBObject o = _compact();
+        if ( o != null )
+            o.putLong( name , v );
+        else
+            super.gotLong( name , v );
+    }
+
+    @Override
+    public void gotDouble( String name , double v ){
+        CompactDBObject o = _compact();
+        if ( o != null )
+            o.putDouble( name , v );
+        else
+            super.gotDouble( name , v );
+    }
+
+    @Override
+    public void gotBoolean( String name , boolean v ){
+        CompactDBObject o = _compact();
+        if ( o != null )
+            o.putBoolean( name , v );
+        else
+            super.gotBoolean( name , v );
+    }
+
+    @Override
+    public void gotDate( String name , long millis ){
+        CompactDBObject o = _compact();
+        if ( o != null )
+            o.putDate( name , millis );
+        else
+            super.gotDate( name , millis );
+    }
+
+    // the current object, if values can go into it unboxed; decoding hooks need to see the boxed values
+    private CompactDBObject _compact(){
+        BSONObject o = cur();
+        return o instanceof CompactDBObject && ! BSON.hasDecodeHooks() ? (CompactDBObject) o : null;
+    }
+
+    private boolean _useObjectClass(){
+        return _collection != null && _collection._objectClass != null;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+/**
+ * A decoder that produces {@link CompactDBObject}s, for applications that hold many decoded documents in memory.
+ * <pre>
+ * collection.setDBDecoderFactory( CompactDBDecoder.FACTORY );
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class CompactDBDecoder extends DefaultDBDecoder {
+
+    static class CompactFactory implements DBDecoderFactory {
+        @Override
+        public DBDecoder create( ){
+            return new CompactDBDecoder( );
+        }
+
+        @Override
+        public String toString() {
+            return "CompactDBDecoder.CompactFactory";
+        }
+    }
+
+    public static DBDecoderFactory FACTORY = new CompactFactory();
+
+    public CompactDBDecoder( ){
+    }
+
+    @Override
+    public DBCallback getDBCallback(DBCollection collection) {
+        return new CompactDBCallback(collection);
+    }
+
+    @Override
+    public String toString() {
+        return "CompactDBDecoder";
+    }
+}
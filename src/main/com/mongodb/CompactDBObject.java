@@ -0,0 +1,502 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import com.mongodb.util.JSON;
+import org.bson.BSON;
+import org.bson.BSONObject;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A {@code DBObject} that stores its fields in parallel arrays rather than a hash map, and keeps int, long, double,
+ * boolean and date values unboxed.
+ * <p>
+ * A field costs a key reference, a type byte and an 8 byte value slot, plus an object reference only once the
+ * document holds a value that is not a primitive.  A {@code BasicDBObject} costs a map entry and, for primitives, a
+ * boxed value per field.  Keys are shared with other documents when decoded through a
+ * {@link org.bson.io.FieldNameCache}.
+ * </p>
+ * <p>
+ * Fields are found by a linear scan, which is fast for the small documents this is meant for, but slower than a
+ * {@code BasicDBObject} for documents with many fields.  {@link #get(String)} boxes primitive values, and returns a
+ * new {@code Date} for dates; {@link #getInt(String)} and the other typed getters do not box.  Field order is
+ * preserved, as in a {@code BasicDBObject}, and the two compare equal when their fields do.
+ * </p>
+ * <p>
+ * Documents are decoded into this class by {@link CompactDBDecoder}.
+ * </p>
+ *
+ * @since 2.12
+ */
+public class CompactDBObject implements DBObject {
+
+    /**
+     * Creates an empty object.
+     */
+    public CompactDBObject(){
+        this( 8 );
+    }
+
+    /**
+     * @param initialCapacity the number of fields to make room for
+     */
+    public CompactDBObject( int initialCapacity ){
+        int n = Math.max( 1 , initialCapacity );
+        _keys = new String[ n ];
+        _types = new byte[ n ];
+        _values = new long[ n ];
+    }
+
+    public Object put( String key , Object v ){
+        if ( v instanceof Integer )
+            return _set( key , INT , ((Integer) v).intValue() , null );
+        if ( v instanceof Long )
+            return _set( key , LONG , ((Long) v).longValue() , null );
+        if ( v instanceof Double )
+            return _set( key , DOUBLE , Double.doubleToRawLongBits( (Double) v ) , null );
+        if ( v instanceof Boolean )
+            return _set( key , BOOLEAN , ((Boolean) v) ? 1 : 0 , null );
+        if ( v != null && v.getClass() == Date.class )  // subclasses such as java.sql.Timestamp keep their type
+            return _set( key , DATE , ((Date) v).getTime() , null );
+        if ( v == null )
+            return _set( key , NULL , 0 , null );
+        return _set( key , OBJECT , 0 , v );
+    }
+
+    /**
+     * Sets a field to an int, without boxing it.
+     */
+    public void putInt( String key , int v ){
+        _set( key , INT , v , null );
+    }
+
+    /**
+     * Sets a field to a long, without boxing it.
+     */
+    public void putLong( String key , long v ){
+        _set( key , LONG , v , null );
+    }
+
+    /**
+     * Sets a field to a double, without boxing it.
+     */
+    public void putDouble( String key , double v ){
+        _set( key , DOUBLE , Double.doubleToRawLongBits( v ) , null );
+    }
+
+    /**
+     * Sets a field to a boolean, without boxing it.
+     */
+    public void putBoolean( String key , boolean v ){
+        _set( key , BOOLEAN , v ? 1 : 0 , null );
+    }
+
+    /**
+     * Sets a field to a date, given in milliseconds since the epoch, without creating a {@code Date}.
+     */
+    public void putDate( String key , long millis ){
+        _set( key , DATE , millis , null );
+    }
+
+    /**
+     * Adds a field and returns this, like {@link BasicDBObject#append(String, Object)}.
+     */
+    public CompactDBObject append( String key , Object v ){
+        put( key , v );
+        return this;
+    }
+
+    public void putAll( BSONObject o ){
+        for ( String k : o.keySet() )
+            put( k , o.get( k ) );
+    }
+
+    @SuppressWarnings("rawtypes")  // the parameter type is fixed by BSONObject
+    public void putAll( Map m ){
+        Map<?, ?> map = m;
+        for ( Map.Entry<?, ?> entry : map.entrySet() )
+            put( entry.getKey().toString() , entry.getValue() );
+    }
+
+    public Object get( String key ){
+        int i = _indexOf( key );
+        return i < 0 ? null : _box( i );
+    }
+
+    /**
+     * @throws NullPointerException if the field is missing or null
+     * @see org.bson.BasicBSONObject#getInt(String)
+     */
+    public int getInt( String key ){
+        int i = _indexOf( key );
+        if ( i >= 0 && _types[i] == INT )
+            return (int) _values[i];
+        Object o = i < 0 ? null : _box( i );
+        if ( o == null )
+            throw new NullPointerException( "no value for: " + key );
+        return BSON.toInt( o );
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getInt(String, int)
+     */
+    public int getInt( String key , int def ){
+        int i = _indexOf( key );
+        if ( i >= 0 && _types[i] == INT )
+            return (int) _values[i];
+        Object o = i < 0 ? null : _box( i );
+        return o == null ? def : BSON.toInt( o );
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getLong(String)
+     */
+    public long getLong( String key ){
+        int i = _indexOf( key );
+        if ( i >= 0 && ( _types[i] == LONG || _types[i] == INT ) )
+            return _values[i];
+        return ((Number) get( key )).longValue();
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getLong(String, long)
+     */
+    public long getLong( String key , long def ){
+        int i = _indexOf( key );
+        if ( i >= 0 && ( _types[i] == LONG || _types[i] == INT ) )
+            return _values[i];
+        Object o = i < 0 ? null : _box( i );
+        return o == null ? def : ((Number) o).longValue();
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getDouble(String)
+     */
+    public double getDouble( String key ){
+        int i = _indexOf( key );
+        if ( i >= 0 && _types[i] == DOUBLE )
+            return Double.longBitsToDouble( _values[i] );
+        return ((Number) get( key )).doubleValue();
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getDouble(String, double)
+     */
+    public double getDouble( String key , double def ){
+        int i = _indexOf( key );
+        if ( i >= 0 && _types[i] == DOUBLE )
+            return Double.longBitsToDouble( _values[i] );
+        Object o = i < 0 ? null : _box( i );
+        return o == null ? def : ((Number) o).doubleValue();
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getBoolean(String)
+     */
+    public boolean getBoolean( String key ){
+        return getBoolean( key , false );
+    }
+
+    /**
+     * @see org.bson.BasicBSONObject#getBoolean(String, boolean)
+     */
+    public boolean getBoolean( String key , boolean def ){
+        int i = _indexOf( key );
+        if ( i >= 0 && _types[i] == BOOLEAN )
+            return _values[i] != 0;
+        Object o = i < 0 ? null : _box( i );
+        if ( o == null )
+            return def;
+        if ( o instanceof Number )
+            return ((Number) o).intValue() > 0;
+        throw new IllegalArgumentException( "can't coerce to bool:" + o.getClass() );
+    }
+
+    public Map<String, Object> toMap(){
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        for ( int i = 0; i < _size; i++ )
+            m.put( _keys[i] , _box( i ) );
+        return m;
+    }
+
+    public Object removeField( String key ){
+        int i = _indexOf( key );
+        if ( i < 0 )
+            return null;
+
+        Object old = _box( i );
+        int tail = _size - i - 1;
+        System.arraycopy( _keys , i + 1 , _keys , i , tail );
+        System.arraycopy( _types , i + 1 , _types , i , tail );
+        System.arraycopy( _values , i + 1 , _values , i , tail );
+        if ( _objects != null )
+            System.arraycopy( _objects , i + 1 , _objects , i , tail );
+        _size--;
+        _keys[ _size ] = null;
+        if ( _objects != null )
+            _objects[ _size ] = null;
+        return old;
+    }
+
+    /**
+     * @deprecated
+     */
+    @Deprecated
+    public boolean containsKey( String s ){
+        return containsField( s );
+    }
+
+    public boolean containsField( String s ){
+        return _indexOf( s ) >= 0;
+    }
+
+    public Set<String> keySet(){
+        return new AbstractSet<String>(){
+            public Iterator<String> iterator(){
+                return new Iterator<String>(){
+                    public boolean hasNext(){
+                        return _next < _size;
+                    }
+
+                    public String next(){
+                        if ( _next >= _size )
+                            throw new NoSuchElementException();
+                        return _keys[ _next++ ];
+                    }
+
+                    public void remove(){
+                        if ( _next == 0 )
+                            throw new IllegalStateException();
+                        removeField( _keys[ --_next ] );
+                    }
+
+                    private int _next;
+                };
+            }
+
+            public int size(){
+                return _size;
+            }
+
+            public boolean contains( Object o ){
+                return o instanceof String && containsField( (String) o );
+            }
+        };
+    }
+
+    /**
+     * @return the number of fields
+     */
+    public int size(){
+        return _size;
+    }
+
+    /**
+     * Drops the spare room left by growing, once a document is complete.
+     */
+    public void trimToSize(){
+        if ( _keys.length == _size || _size == 0 )
+            return;
+        _keys = Arrays.copyOf( _keys , _size );
+        _types = Arrays.copyOf( _types , _size );
+        _values = Arrays.copyOf( _values , _size );
+        if ( _objects != null )
+            _objects = Arrays.copyOf( _objects , _size );
+    }
+
+    public boolean isPartialObject(){
+        return _isPartialObject;
+    }
+
+    public void markAsPartialObject(){
+        _isPartialObject = true;
+    }
+
+    /**
+     * Compares fields the way {@link org.bson.BasicBSONObject#equals(Object)} does, so a {@code CompactDBObject}
+     * and a {@code BasicDBObject} with the same fields are equal.
+     */
+    public boolean equals( Object o ){
+        if ( ! ( o instanceof BSONObject ) )
+            return false;
+
+        BSONObject other = (BSONObject) o;
+        if ( ! keySet().equals( other.keySet() ) )
+            return false;
+
+        for ( int i = 0; i < _size; i++ ){
+            Object a = _box( i );
+            Object b = other.get( _keys[i] );
+
+            if ( a == null || b == null ){
+                if ( a != b )
+                    return false;
+            }
+            else if ( a instanceof Number && b instanceof Number ){
+                Number x = (Number) a;
+                Number y = (Number) b;
+                if ( x instanceof Double && y instanceof Double ){
+                    // Double.equals, as the hash is: NaN equals itself and 0.0 doesn't equal -0.0
+                    if ( ! x.equals( y ) )
+                        return false;
+                }
+                else if ( x instanceof Double || y instanceof Double || x instanceof Float || y instanceof Float ){
+                    if ( x.doubleValue() != y.doubleValue() )
+                        return false;
+                }
+                else if ( x.longValue() != y.longValue() ){
+                    return false;
+                }
+            }
+            else if ( a instanceof Pattern && b instanceof Pattern ){
+                Pattern p1 = (Pattern) a;
+                Pattern p2 = (Pattern) b;
+                if ( ! p1.pattern().equals( p2.pattern() ) || p1.flags() != p2.flags() )
+                    return false;
+            }
+            else if ( ! a.equals( b ) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The same hash as a {@code LinkedHashMap} of the boxed fields, computed without boxing.
+     */
+    public int hashCode(){
+        int h = 0;
+        for ( int i = 0; i < _size; i++ ){
+            long v = _values[i];
+            int vh;
+            switch ( _types[i] ){
+                case INT:
+                    vh = (int) v;
+                    break;
+                case BOOLEAN:
+                    vh = v != 0 ? 1231 : 1237;
+                    break;
+                case LONG:
+                    vh = (int) ( v ^ ( v >>> 32 ) );
+                    break;
+                case DOUBLE:
+                    // Double.hashCode, which collapses every NaN to one value; the raw bits are kept for encoding
+                    vh = Double.valueOf( Double.longBitsToDouble( v ) ).hashCode();
+                    break;
+                case DATE:
+                    vh = (int) v ^ (int) ( v >> 32 );
+                    break;
+                case NULL:
+                    vh = 0;
+                    break;
+                default:
+                    vh = _objects[i] == null ? 0 : _objects[i].hashCode();
+            }
+            h += ( _keys[i] == null ? 0 : _keys[i].hashCode() ) ^ vh;
+        }
+        return h;
+    }
+
+    /**
+     * Returns a JSON serialization of this object
+     * @return JSON serialization
+     */
+    public String toString(){
+        return JSON.serialize( this );
+    }
+
+    private int _indexOf( String key ){
+        for ( int i = 0; i < _size; i++ ){
+            String k = _keys[i];
+            if ( k == key || ( k != null && k.equals( key ) ) )
+                return i;
+        }
+        return -1;
+    }
+
+    private Object _set( String key , byte type , long value , Object object ){
+        int i = _indexOf( key );
+        Object old = null;
+        if ( i < 0 ){
+            if ( _size == _keys.length )
+                _grow();
+            i = _size++;
+            _keys[i] = key;
+        }
+        else {
+            old = _box( i );
+        }
+
+        _types[i] = type;
+        _values[i] = value;
+        if ( type == OBJECT ){
+            if ( _objects == null )
+                _objects = new Object[ _keys.length ];
+            _objects[i] = object;
+        }
+        else if ( _objects != null ){
+            _objects[i] = null;
+        }
+        return old;
+    }
+
+    private Object _box( int i ){
+        long v = _values[i];
+        switch ( _types[i] ){
+            case INT: return (int) v;
+            case LONG: return v;
+            case DOUBLE: return Double.longBitsToDouble( v );
+            case BOOLEAN: return v != 0;
+            case DATE: return new Date( v );
+            case NULL: return null;
+            default: return _objects[i];
+        }
+    }
+
+    private void _grow(){
+        int n = _keys.length * 2;
+        _keys = Arrays.copyOf( _keys , n );
+        _types = Arrays.copyOf( _types , n );
+        _values = Arrays.copyOf( _values , n );
+        if ( _objects != null )
+            _objects = Arrays.copyOf( _objects , n );
+    }
+
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DATE = 5;
+    private static final byte NULL = 6;
+
+    private String[] _keys;
+    private byte[] _types;
+    private long[] _values;   // the bits of primitive values
+    private Object[] _objects; // other values, allocated for the first one
+    private int _size;
+    private boolean _isPartialObject;
+}
@@ -191,36 +191,51 @@ abstract class ConnectionStatus {
         }
 
         public CommandResult update() {
+            return update(probe());
+        }
+
+        /**
+         * Runs isMaster on this node's own port.  Nothing else is touched, so probes of different nodes may run at once
+         * while a single thread applies their results with {@link #update(Probe)}.
+         */
+        Probe probe() {
+            long start = System.nanoTime();
             try {
-                long start = System.nanoTime();
                 CommandResult res = _port.runCommand(_mongo.getDB("admin"), isMasterCmd);
-
-                long end = System.nanoTime();
-                float newPingMS = (end - start) / 1000000F;
-                if (_connectionState != Connected) {
-                    _pingTimeMS = newPingMS;
-                }
-                else {
-                    _pingTimeMS = _pingTimeMS + ((newPingMS - _pingTimeMS) / latencySmoothFactor);
-                }
-
-                _maxBsonObjectSize = res.getInt("maxBsonObjectSize", Bytes.MAX_OBJECT_SIZE);
-
-                if (_connectionState != Connected) {
-                    _connectionState = Connected;
-                    getLogger().log(Level.INFO, "Server seen up: " + _addr);
-                }
-
-                getLogger().log(Level.FINE, "Latency to " + _addr + " actual=" + newPingMS + " smoothed=" + _pingTimeMS);
-
-                return res;
+                return new Probe(res, System.nanoTime() - start, null);
             } catch (Exception e) {
+                return new Probe(null, System.nanoTime() - start, e);
+            }
+        }
+
+        CommandResult update(Probe probe) {
+            if (probe._error != null) {
                 if (_connectionState != Unconnected) {
                     _connectionState = Unconnected;
-                    getLogger().log(Level.WARNING, String.format("Server seen down: %s", _addr), e);
+                    getLogger().log(Level.WARNING, String.format("Server seen down: %s", _addr), probe._error);
                 }
                 return null;
             }
+
+            CommandResult res = probe._result;
+            float newPingMS = probe._elapsedNanos / 1000000F;
+            if (_connectionState != Connected) {
+                _pingTimeMS = newPingMS;
+            }
+            else {
+                _pingTimeMS = _pingTimeMS + ((newPingMS - _pingTimeMS) / latencySmoothFactor);
+            }
+
+            _maxBsonObjectSize = res.getInt("maxBsonObjectSize", Bytes.MAX_OBJECT_SIZE);
+
+            if (_connectionState != Connected) {
+                _connectionState = Connected;
+                getLogger().log(Level.INFO, "Server seen up: " + _addr);
+            }
+
+            getLogger().log(Level.FINE, "Latency to " + _addr + " actual=" + newPingMS + " smoothed=" + _pingTimeMS);
+
+            return res;
         }
 
         protected abstract Logger getLogger();
@@ -236,4 +251,17 @@ abstract class ConnectionStatus {
         ConnectionState _connectionState = Connecting;
     }
 
+    // The outcome of one isMaster call: the reply, or the error that took its place.
+    static final class Probe {
+        Probe(CommandResult result, long elapsedNanos, Exception error) {
+            _result = result;
+            _elapsedNanos = elapsedNanos;
+            _error = error;
+        }
+
+        final CommandResult _result;
+        final long _elapsedNanos;
+        final Exception _error;
+    }
+
 }
@@ -0,0 +1,262 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import com.mongodb.util.JSON;
+import com.mongodb.util.JSONWriterCallback;
+import org.bson.LazyBSONObject;
+import org.bson.NewBSONDecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the documents of a cursor to a stream or file, one batch in memory at a time.  The cursor is switched to
+ * {@link LazyDBDecoder}, so no {@code DBObject} is built for a document:
+ * <ul>
+ * <li>{@link Format#BSON} copies each document's bytes from the reply, giving the same layout as a mongodump
+ * {@code .bson} file.</li>
+ * <li>{@link Format#JSON} writes one document per line, transcoding the bytes with a {@link JSONWriterCallback}.  The
+ * text is what {@link JSON#serialize(Object)} gives for the document.</li>
+ * </ul>
+ * <pre>
+ * new CursorExporter( CursorExporter.Format.BSON , true ).export( collection.find() , new File( "dump.bson.gz" ) );
+ * </pre>
+ *
+ * @since 2.12
+ */
+@SuppressWarnings("deprecation")
+public class CursorExporter {
+
+    /**
+     * The format of an export.
+     */
+    public enum Format {
+        BSON( ".bson" ),
+        JSON( ".json" );
+
+        Format( String extension ){
+            _extension = extension;
+        }
+
+        /**
+         * @return the usual file name extension, with the dot
+         */
+        public String getExtension(){
+            return _extension;
+        }
+
+        private final String _extension;
+    }
+
+    /**
+     * @param format the format to write
+     * @param gzip whether files are gzip compressed; streams given to {@link #export(DBCursor, OutputStream)} are
+     *             written as they are
+     */
+    public CursorExporter( Format format , boolean gzip ){
+        if ( format == null )
+            throw new IllegalArgumentException( "format can't be null" );
+        _format = format;
+        _gzip = gzip;
+    }
+
+    /**
+     * Writes every document of a cursor that has not been iterated yet.  The stream is flushed but not closed.
+     *
+     * @param cursor the cursor to read
+     * @param out where to write the documents
+     * @return the number of documents written
+     * @throws IOException if the stream fails
+     * @throws MongoException
+     */
+    public long export( DBCursor cursor , OutputStream out ) throws IOException {
+        cursor.setDecoderFactory( LazyDBDecoder.FACTORY );
+
+        final DocumentBytes bytes = new DocumentBytes();
+        final Writer writer = _format == Format.JSON ? new OutputStreamWriter( out , "UTF-8" ) : null;
+        final JSONWriterCallback json = _format == Format.JSON ? new JSONWriterCallback() : null;
+        final NewBSONDecoder decoder = _format == Format.JSON ? new NewBSONDecoder() : null;
+
+        long count = 0;
+        try {
+            while ( cursor.hasNext() ){
+                final DBObject o = cursor.next();
+                if ( _format == Format.BSON ){
+                    if ( o instanceof LazyBSONObject )
+                        ((LazyBSONObject) o).pipe( out );
+                    else
+                        out.write( new DefaultDBEncoder().encode( o ) );
+                }
+                else {
+                    final StringBuilder buf = json.getBuffer();
+                    buf.setLength( 0 );
+                    if ( o instanceof LazyBSONObject ){
+                        bytes.reset();
+                        ((LazyBSONObject) o).pipe( bytes );
+                        json.reset();
+                        decoder.decode( bytes.array() , json );
+                    }
+                    else {
+                        JSON.serialize( o , buf );
+                    }
+                    buf.append( '\n' );
+                    writer.append( buf );
+                }
+                count++;
+            }
+        }
+        finally {
+            cursor.close();
+        }
+
+        if ( writer != null )
+            writer.flush();
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Writes every document of a cursor that has not been iterated yet to a file, gzip compressed if this exporter
+     * was created to.
+     *
+     * @param cursor the cursor to read
+     * @param file the file to create or replace
+     * @return the number of documents written
+     * @throws IOException if the file can't be written
+     * @throws MongoException
+     */
+    public long export( DBCursor cursor , File file ) throws IOException {
+        OutputStream out = new FileOutputStream( file );
+        try {
+            out = _gzip ? new GZIPOutputStream( out , BUFFER_SIZE ) : new BufferedOutputStream( out , BUFFER_SIZE );
+            long count = export( cursor , out );
+            out.close();
+            out = null;
+            return count;
+        }
+        finally {
+            if ( out != null ){
+                try {
+                    out.close();
+                }
+                catch ( IOException e ){
+                    // the export already failed
+                }
+            }
+        }
+    }
+
+    /**
+     * Exports the documents matching a query to several files at once, splitting them into ranges of _id with
+     * {@link DBCollection#splitCursors(DBObject, DBObject, int)} and writing each range from its own thread.  The files
+     * are named {@code <prefix>-<n><extension>}, with {@code .gz} after the extension when compressed.
+     *
+     * @param collection the collection to export
+     * @param query the query, or null for every document
+     * @param fields fields to export, or null for all
+     * @param numThreads the number of ranges to write at once
+     * @param dir the directory to write the files to
+     * @param prefix the start of each file's name
+     * @return the number of documents written
+     * @throws IOException if a file can't be written, or the calling thread is interrupted
+     * @throws MongoException
+     */
+    public long export( DBCollection collection , DBObject query , DBObject fields , int numThreads , File dir , String prefix )
+        throws IOException {
+
+        final List<DBCursor> cursors = collection.splitCursors( query , fields , numThreads );
+        final List<Part> parts = new ArrayList<Part>( cursors.size() );
+        for ( int i = 0; i < cursors.size(); i++ ){
+            String name = prefix + "-" + i + _format.getExtension() + ( _gzip ? ".gz" : "" );
+            Part part = new Part( cursors.get( i ) , new File( dir , name ) );
+            part._thread = new Thread( part , "CursorExporter-" + i + ":" + collection.getFullName() );
+            part._thread.setDaemon( true );
+            parts.add( part );
+        }
+        for ( Part part : parts )
+            part._thread.start();
+
+        long count = 0;
+        try {
+            for ( Part part : parts ){
+                part._thread.join();
+                if ( part._error instanceof IOException )
+                    throw (IOException) part._error;
+                if ( part._error instanceof RuntimeException )
+                    throw (RuntimeException) part._error;
+                if ( part._error != null )
+                    throw (Error) part._error;
+                count += part._count;
+            }
+        }
+        catch ( InterruptedException e ){
+            for ( Part part : parts )
+                part._thread.interrupt();
+            throw new InterruptedIOException( "interrupted while exporting " + collection.getFullName() );
+        }
+        return count;
+    }
+
+    public String toString(){
+        return "CursorExporter format: " + _format + " gzip: " + _gzip;
+    }
+
+    class Part implements Runnable {
+        Part( DBCursor cursor , File file ){
+            _cursor = cursor;
+            _file = file;
+        }
+
+        public void run(){
+            try {
+                _count = export( _cursor , _file );
+            }
+            catch ( Throwable t ){
+                _error = t;
+            }
+        }
+
+        final DBCursor _cursor;
+        final File _file;
+        Thread _thread;
+        long _count;
+        Throwable _error;
+    }
+
+    // the bytes of one document, copied out of a lazy document for the JSON decoder and reused for the next one
+    static class DocumentBytes extends ByteArrayOutputStream {
+        byte[] array(){
+            return buf;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Format _format;
+    private final boolean _gzip;
+}
@@ -22,9 +22,14 @@ import com.mongodb.util.JSON;
 import org.bson.BSONObject;
 import org.bson.types.ObjectId;
 
+import java.net.SocketTimeoutException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -178,6 +183,18 @@ public class DBApiLayer extends DB {
         _connector.say( this , om ,com.mongodb.WriteConcern.NONE , addr );
     }
 
+    /**
+     * Kills one cursor straight away, or, if that fails, leaves it for the next {@link #cleanCursors(boolean)}.
+     */
+    void killCursor( ServerAddress addr , long id ){
+        try {
+            killCursors( addr , Collections.singletonList( id ) );
+        }
+        catch ( RuntimeException e ){
+            _deadCursorIds.add( new DeadCursor( id , addr ) );
+        }
+    }
+
     @Override
     CommandResult doAuthenticate(MongoCredential credentials) {
         return _connector.authenticate(credentials);
@@ -219,39 +236,186 @@ public class DBApiLayer extends DB {
             }
 
             if ( shouldApply ){
-                for (DBObject o : list) {
-                    apply(o);
-                    _checkObject(o, false, false);
-                    Object id = o.get("_id");
-                    if (id instanceof ObjectId) {
-                        ((ObjectId) id).notNew();
-                    }
-                }
+                _applyForInsert( list );
             }
 
             WriteResult last = null;
 
             int cur = 0;
-            int maxsize = _mongo.getMaxBsonObjectSize();
             while ( cur < list.size() ) {
 
-               OutMessage om = OutMessage.insert( this , encoder, concern );
+                OutMessage om = OutMessage.insert( this , encoder, concern );
+                cur = _fillInsert( om , list , cur );
+
+                last = _connector.say( _db , om , concern );
+            }
+
+            return last;
+        }
+
+        @Override
+        WriteResult __insertBatch( OutMessage om , com.mongodb.WriteConcern concern ){
+            return _connector.say( _db , om , concern );
+        }
+
+        private void _applyForInsert( List<DBObject> list ){
+            for (DBObject o : list) {
+                apply(o);
+                _checkObject(o, false, false);
+                Object id = o.get("_id");
+                if (id instanceof ObjectId) {
+                    ((ObjectId) id).notNew();
+                }
+            }
+        }
+
+        // puts documents into the message starting at cur, and returns the index of the first one that did not fit
+        private int _fillInsert( OutMessage om , List<DBObject> list , int cur ){
+            int maxsize = _mongo.getMaxBsonObjectSize();
+            for ( ; cur < list.size(); cur++ ){
+                DBObject o = list.get(cur);
+                om.putObject( o );
+
+                // limit for batch insert is 4 x maxbson on server, use 2 x to be safe
+                if ( om.size() > 2 * maxsize ){
+                    cur++;
+                    break;
+                }
+            }
+            return cur;
+        }
+
+        @Override
+        void __insertAsync( List<DBObject> list , com.mongodb.WriteConcern concern , DBEncoder encoder , final AsyncResult<WriteResult> result ){
+            try {
+                if (concern == null) {
+                    throw new IllegalArgumentException("Write concern can not be null");
+                }
+
+                DBTCPConnector connector = asyncConnector();
 
-               for ( ; cur < list.size(); cur++ ){
-                    DBObject o = list.get(cur);
-                    om.putObject( o );
+                if (encoder == null)
+                    encoder = DefaultDBEncoder.FACTORY.create();
 
-                    // limit for batch insert is 4 x maxbson on server, use 2 x to be safe
-                    if ( om.size() > 2 * maxsize ){
-                        cur++;
-                        break;
+                if ( willTrace() ) {
+                    for (DBObject o : list) {
+                        trace( "save async:  " + _fullNameSpace + " " + JSON.serialize( o ) );
                     }
                 }
 
-                last = _connector.say( _db , om , concern );
+                _applyForInsert( list );
+
+                List<OutMessage> batches = new ArrayList<OutMessage>();
+                int cur = 0;
+                while ( cur < list.size() ) {
+                    OutMessage om = OutMessage.insert( this , encoder, concern );
+                    cur = _fillInsert( om , list , cur );
+                    batches.add( om );
+                }
+
+                if ( batches.isEmpty() ){
+                    result.setResult( null );
+                    return;
+                }
+
+                if ( ! concern.getContinueOnErrorForInsert() ){
+                    new OrderedInsert( connector , batches , concern , result ).start();
+                    return;
+                }
+
+                // the batches don't depend on each other, so every one is sent right away on whichever socket is
+                // least loaded; the first failure wins, otherwise the result is the last batch's
+                final AtomicInteger remaining = new AtomicInteger( batches.size() );
+                final AtomicReference<WriteResult> last = new AtomicReference<WriteResult>();
+                for ( int i = 0; i < batches.size(); i++ ){
+                    final boolean isLast = i == batches.size() - 1;
+                    connector.sayAsync( _db , batches.get( i ) , concern , new AsyncResult<WriteResult>( new ResultCallback<WriteResult>() {
+                        public void onResult( WriteResult wr , Throwable t ){
+                            if ( t != null )
+                                result.setError( t );
+                            else if ( isLast )
+                                last.set( wr );
+                            if ( remaining.decrementAndGet() == 0 )
+                                result.setResult( last.get() );
+                        }
+                    }));
+                }
+            }
+            catch ( RuntimeException re ){
+                result.setError( re );
             }
+        }
 
-            return last;
+        /**
+         * Sends the batches of an insert that stops at the first error one after another on one socket, so that they
+         * are applied in order.  With getlasterror, each batch is only sent once the one before it has succeeded.
+         */
+        private class OrderedInsert implements ResultCallback<WriteResult> {
+
+            OrderedInsert( DBTCPConnector connector , List<OutMessage> batches , com.mongodb.WriteConcern concern ,
+                           AsyncResult<WriteResult> result ){
+                _connector = connector;
+                _batches = batches;
+                _concern = concern;
+                _result = result;
+            }
+
+            void start(){
+                try {
+                    _port = _connector.getMasterMultiplexed();
+                }
+                catch ( RuntimeException re ){
+                    onResult( null , re );
+                    return;
+                }
+
+                if ( _concern.callGetLastError() ){
+                    _sendNext();
+                    return;
+                }
+
+                // nothing to wait for, and one socket keeps the order
+                WriteResult last = null;
+                while ( _next < _batches.size() ){
+                    AsyncResult<WriteResult> sent = new AsyncResult<WriteResult>( null );
+                    _connector.sayAsync( _db , _batches.get( _next++ ) , _concern , _port , sent );
+                    try {
+                        last = sent.get();
+                    }
+                    catch ( Exception e ){
+                        onResult( null , e instanceof ExecutionException ? e.getCause() : e );
+                        return;
+                    }
+                }
+                _result.setResult( last );
+            }
+
+            private void _sendNext(){
+                _connector.sayAsync( _db , _batches.get( _next++ ) , _concern , _port , new AsyncResult<WriteResult>( this ) );
+            }
+
+            public void onResult( WriteResult wr , Throwable t ){
+                if ( t != null ){
+                    // the batches after a failed one are never sent
+                    while ( _next < _batches.size() )
+                        _batches.get( _next++ ).doneWithMessage();
+                    _result.setError( t );
+                }
+                else if ( _next == _batches.size() ){
+                    _result.setResult( wr );
+                }
+                else {
+                    _sendNext();
+                }
+            }
+
+            private final DBTCPConnector _connector;
+            private final List<OutMessage> _batches;
+            private final com.mongodb.WriteConcern _concern;
+            private final AsyncResult<WriteResult> _result;
+            // written by whichever thread sends the next batch, which is a different one each time
+            private volatile MultiplexedDBPort _port;
+            private volatile int _next;
         }
 
         public WriteResult remove( DBObject o , com.mongodb.WriteConcern concern, DBEncoder encoder ){
@@ -270,6 +434,27 @@ public class DBApiLayer extends DB {
             return _connector.say( _db , om , concern );
         }
 
+        @Override
+        void __removeAsync( DBObject o , com.mongodb.WriteConcern concern , DBEncoder encoder , AsyncResult<WriteResult> result ){
+            try {
+                if (concern == null) {
+                    throw new IllegalArgumentException("Write concern can not be null");
+                }
+
+                DBTCPConnector connector = asyncConnector();
+
+                if (encoder == null)
+                    encoder = DefaultDBEncoder.FACTORY.create();
+
+                if ( willTrace() ) trace( "remove async: " + _fullNameSpace + " " + JSON.serialize( o ) );
+
+                connector.sayAsync( _db , OutMessage.remove( this , encoder , o ) , concern , result );
+            }
+            catch ( RuntimeException re ){
+                result.setError( re );
+            }
+        }
+
         @Override
         Iterator<DBObject> __find( DBObject ref , DBObject fields , int numToSkip , int batchSize, int limit , int options, ReadPreference readPref, DBDecoder decoder ){
 
@@ -289,7 +474,29 @@ public class DBApiLayer extends DB {
                     encoder);
 
             Response res = _connector.call( _db , this , query , null , 2, readPref, decoder );
+            return _result( res , batchSize , limit , options , decoder );
+        }
+
+        @Override
+        Iterator<DBObject> __findHedged( DBObject ref , DBObject fields , int numToSkip , int batchSize , int limit , int options ,
+                                         TaggableReadPreference readPref , DBDecoder decoder , double percentile ){
+
+            if ( ! ( _connector instanceof DBTCPConnector ) )
+                return __find( ref , fields , numToSkip , batchSize , limit , options , readPref , decoder );
+
+            if ( ref == null )
+                ref = new BasicDBObject();
+
+            if ( willTrace() ) trace( "find hedged: " + _fullNameSpace + " " + JSON.serialize( ref ) );
 
+            OutMessage query = OutMessage.query( this , options , numToSkip , chooseBatchSize(batchSize, limit, 0) , ref , fields, readPref,
+                    DefaultDBEncoder.FACTORY.create() );
+
+            Response res = ((DBTCPConnector) _connector).callHedged( _db , this , query , readPref , decoder , percentile );
+            return _result( res , batchSize , limit , options , decoder );
+        }
+
+        private Result _result( Response res , int batchSize , int limit , int options , DBDecoder decoder ){
             if ( res.size() == 1 ){
                 BSONObject foo = res.get(0);
                 MongoException e = MongoException.parse( foo );
@@ -300,9 +507,51 @@ public class DBApiLayer extends DB {
             return new Result( this , res , batchSize, limit , options, decoder );
         }
 
+        @Override
+        void __findAsync( DBObject ref , DBObject fields , int batchSize , int limit , int options , ReadPreference readPref ,
+                          DBDecoder decoder , AsyncResult<List<DBObject>> result ){
+            try {
+                DBTCPConnector connector = asyncConnector();
+
+                if ( ref == null )
+                    ref = new BasicDBObject();
+
+                if ( willTrace() ) trace( "find async: " + _fullNameSpace + " " + JSON.serialize( ref ) );
+
+                OutMessage query = OutMessage.query( this , options , 0 , chooseBatchSize(batchSize, limit, 0) , ref , fields, readPref,
+                        DefaultDBEncoder.FACTORY.create() );
+
+                AsyncFind find = new AsyncFind( connector , this , batchSize , limit , decoder , result );
+                connector.callAsync( _db , this , query , null , readPref , decoder , new AsyncResult<Response>( find ) );
+            }
+            catch ( RuntimeException re ){
+                result.setError( re );
+            }
+        }
+
         @Override
         public WriteResult update( DBObject query , DBObject o , boolean upsert , boolean multi , com.mongodb.WriteConcern concern, DBEncoder encoder ){
 
+            OutMessage om = _updateMessage( query , o , upsert , multi , concern , encoder );
+
+            return _connector.say( _db , om , concern );
+        }
+
+        @Override
+        void __updateAsync( DBObject query , DBObject o , boolean upsert , boolean multi , com.mongodb.WriteConcern concern ,
+                            DBEncoder encoder , AsyncResult<WriteResult> result ){
+            try {
+                DBTCPConnector connector = asyncConnector();
+                connector.sayAsync( _db , _updateMessage( query , o , upsert , multi , concern , encoder ) , concern , result );
+            }
+            catch ( RuntimeException re ){
+                result.setError( re );
+            }
+        }
+
+        private OutMessage _updateMessage( DBObject query , DBObject o , boolean upsert , boolean multi , com.mongodb.WriteConcern concern,
+                                           DBEncoder encoder ){
+
             if (o == null) {
                 throw new IllegalArgumentException("update can not be null");
             }
@@ -325,9 +574,13 @@ public class DBApiLayer extends DB {
                 trace( "update: " + _fullNameSpace + " " + JSON.serialize( query ) + " " + JSON.serialize( o )  );
             }
 
-            OutMessage om = OutMessage.update(this, encoder, upsert, multi, query, o);
+            return OutMessage.update(this, encoder, upsert, multi, query, o);
+        }
 
-            return _connector.say( _db , om , concern );
+        private DBTCPConnector asyncConnector(){
+            if ( ! ( _connector instanceof DBTCPConnector ) )
+                throw new UnsupportedOperationException( "asynchronous operations are not supported by " + _connector.getClass().getName() );
+            return (DBTCPConnector) _connector;
         }
 
         public void createIndex( final DBObject keys, final DBObject options, DBEncoder encoder ){
@@ -424,12 +677,38 @@ public class DBApiLayer extends DB {
             if ( _curResult.cursor() <= 0 )
                 throw new RuntimeException( "can't advance a cursor <= 0" );
 
-            OutMessage m = OutMessage.getMore(_collection, _curResult.cursor(),
-                    chooseBatchSize(_batchSize, _limit, _numFetched));
+            Response res = _prefetch == null ? null : _prefetch.take();
+            if ( res == null ){
+                OutMessage m = OutMessage.getMore(_collection, _curResult.cursor(),
+                        chooseBatchSize(_batchSize, _limit, _numFetched), _options);
 
-            Response res = _connector.call( DBApiLayer.this , _collection , m , _host, _decoder );
+                res = _connector.call( DBApiLayer.this , _collection , m , _host, _decoder );
+            }
             _numGetMores++;
             init( res );
+
+            if ( _prefetch != null )
+                _prefetch.fill( _curResult.cursor() , _numFetched , _batchSize );
+        }
+
+        /**
+         * Starts fetching batches ahead of the one being iterated.  Tailable cursors are never prefetched, nor are
+         * cursors on a connector that can't send asynchronously.
+         * @param depth the number of batches to keep fetched ahead, 0 to stop
+         * @param maxBytes the most that batches fetched ahead may add up to
+         */
+        void setPrefetch( int depth , long maxBytes ){
+            if ( depth <= 0 || ( _options & Bytes.QUERYOPTION_TAILABLE ) != 0 || ! ( _connector instanceof DBTCPConnector ) ){
+                if ( _prefetch != null )
+                    _prefetch.stop();
+                _prefetch = null;
+                return;
+            }
+
+            if ( _prefetch == null )
+                _prefetch = new Prefetch();
+            _prefetch.configure( depth , maxBytes );
+            _prefetch.fill( _curResult == null ? 0 : _curResult.cursor() , _numFetched , _batchSize );
         }
 
         public void remove(){
@@ -467,6 +746,9 @@ public class DBApiLayer extends DB {
         }
 
         void close(){
+            if ( _prefetch != null )
+                _prefetch.stop();
+
             // not perfectly thread safe here, may need to use an atomicBoolean
             if (_curResult != null) {
                 killCursor();
@@ -516,9 +798,155 @@ public class DBApiLayer extends DB {
         private List<Integer> _sizes = new ArrayList<Integer>();
         private int _numFetched = 0;
 
+        private Prefetch _prefetch;
+
         // This allows us to easily enable/disable finalizer for cleaning up un-closed cursors
         private final OptionalFinalizer _optionalFinalizer;
 
+        /**
+         * The batches fetched ahead of the current one.  A server cursor can only have one getmore outstanding, so
+         * each getmore is sent from the callback of the one before it, on the async worker threads, until the depth
+         * or the byte limit is reached.  The iterating thread only blocks if it catches up with the fetching.
+         */
+        private class Prefetch implements ResultCallback<Response> {
+
+            synchronized void configure( int depth , long maxBytes ){
+                _depth = depth;
+                _maxBytes = maxBytes;
+            }
+
+            /**
+             * Called by the iterating thread with the state of the cursor after a batch it fetched itself.
+             */
+            synchronized void fill( long cursorId , int numFetched , int batchSize ){
+                _cursorId = cursorId;
+                _consumedDocs = numFetched;
+                _getMoreSize = batchSize;
+                fill();
+            }
+
+            /**
+             * Sends the next getmore if there is room and none is outstanding.  Runs on the iterating thread and on
+             * the async executor, so it reads only state of its own, never the fields of the Result.
+             */
+            private synchronized void fill(){
+                if ( _stopped || _inFlight || _error != null )
+                    return;
+                if ( _ready.size() >= _depth || _readyBytes >= _maxBytes )
+                    return;
+
+                long cursorId = _ready.isEmpty() ? _cursorId : _ready.getLast().cursor();
+                if ( cursorId == 0 )
+                    return;
+
+                int fetched = _consumedDocs + _readyDocs;
+                if ( _limit > 0 && fetched >= _limit )
+                    return;
+
+                _inFlight = true;
+                OutMessage m = OutMessage.getMore( _collection , cursorId , chooseBatchSize( _getMoreSize , _limit , fetched ) );
+                MultiplexedDBPort.PendingReply reply =
+                        ((DBTCPConnector) _connector).callAsync( DBApiLayer.this , _collection , m , _host , null , _decoder ,
+                                                                 new AsyncResult<Response>( this ) );
+                if ( _inFlight )  // unless it has already failed
+                    _pending = reply;
+            }
+
+            public void onResult( Response res , Throwable t ){
+                synchronized ( this ){
+                    _inFlight = false;
+                    _pending = null;
+                    if ( _stopped )
+                        return;
+                    if ( t != null ){
+                        _error = t;
+                    }
+                    else {
+                        _ready.addLast( res );
+                        _readyBytes += res._len;
+                        _readyDocs += res.size();
+                    }
+                    notifyAll();
+                }
+                fill();
+            }
+
+            /**
+             * @return the next batch, waiting for it if it has been requested, or null if it has to be fetched
+             *         synchronously
+             * @throws MongoException.Network if the batch requested doesn't arrive within the socket timeout
+             */
+            synchronized Response take(){
+                if ( _stopped )
+                    return null;
+
+                int timeoutMS = _collection.getDB().getMongo().getMongoOptions().getSocketTimeout();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMS );
+                while ( _ready.isEmpty() && _inFlight && _error == null ){
+                    try {
+                        if ( timeoutMS <= 0 ){
+                            wait();
+                            continue;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if ( remaining <= 0 )
+                            _timedOut( timeoutMS );
+                        TimeUnit.NANOSECONDS.timedWait( this , remaining );
+                    }
+                    catch ( InterruptedException e ){
+                        throw new MongoInterruptedException( e );
+                    }
+                }
+
+                if ( ! _ready.isEmpty() ){
+                    Response res = _ready.removeFirst();
+                    _readyBytes -= res._len;
+                    _readyDocs -= res.size();
+                    _consumedDocs += res.size();
+                    _cursorId = res.cursor();
+                    return res;
+                }
+
+                if ( _error != null ){
+                    Throwable t = _error;
+                    _error = null;
+                    if ( t instanceof RuntimeException )
+                        throw (RuntimeException) t;
+                    throw new MongoException( "prefetch failed" , t );
+                }
+                return null;
+            }
+
+            // like a blocking getmore that times out: the socket is closed, and the cursor carries on without prefetching
+            private void _timedOut( int timeoutMS ){
+                SocketTimeoutException ste = new SocketTimeoutException( "no reply to prefetched getmore after " + timeoutMS + "ms" );
+                _stopped = true;
+                if ( _pending != null )
+                    _pending.closeConnection( ste );
+                throw new MongoException.Network( "Read operation to server " + _host + " failed on database " + _collection.getDB() , ste );
+            }
+
+            synchronized void stop(){
+                _stopped = true;
+                _ready.clear();
+                _readyBytes = 0;
+                _readyDocs = 0;
+            }
+
+            private int _depth;
+            private long _maxBytes;
+            private boolean _inFlight;
+            private boolean _stopped;
+            private Throwable _error;
+            private final LinkedList<Response> _ready = new LinkedList<Response>();
+            private long _readyBytes;
+            private int _readyDocs;
+            private long _cursorId;     // of the last batch handed to the iterating thread
+            private int _consumedDocs;  // in the batches handed to the iterating thread
+            private int _getMoreSize;
+            private MultiplexedDBPort.PendingReply _pending;  // of the getmore in flight
+        }
+
         private class OptionalFinalizer {
             @Override
             protected void finalize() {
@@ -535,6 +963,84 @@ public class DBApiLayer extends DB {
 
     }  // class Result
 
+    /**
+     * Collects the batches of an asynchronous find, issuing each getmore from the callback of the previous reply.
+     */
+    class AsyncFind implements ResultCallback<Response> {
+
+        AsyncFind( DBTCPConnector connector , MyCollection coll , int batchSize , int limit , DBDecoder decoder ,
+                   AsyncResult<List<DBObject>> result ){
+            _asyncConnector = connector;
+            _collection = coll;
+            _batchSize = batchSize;
+            _limit = limit;
+            _decoder = decoder;
+            _result = result;
+        }
+
+        public void onResult( Response res , Throwable t ){
+            if ( t != null ){
+                _result.setError( t );
+                return;
+            }
+
+            try {
+                if ( _host == null ){
+                    _host = res._host;
+                    if ( res.size() == 1 ){
+                        MongoException e = MongoException.parse( res.get( 0 ) );
+                        if ( e != null && ! _collection._name.equals( "$cmd" ) )
+                            throw e;
+                    }
+                }
+
+                if ( ( res._flags & Bytes.RESULTFLAG_CURSORNOTFOUND ) > 0 )
+                    throw new MongoException.CursorNotFound( _cursor , res.serverUsed() );
+
+                for ( Iterator<DBObject> i = res.iterator(); i.hasNext(); )
+                    _objects.add( i.next() );
+                _cursor = res.cursor();
+
+                boolean full = _limit > 0 && _objects.size() >= _limit;
+                if ( _cursor != 0 && ! full && _batchSize >= 0 ){
+                    OutMessage m = OutMessage.getMore( _collection , _cursor , chooseBatchSize( _batchSize , _limit , _objects.size() ) );
+                    _asyncConnector.callAsync( DBApiLayer.this , _collection , m , _host , null , _decoder , new AsyncResult<Response>( this ) );
+                    return;
+                }
+
+                if ( _cursor != 0 )
+                    killCursor();
+
+                while ( _limit > 0 && _objects.size() > _limit )
+                    _objects.remove( _objects.size() - 1 );
+                _result.setResult( _objects );
+            }
+            catch ( RuntimeException re ){
+                if ( _cursor != 0 )
+                    killCursor();
+                _result.setError( re );
+            }
+        }
+
+        private void killCursor(){
+            // queued rather than sent, as this runs on a worker thread that must not block
+            _deadCursorIds.add( new DeadCursor( _cursor , _host ) );
+            _cursor = 0;
+        }
+
+        final DBTCPConnector _asyncConnector;
+        final MyCollection _collection;
+        final int _batchSize;
+        final int _limit;
+        final DBDecoder _decoder;
+        final AsyncResult<List<DBObject>> _result;
+        final List<DBObject> _objects = new ArrayList<DBObject>();
+
+        // only touched by one callback at a time, each of which happens-after the previous one's getmore was sent
+        private ServerAddress _host;
+        private long _cursor;
+    }
+
     static class DeadCursor {
 
         DeadCursor( long a , ServerAddress b ){
@@ -21,6 +21,8 @@ package com.mongodb;
 // Mongo
 import org.bson.types.ObjectId;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,6 +32,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 /** This class provides a skeleton implementation of a database collection.
  * <p>A typical invocation sequence is thus
@@ -159,6 +162,113 @@ public abstract class DBCollection {
      */
     public abstract WriteResult insert(List<DBObject> list, WriteConcern concern, DBEncoder encoder);
 
+    /**
+     * Saves documents to the database, sending up to {@code numConnections} batches at once over separate pooled
+     * connections.  Batches are applied in no particular order, so the write concern must continue on error, and
+     * every batch is attempted even if an earlier one fails.
+     * if doc doesn't have an _id, one will be added
+     * you can get the _id that was added from doc after the insert
+     *
+     * @param list list of documents to save
+     * @param concern the write concern, which must have {@link WriteConcern#getContinueOnErrorForInsert()} set
+     * @param numConnections the maximum number of batches to send at once
+     * @return the result of the batch that completed last only, not a sum over the batches; on success every batch
+     *         succeeded, so use {@code list.size()} for the number of documents inserted
+     * @throws IllegalArgumentException if numConnections is less than 1
+     * @throws MongoException the first error, once all the batches have been attempted
+     * @see BulkInsertWriter#parallelism(int)
+     * @dochub insert
+     * @since 2.12
+     */
+    public WriteResult insert(List<DBObject> list, WriteConcern concern, int numConnections){
+        if (concern == null) {
+            throw new IllegalArgumentException("Write concern can not be null");
+        }
+        if (numConnections < 1) {
+            throw new IllegalArgumentException("numConnections must be > 0");
+        }
+
+        // at least one batch per connection, however small the documents are
+        int batchSize = Math.max(1, (list.size() + numConnections - 1) / numConnections);
+        BulkInsertWriter writer = bulkInsertWriter(concern).parallelism(numConnections)
+                                                           .maxBatchSize(batchSize)
+                                                           .maxPendingBatches(numConnections);
+        try {
+            writer.insertAll(list.iterator());
+        } finally {
+            writer.close();
+        }
+        return writer.getLastResult();
+    }
+
+    /**
+     * Inserts every document in a stream of JSON, encoding each one straight into the insert messages without
+     * building a {@code DBObject}.  The input may hold documents separated by whitespace, one per line as mongoexport
+     * writes them, or, with a single thread, one array of documents.  An _id is added to documents without one.
+     * <p>
+     * With more than one thread, the input is cut into chunks at line breaks, and each thread parses chunks and sends
+     * its own batches, so no document may span lines.  Batches are applied in no particular order, so the write
+     * concern must continue on error.
+     * </p>
+     * The reader is not closed.
+     *
+     * @param in the JSON to read
+     * @param concern the write concern for each batch
+     * @param numThreads the number of threads that parse and send documents
+     * @return the number of documents inserted
+     * @throws IOException if the reader fails
+     * @throws com.mongodb.util.JSONParseException if the input is not valid JSON
+     * @throws MongoException the first error, once all the batches have been attempted
+     * @see BulkInsertWriter#insertJSON(Reader)
+     * @dochub insert
+     * @since 2.12
+     */
+    public long importJSON(Reader in, WriteConcern concern, int numThreads) throws IOException {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be > 0");
+        }
+        if (numThreads > 1) {
+            return new ParallelJSONImport(this, concern, numThreads).run(in);
+        }
+
+        BulkInsertWriter writer = bulkInsertWriter(concern);
+        try {
+            writer.insertJSON(in);
+        } finally {
+            writer.close();
+        }
+        return writer.getNumInserted();
+    }
+
+    /**
+     * Creates a writer that inserts documents as they are handed to it, in batches sent from a background thread,
+     * using the collection's write concern.
+     * @return a new writer, which must be closed
+     * @see BulkInsertWriter
+     * @dochub insert
+     * @since 2.12
+     */
+    public BulkInsertWriter bulkInsertWriter(){
+        return bulkInsertWriter( getWriteConcern() );
+    }
+
+    /**
+     * Creates a writer that inserts documents as they are handed to it, in batches sent from a background thread.
+     * @param concern the write concern for each batch
+     * @return a new writer, which must be closed
+     * @see BulkInsertWriter
+     * @dochub insert
+     * @since 2.12
+     */
+    public BulkInsertWriter bulkInsertWriter( WriteConcern concern ){
+        return new BulkInsertWriter( this , concern , getDBEncoder() );
+    }
+
+    /**
+     * Sends an insert message that has already been filled in.
+     */
+    abstract WriteResult __insertBatch( OutMessage om , WriteConcern concern );
+
     /**
      * Performs an update operation.
      * @param q search query for old object to update
@@ -271,6 +381,197 @@ public abstract class DBCollection {
         return remove( o , getWriteConcern() );
     }
 
+    // --- asynchronous operations
+
+    /**
+     * Saves document(s) to the database without blocking the calling thread.
+     * if doc doesn't have an _id, one will be added
+     * you can get the _id that was added from doc after the insert
+     * <p>
+     * Asynchronous operations are sent on the multiplexed connections described by
+     * {@link MongoClientOptions#getMultiplexedConnectionsPerHost()}, so they do not tie up a pooled connection or a
+     * thread while they wait for the server.  Unlike the blocking operations they are not retried on failure.
+     * </p>
+     *
+     * @param arr array of documents to save
+     * @return a future for the result of the last batch sent
+     * @dochub insert
+     * @since 2.12
+     */
+    public Future<WriteResult> insertAsync( DBObject ... arr ){
+        return insertAsync( Arrays.asList( arr ) , getWriteConcern() , null );
+    }
+
+    /**
+     * Saves document(s) to the database without blocking the calling thread.
+     * if doc doesn't have an _id, one will be added
+     * you can get the _id that was added from doc after the insert
+     * <p>
+     * Unless the write concern continues on error, the batches are sent in order on one connection and no batch is
+     * sent after one that failed.  An unacknowledged result can't call getlasterror later, since the connection it
+     * was sent on is shared with other threads.
+     * </p>
+     *
+     * @param list list of documents to save
+     * @param concern the write concern
+     * @param callback called when the insert completes, may be null
+     * @return a future for the result of the last batch sent, or for the first error
+     * @see #insertAsync(DBObject...)
+     * @dochub insert
+     * @since 2.12
+     */
+    public Future<WriteResult> insertAsync( List<DBObject> list , WriteConcern concern , ResultCallback<WriteResult> callback ){
+        AsyncResult<WriteResult> result = new AsyncResult<WriteResult>( callback );
+        __insertAsync( list , concern , getDBEncoder() , result );
+        return result;
+    }
+
+    /**
+     * calls {@link DBCollection#updateAsync(DBObject, DBObject, boolean, boolean, WriteConcern, ResultCallback)} with
+     * upsert=false, multi=false and the default WriteConcern
+     * @param q search query for old object to update
+     * @param o object with which to update <tt>q</tt>
+     * @return a future for the result of the update
+     * @dochub update
+     * @since 2.12
+     */
+    public Future<WriteResult> updateAsync( DBObject q , DBObject o ){
+        return updateAsync( q , o , false , false , getWriteConcern() , null );
+    }
+
+    /**
+     * Performs an update operation without blocking the calling thread.
+     * @param q search query for old object to update
+     * @param o object with which to update <tt>q</tt>
+     * @param upsert if the database should create the element if it does not exist
+     * @param multi if the update should be applied to all objects matching
+     * @param concern the write concern
+     * @param callback called when the update completes, may be null
+     * @return a future for the result of the update
+     * @see #insertAsync(DBObject...)
+     * @dochub update
+     * @since 2.12
+     */
+    public Future<WriteResult> updateAsync( DBObject q , DBObject o , boolean upsert , boolean multi , WriteConcern concern ,
+                                            ResultCallback<WriteResult> callback ){
+        AsyncResult<WriteResult> result = new AsyncResult<WriteResult>( callback );
+        __updateAsync( q , o , upsert , multi , concern , getDBEncoder() , result );
+        return result;
+    }
+
+    /**
+     * calls {@link DBCollection#removeAsync(DBObject, WriteConcern, ResultCallback)} with the default WriteConcern
+     * @param o the object that documents to be removed must match
+     * @return a future for the result of the remove
+     * @dochub remove
+     * @since 2.12
+     */
+    public Future<WriteResult> removeAsync( DBObject o ){
+        return removeAsync( o , getWriteConcern() , null );
+    }
+
+    /**
+     * Removes objects from the database collection without blocking the calling thread.
+     * @param o the object that documents to be removed must match
+     * @param concern WriteConcern for this operation
+     * @param callback called when the remove completes, may be null
+     * @return a future for the result of the remove
+     * @see #insertAsync(DBObject...)
+     * @dochub remove
+     * @since 2.12
+     */
+    public Future<WriteResult> removeAsync( DBObject o , WriteConcern concern , ResultCallback<WriteResult> callback ){
+        AsyncResult<WriteResult> result = new AsyncResult<WriteResult>( callback );
+        __removeAsync( o , concern , getDBEncoder() , result );
+        return result;
+    }
+
+    /**
+     * calls {@link DBCollection#findAsync(DBObject, DBObject, int, ReadPreference, ResultCallback)} with no field
+     * selection, no limit and the default read preference
+     * @param query query used to search
+     * @return a future for all of the matching objects
+     * @dochub find
+     * @since 2.12
+     */
+    public Future<List<DBObject>> findAsync( DBObject query ){
+        return findAsync( query , null , 0 , getReadPreference() , null );
+    }
+
+    /**
+     * Queries for objects in this collection without blocking the calling thread.  The future completes once every
+     * batch has been fetched, so this is meant for result sets that fit comfortably in memory; use {@link DBCursor}
+     * for anything larger.
+     * @param query query used to search
+     * @param fields the fields of matching objects to return, may be null
+     * @param limit the maximum number of objects to return, 0 for no limit
+     * @param readPref the read preference
+     * @param callback called with the matching objects, may be null
+     * @return a future for the matching objects
+     * @see #insertAsync(DBObject...)
+     * @dochub find
+     * @since 2.12
+     */
+    public Future<List<DBObject>> findAsync( DBObject query , DBObject fields , int limit , ReadPreference readPref ,
+                                             ResultCallback<List<DBObject>> callback ){
+        AsyncResult<List<DBObject>> result = new AsyncResult<List<DBObject>>( callback );
+        __findAsync( wrapQuery( query , null , readPref ) , fields , 0 , limit , getOptions() , readPref , getDecoder() , result );
+        return result;
+    }
+
+    /**
+     * calls {@link DBCollection#findOneAsync(DBObject, DBObject, ReadPreference, ResultCallback)} with no field
+     * selection and the default read preference
+     * @param query the query object
+     * @return a future for the object found, or <code>null</code> if no such object exists
+     * @dochub find
+     * @since 2.12
+     */
+    public Future<DBObject> findOneAsync( DBObject query ){
+        return findOneAsync( query , null , getReadPreference() , null );
+    }
+
+    /**
+     * Returns a single object from this collection matching the query, without blocking the calling thread.
+     * @param query the query object
+     * @param fields fields to return, may be null
+     * @param readPref the read preference
+     * @param callback called with the object found, may be null
+     * @return a future for the object found, or <code>null</code> if no such object exists
+     * @see #insertAsync(DBObject...)
+     * @dochub find
+     * @since 2.12
+     */
+    public Future<DBObject> findOneAsync( DBObject query , final DBObject fields , ReadPreference readPref ,
+                                          ResultCallback<DBObject> callback ){
+        final AsyncResult<DBObject> result = new AsyncResult<DBObject>( callback );
+        AsyncResult<List<DBObject>> list = new AsyncResult<List<DBObject>>( new ResultCallback<List<DBObject>>() {
+            public void onResult( List<DBObject> objects , Throwable t ){
+                if ( t != null ){
+                    result.setError( t );
+                    return;
+                }
+                DBObject obj = objects.isEmpty() ? null : objects.get( 0 );
+                if ( obj != null && ( fields != null && fields.keySet().size() > 0 ) ){
+                    obj.markAsPartialObject();
+                }
+                result.setResult( obj );
+            }
+        });
+        __findAsync( wrapQuery( query , null , readPref ) , fields , -1 , 0 , getOptions() , readPref , getDecoder() , list );
+        return result;
+    }
+
+    abstract void __insertAsync( List<DBObject> list , WriteConcern concern , DBEncoder encoder , AsyncResult<WriteResult> result );
+
+    abstract void __updateAsync( DBObject q , DBObject o , boolean upsert , boolean multi , WriteConcern concern , DBEncoder encoder ,
+                                 AsyncResult<WriteResult> result );
+
+    abstract void __removeAsync( DBObject o , WriteConcern concern , DBEncoder encoder , AsyncResult<WriteResult> result );
+
+    abstract void __findAsync( DBObject ref , DBObject fields , int batchSize , int limit , int options , ReadPreference readPref ,
+                               DBDecoder decoder , AsyncResult<List<DBObject>> result );
+
 
     /**
      * Finds objects
@@ -280,6 +581,13 @@ public abstract class DBCollection {
     abstract Iterator<DBObject> __find( DBObject ref , DBObject fields , int numToSkip , int batchSize , int limit, int options,
                                         ReadPreference readPref, DBDecoder decoder, DBEncoder encoder );
 
+    /**
+     * Finds objects, sending the query to a second member if the first is slow to reply
+     * @see DBCursor#hedge(double)
+     */
+    abstract Iterator<DBObject> __findHedged( DBObject ref , DBObject fields , int numToSkip , int batchSize , int limit , int options ,
+                                              TaggableReadPreference readPref , DBDecoder decoder , double percentile );
+
 
     /**
      * Calls {@link DBCollection#find(com.mongodb.DBObject, com.mongodb.DBObject, int, int)} and applies the query options
@@ -660,6 +968,144 @@ public abstract class DBCollection {
         return new DBCursor( this, null, null, getReadPreference());
     }
 
+    /**
+     * Splits a query into cursors over disjoint ranges of _id, which together return every matching document.
+     * <p>
+     * For an empty query, the split points come from the server's {@code splitVector} command.  Otherwise, or when
+     * that is not available (e.g. through mongos), they are found by reading the _id of every matching document in
+     * order, on the calling thread, before any cursor is returned, so that each cursor returns about the same number
+     * of documents.  That walk reads every matching _id once, which for a large result can take a good part of the
+     * time that reading the cursors in parallel saves.  Since ranges compare values of one BSON type at a time, every
+     * document's _id should be of the same type.
+     * </p>
+     * @param query the query, or null for every document
+     * @param fields fields to return, or null for all
+     * @param numCursors the number of cursors wanted
+     * @return up to {@code numCursors} cursors, fewer if there are too few matching documents to split
+     * @throws MongoException
+     */
+    public List<DBCursor> splitCursors( DBObject query , DBObject fields , int numCursors ){
+        if ( numCursors <= 0 )
+            throw new IllegalArgumentException( "numCursors must be > 0" );
+
+        List<Object> points = _idSplitPoints( query , numCursors );
+        List<DBCursor> cursors = new ArrayList<DBCursor>( points.size() + 1 );
+        Object lower = null;
+        for ( int i = 0; i <= points.size(); i++ ){
+            Object upper = i < points.size() ? points.get( i ) : null;
+            cursors.add( find( _idRange( query , lower , upper ) , fields ) );
+            lower = upper;
+        }
+        return cursors;
+    }
+
+    /**
+     * Scans the documents matching a query with several threads, each reading one of the cursors from
+     * {@link #splitCursors(DBObject, DBObject, int)} over its own pooled connection.  The documents are returned in
+     * no particular order.  The returned iterator must be closed if it is not read to the end.  The split points are
+     * found as {@link #splitCursors(DBObject, DBObject, int)} describes, before the threads start.
+     * @param query the query, or null for every document
+     * @param fields fields to return, or null for all
+     * @param numThreads the number of cursors to read at once
+     * @return an iterator over the union of the cursors
+     * @throws MongoException
+     */
+    public ParallelCursor parallelScan( DBObject query , DBObject fields , int numThreads ){
+        return new ParallelCursor( splitCursors( query , fields , numThreads ) , 1000 );
+    }
+
+    private List<Object> _idSplitPoints( DBObject query , int n ){
+        if ( n == 1 )
+            return Collections.emptyList();
+
+        long count = getCount( query );
+        if ( count < 2 * n )
+            return Collections.emptyList();
+
+        List<Object> points = null;
+        if ( query == null || query.keySet().isEmpty() )
+            points = _splitVector( n );
+        if ( points != null )
+            return points;
+
+        // one walk over the matching _ids in order, rather than a skip query per point that rescans everything before it
+        points = new ArrayList<Object>( n - 1 );
+        DBObject idOnly = new BasicDBObject( "_id" , 1 );
+        DBCursor c = find( query , idOnly ).sort( idOnly ).batchSize( 10000 );
+        try {
+            long pos = 0;
+            int i = 1;
+            while ( i < n && c.hasNext() ){
+                Object id = c.next().get( "_id" );
+                if ( pos++ == count * i / n ){
+                    _addSplitPoint( points , id );
+                    i++;
+                }
+            }
+        }
+        finally {
+            c.close();
+        }
+        return points;
+    }
+
+    private List<Object> _splitVector( int n ){
+        List<?> keys;
+        try {
+            Object size = getStats().get( "size" );
+            if ( ! ( size instanceof Number ) )
+                return null;
+
+            BasicDBObject cmd = new BasicDBObject( "splitVector" , getFullName() );
+            cmd.append( "keyPattern" , new BasicDBObject( "_id" , 1 ) );
+            cmd.append( "maxChunkSizeBytes" , Math.max( 1 , ((Number) size).longValue() / n ) );
+            CommandResult res = getDB().command( cmd , getOptions() , getReadPreference() );
+            if ( ! res.ok() || ! ( res.get( "splitKeys" ) instanceof List ) )
+                return null;
+            keys = (List<?>) res.get( "splitKeys" );
+        }
+        catch ( MongoException e ){
+            return null;
+        }
+
+        // the server may split finer than asked, so take n - 1 evenly spaced keys
+        List<Object> points = new ArrayList<Object>( n - 1 );
+        int step = Math.max( 1 , ( keys.size() + 1 ) / n );
+        for ( int i = step - 1; i < keys.size() && points.size() < n - 1; i += step )
+            _addSplitPoint( points , ((DBObject) keys.get( i )).get( "_id" ) );
+        return points;
+    }
+
+    private static void _addSplitPoint( List<Object> points , Object id ){
+        if ( id == null )
+            return;
+        if ( ! points.isEmpty() && id.equals( points.get( points.size() - 1 ) ) )
+            return;
+        points.add( id );
+    }
+
+    private static DBObject _idRange( DBObject query , Object lower , Object upper ){
+        BasicDBObject range = new BasicDBObject();
+        if ( lower != null )
+            range.put( "$gte" , lower );
+        if ( upper != null )
+            range.put( "$lt" , upper );
+        if ( range.isEmpty() )
+            return query;
+
+        if ( query == null || query.keySet().isEmpty() )
+            return new BasicDBObject( "_id" , range );
+
+        if ( ! query.containsField( "_id" ) ){
+            BasicDBObject q = new BasicDBObject();
+            q.putAll( query );
+            q.put( "_id" , range );
+            return q;
+        }
+
+        return new BasicDBObject( "$and" , Arrays.asList( query , new BasicDBObject( "_id" , range ) ) );
+    }
+
     /**
      * Returns a single object from this collection.
      * @return the object found, or <code>null</code> if the collection is empty
@@ -728,14 +1174,37 @@ public abstract class DBCollection {
      */
     public DBObject findOne( DBObject o, DBObject fields, DBObject orderBy, ReadPreference readPref ){
 
-        QueryOpBuilder queryOpBuilder = new QueryOpBuilder().addQuery(o).addOrderBy(orderBy);
-
-        if (getDB().getMongo().isMongosConnection()) {
-            queryOpBuilder.addReadPreference(readPref);
+        Iterator<DBObject> i = __find(wrapQuery(o, orderBy, readPref), fields , 0 , -1 , 0, getOptions(), readPref, getDecoder() );
+        
+        DBObject obj = (i.hasNext() ? i.next() : null);
+        if ( obj != null && ( fields != null && fields.keySet().size() > 0 ) ){
+            obj.markAsPartialObject();
         }
+        return obj;
+    }
+
+    /**
+     * Returns a single object from this collection matching the query, hedging the query as
+     * {@link DBCursor#hedge(double)} describes.
+     * @param o the query object
+     * @param fields fields to return
+     * @param orderBy fields to order by
+     * @param readPref the read preference, which picks both members
+     * @param hedgePercentile the fraction of the first member's latencies to wait out before hedging, such as 0.95
+     * @return the object found, or <code>null</code> if no such object exists
+     * @throws MongoException
+     * @dochub find
+     * @since 2.12
+     */
+    public DBObject findOne( DBObject o, DBObject fields, DBObject orderBy, TaggableReadPreference readPref, double hedgePercentile ){
+        if ( hedgePercentile < 0 || hedgePercentile >= 1 )
+            throw new IllegalArgumentException( "hedgePercentile must be >= 0 and < 1" );
+        if ( hedgePercentile == 0 )
+            return findOne( o, fields, orderBy, readPref );
+
+        Iterator<DBObject> i = __findHedged( wrapQuery( o, orderBy, readPref ), fields, 0, -1, 0, getOptions(), readPref, getDecoder(),
+                                             hedgePercentile );
 
-        Iterator<DBObject> i = __find(queryOpBuilder.get(), fields , 0 , -1 , 0, getOptions(), readPref, getDecoder() );
-        
         DBObject obj = (i.hasNext() ? i.next() : null);
         if ( obj != null && ( fields != null && fields.keySet().size() > 0 ) ){
             obj.markAsPartialObject();
@@ -743,6 +1212,15 @@ public abstract class DBCollection {
         return obj;
     }
 
+    private DBObject wrapQuery( DBObject o, DBObject orderBy, ReadPreference readPref ){
+        QueryOpBuilder queryOpBuilder = new QueryOpBuilder().addQuery(o).addOrderBy(orderBy);
+
+        if (getDB().getMongo().isMongosConnection()) {
+            queryOpBuilder.addReadPreference(readPref);
+        }
+        return queryOpBuilder.get();
+    }
+
     // Only create a new decoder if there is a decoder factory explicitly set on the collection.  Otherwise return null
     // so that DBPort will use a cached decoder from the default factory.
     private DBDecoder getDecoder() {
@@ -97,6 +97,9 @@ public class DBCursor implements Iterator<DBObject> , Iterable<DBObject>, Closea
         c._skip = _skip;
         c._options = _options;
         c._batchSize = _batchSize;
+        c._prefetchDepth = _prefetchDepth;
+        c._hedgePercentile = _hedgePercentile;
+        c._prefetchMaxBytes = _prefetchMaxBytes;
         c._snapshot = _snapshot;
         c._explain = _explain;
         if ( _specialFields != null )
@@ -264,6 +267,56 @@ public class DBCursor implements Iterator<DBObject> , Iterable<DBObject>, Closea
         return this;
     }
 
+    /**
+     * Fetches batches in the background ahead of the one being iterated, so that iterating a large result does not
+     * wait for a network round trip at every batch boundary.  Prefetching stops while the batches fetched ahead add
+     * up to <tt>maxBytes</tt> or more, and resumes as they are consumed.
+     *
+     * Prefetching is off by default.  It has no effect on tailable cursors.  Like {@link #batchSize(int)}, it can be
+     * changed after the cursor has started to be iterated.
+     *
+     * @param depth the number of batches to fetch ahead, 0 to turn prefetching off
+     * @param maxBytes the most memory that batches fetched ahead may use, in bytes
+     * @return this
+     * @since 2.12
+     */
+    public DBCursor prefetch( int depth , long maxBytes ){
+        if ( depth < 0 )
+            throw new IllegalArgumentException( "depth must be >= 0" );
+        if ( maxBytes <= 0 )
+            throw new IllegalArgumentException( "maxBytes must be > 0" );
+
+        _prefetchDepth = depth;
+        _prefetchMaxBytes = maxBytes;
+
+        if ( _it instanceof DBApiLayer.Result )
+            ((DBApiLayer.Result)_it).setPrefetch( depth , maxBytes );
+        return this;
+    }
+
+    /**
+     * Hedges the query against a slow member.  If the member that a {@link TaggableReadPreference} picks hasn't
+     * replied by the time it has answered the given fraction of its recent operations, the query is also sent to a
+     * second eligible member, and whichever replies first is used.  A cursor the other opens is killed.
+     *
+     * Only hedge idempotent reads, since the query may run on both members.  Hedging has no effect with the primary
+     * read preference, without a replica set, or before any latencies have been recorded for the first member.
+     *
+     * @param percentile the fraction of the first member's latencies to wait out, such as 0.95, or 0 to stop hedging
+     * @return this
+     * @throws IllegalStateException if the cursor has started to be iterated through
+     * @since 2.12
+     */
+    public DBCursor hedge( double percentile ){
+        if ( percentile < 0 || percentile >= 1 )
+            throw new IllegalArgumentException( "percentile must be >= 0 and < 1" );
+        if ( _it != null )
+            throw new IllegalStateException( "can't set hedging after executing query" );
+
+        _hedgePercentile = percentile;
+        return this;
+    }
+
     /**
      * Discards a given number of elements at the beginning of the cursor.
      * @param n the number of elements to skip
@@ -368,8 +421,16 @@ public class DBCursor implements Iterator<DBObject> , Iterable<DBObject>, Closea
             builder.addReadPreference(_readPref);
         }
 
-        _it = _collection.__find(builder.get(), _keysWanted, _skip, _batchSize, _limit,
-                _options, _readPref, getDecoder());
+        if (_hedgePercentile > 0 && _readPref instanceof TaggableReadPreference) {
+            _it = _collection.__findHedged(builder.get(), _keysWanted, _skip, _batchSize, _limit,
+                    _options, (TaggableReadPreference) _readPref, getDecoder(), _hedgePercentile);
+        } else {
+            _it = _collection.__find(builder.get(), _keysWanted, _skip, _batchSize, _limit,
+                    _options, _readPref, getDecoder());
+        }
+
+        if ( _prefetchDepth > 0 && _it instanceof DBApiLayer.Result )
+            ((DBApiLayer.Result)_it).setPrefetch( _prefetchDepth , _prefetchMaxBytes );
     }
 
     // Only create a new decoder if there is a decoder factory explicitly set on the collection.  Otherwise return null
@@ -714,6 +775,9 @@ public class DBCursor implements Iterator<DBObject> , Iterable<DBObject>, Closea
     private boolean _explain = false;
     private int _limit = 0;
     private int _batchSize = 0;
+    private int _prefetchDepth = 0;
+    private long _prefetchMaxBytes = 0;
+    private double _hedgePercentile = 0;
     private int _skip = 0;
     private boolean _snapshot = false;
     private int _options = 0;
@@ -98,16 +98,17 @@ public class DBPort {
         go( msg , null );
     }
     
-    private synchronized Response go( OutMessage msg , DBCollection coll )
+    private Response go( OutMessage msg , DBCollection coll )
         throws IOException {
         return go( msg , coll , false, null );
     }
 
-    private synchronized Response go( OutMessage msg , DBCollection coll , DBDecoder decoder ) throws IOException{
+    private Response go( OutMessage msg , DBCollection coll , DBDecoder decoder ) throws IOException{
         return go( msg, coll, false, decoder );
     }
 
-    private synchronized Response go(OutMessage msg, DBCollection coll, boolean forceResponse, DBDecoder decoder)
+    // overridden by MultiplexedDBPort, which shares the socket between threads instead of holding it for the round-trip
+    synchronized Response go(OutMessage msg, DBCollection coll, boolean forceResponse, DBDecoder decoder)
         throws IOException {
 
         if ( _processingResponse ){
@@ -140,7 +141,7 @@ public class DBPort {
                 return null;
             
             _processingResponse = true;
-            return new Response( _sa , coll , _in , (decoder == null ? _decoder : decoder) );
+            return new Response( _sa , coll , _in , (decoder == null ? _decoder : decoder) , _readBuffer );
         }
         catch ( IOException ioe ){
             close();
@@ -351,10 +352,11 @@ public class DBPort {
     final MongoOptions _options;
     final Logger _logger;
     final DBDecoder _decoder;
+    private final Response.ReadBuffer _readBuffer = new Response.ReadBuffer();  // only used while holding the monitor
     
     private volatile Socket _socket;
-    private volatile InputStream _in;
-    private volatile OutputStream _out;
+    volatile InputStream _in;
+    volatile OutputStream _out;
 
     private volatile boolean _processingResponse;
 
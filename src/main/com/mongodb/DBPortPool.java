@@ -19,7 +19,7 @@
 package com.mongodb;
 
 import com.mongodb.util.ConnectionPoolStatisticsBean;
-import com.mongodb.util.SimplePool;
+import com.mongodb.util.ConcurrentPool;
 import com.mongodb.util.management.JMException;
 import com.mongodb.util.management.MBeanServerFactory;
 
@@ -39,7 +39,7 @@ import java.util.logging.Level;
  * @deprecated This class is NOT a part of public API and will be dropped in 3.x versions.
  */
 @Deprecated
-public class DBPortPool extends SimplePool<DBPort> {
+public class DBPortPool extends ConcurrentPool<DBPort> {
 
     public String getHost() {
         return _addr.getHost();
@@ -49,7 +49,7 @@ public class DBPortPool extends SimplePool<DBPort> {
         return _addr.getPort();
     }
 
-    public synchronized ConnectionPoolStatisticsBean getStatistics() {
+    public ConnectionPoolStatisticsBean getStatistics() {
         return new ConnectionPoolStatisticsBean(getTotal(), getInUse(), getInUseConnections());
     }
 
@@ -105,6 +105,13 @@ public class DBPortPool extends SimplePool<DBPort> {
             return p;
         }
 
+        /**
+         * @return the pool for the given server, or null if nothing has been sent to it yet
+         */
+        DBPortPool peek( ServerAddress addr ){
+            return _pools.get( addr );
+        }
+
         private DBPortPool createPool(final ServerAddress addr) {
             if (isJava5 || _options.isAlwaysUseMBeans()) {
                 return new Java5MongoConnectionPool(addr, _options);
@@ -211,21 +218,58 @@ public class DBPortPool extends SimplePool<DBPort> {
         _options = options;
         _addr = addr;
         _waitingSem = new Semaphore( _options.connectionsPerHost * _options.threadsAllowedToBlockForConnectionMultiplier );
+        // asynchronous operations always need at least one, but it's not opened until they're used
+        _multiplexed = new MultiplexedDBPort[ Math.max( 1 , _options.multiplexedConnectionsPerHost ) ];
+        for ( int i = 0; i < _multiplexed.length; i++ )
+            _multiplexed[i] = new MultiplexedDBPort( _addr , this , _options );
     }
 
-    protected long memSize( DBPort p ){
-        return 0;
+    /**
+     * @return true if this pool has shared connections that reads can be multiplexed over
+     */
+    boolean isMultiplexed(){
+        return _options.multiplexedConnectionsPerHost > 0;
     }
 
-    @Override
-    protected int pick( int recommended, boolean couldCreate ){
-        int id = System.identityHashCode(Thread.currentThread());
-        for (int i = _avail.size() - 1; i >= 0; i--){
-            if ( _avail.get(i)._lastThread == id )
-                return i;
+    /**
+     * Gets the shared connection with the fewest replies outstanding.  The port is not checked out, so it does not
+     * count against {@code connectionsPerHost} and passing it to {@link #done(DBPort)} has no effect.
+     */
+    MultiplexedDBPort getMultiplexed(){
+        int start = ( _nextMultiplexed.getAndIncrement() & Integer.MAX_VALUE ) % _multiplexed.length;
+        MultiplexedDBPort best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for ( int i = 0; i < _multiplexed.length; i++ ){
+            MultiplexedDBPort p = _multiplexed[ ( start + i ) % _multiplexed.length ];
+            int pending = p.getNumPending();
+            if ( pending < bestPending ){
+                best = p;
+                bestPending = pending;
+            }
         }
+        return best;
+    }
+
+    @Override
+    public void done( DBPort p ){
+        if ( p instanceof MultiplexedDBPort )
+            return;
+        super.done( p );
+    }
 
-        return couldCreate ? -1 : recommended;
+    @Override
+    protected void close(){
+        super.close();
+        closeMultiplexed();
+    }
+
+    private void closeMultiplexed(){
+        for ( MultiplexedDBPort p : _multiplexed )
+            p.close();
+    }
+
+    protected long memSize( DBPort p ){
+        return 0;
     }
 
     /**
@@ -253,6 +297,12 @@ public class DBPortPool extends SimplePool<DBPort> {
         return port;
     }
 
+    // as the old pick(): a thread that is offered another thread's port opens its own while there is room
+    @Override
+    protected boolean isPreferred( DBPort port ){
+        return port._lastThread == System.identityHashCode(Thread.currentThread());
+    }
+
     // return true if the exception is recoverable
     boolean gotError( Exception e ){
         if (e instanceof java.nio.channels.ClosedByInterruptException){
@@ -286,6 +336,8 @@ public class DBPortPool extends SimplePool<DBPort> {
             done(p);
         }
 
+        closeMultiplexed();
+
         return false;
     }
 
@@ -303,8 +355,18 @@ public class DBPortPool extends SimplePool<DBPort> {
         return _addr;
     }
 
+    /**
+     * @return the latencies and in-flight count of the operations sent to this server
+     */
+    ServerStats getStats() {
+        return _stats;
+    }
+
     final MongoOptions _options;
     final private Semaphore _waitingSem;
+    final private MultiplexedDBPort[] _multiplexed;
+    final private AtomicInteger _nextMultiplexed = new AtomicInteger();
     final ServerAddress _addr;
+    final ServerStats _stats = new ServerStats();
     boolean _everWorked = false;
 }
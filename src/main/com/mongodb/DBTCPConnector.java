@@ -19,10 +19,19 @@
 package com.mongodb;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -243,9 +252,27 @@ public class DBTCPConnector implements DBConnector {
 
         Response res = null;
         boolean retry = false;
+        // a tailing getmore waits on the server for new data, so how long it takes is not the server's latency
+        ServerStats stats = m.hasOption( Bytes.QUERYOPTION_TAILABLE ) || m.hasOption( Bytes.QUERYOPTION_AWAITDATA )
+                            ? null : port.getPool().getStats();
         try {
             port.checkAuth( db.getMongo() );
-            res = port.call( m , coll, decoder );
+            if ( stats != null )
+                stats.started();
+            long start = System.nanoTime();
+            boolean replied = false;
+            try {
+                res = port.call( m , coll, decoder );
+                replied = true;
+            }
+            finally {
+                if ( stats != null ){
+                    if ( replied )
+                        stats.finished( System.nanoTime() - start );
+                    else
+                        stats.failed();
+                }
+            }
             if ( res._responseTo != m.getId() )
                 throw new MongoException( "ids don't match" );
         }
@@ -270,7 +297,7 @@ public class DBTCPConnector implements DBConnector {
         ServerError err = res.getError();
 
         if ( err != null && err.isNotMasterError() ){
-            checkMaster( true , true );
+            refreshMaster( true );
             if ( retries <= 0 ){
                 throw new MongoException( "not talking to master and retries used up" );
             }
@@ -349,6 +376,7 @@ public class DBTCPConnector implements DBConnector {
     /**
      * This method is called in case of an IOException.
      * It will potentially trigger a checkMaster() to check the status of all servers.
+     * It may park the calling thread until a new master is found, so async and reader threads use {@link #_errorAsync}.
      * @param t the exception thrown
      * @param secondaryOk secondaryOk flag
      * @return true if the request should be retried, false otherwise
@@ -364,11 +392,498 @@ public class DBTCPConnector implements DBConnector {
         // if no server is up, we wont retry until the updater thread finds one
         // this is to cut down the volume of requests/errors when all servers are down
         if ( _connectionStatus.hasServerUp() ){
-            checkMaster( true , !secondaryOk );
+            ReplicaSetStatus replicaSetStatus = getReplicaSetStatus();
+            if ( secondaryOk && replicaSetStatus != null )
+                replicaSetStatus.requestUpdate();
+            else
+                refreshMaster( !secondaryOk );
         }
         return _connectionStatus.hasServerUp();
     }
 
+    /**
+     * The non-blocking counterpart of {@link #_error} for the async worker threads and the reader threads of the
+     * multiplexed ports, which must not park until a new master is found: only asks the replica set updater for a
+     * pass.  The next blocking operation installs whatever master it finds.
+     */
+    void _errorAsync(){
+        ReplicaSetStatus replicaSetStatus = getReplicaSetStatus();
+        if ( replicaSetStatus != null )
+            replicaSetStatus.requestUpdate();
+    }
+
+    /**
+     * Called when the master fails with an I/O error or says it is no longer master.  For a replica set, asks for a
+     * pass of the updater straight away and parks the calling thread until {@link #setMaster} installs a master that
+     * this pass, or a later one, has confirmed.  Threads that fail together share one pass.
+     * @param failIfNoMaster whether to throw if no master is installed within the connect timeout
+     * @throws MongoException if there is no master and failIfNoMaster is true
+     */
+    void refreshMaster( boolean failIfNoMaster ){
+        ReplicaSetStatus replicaSetStatus = getReplicaSetStatus();
+        if ( replicaSetStatus == null ){
+            checkMaster( true , failIfNoMaster );
+            return;
+        }
+
+        long pass = replicaSetStatus.requestUpdate();
+        int timeoutMS = _mongo.getMongoOptions().getConnectTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMS > 0 ? timeoutMS : DEFAULT_MASTER_WAIT_MS );
+        synchronized ( this ){
+            long remaining;
+            while ( replicaSetStatus.getMasterPass() < pass && !_closed.get()
+                    && ( remaining = deadline - System.nanoTime() ) > 0 ){
+                try {
+                    TimeUnit.NANOSECONDS.timedWait( this , remaining );
+                }
+                catch ( InterruptedException e ){
+                    throw new MongoInterruptedException( "Interrupted while waiting for a new master" , e );
+                }
+            }
+        }
+        if ( replicaSetStatus.getMasterPass() < pass && failIfNoMaster )
+            throw new MongoException( "can't find a master" );
+    }
+
+    /**
+     * @return the live operation statistics for a server
+     */
+    ServerStats getServerStats( ServerAddress addr ){
+        DBPortPool.Holder holder = _portHolder;
+        DBPortPool pool = holder != null ? holder.peek( addr ) : null;
+        return pool != null ? pool.getStats() : null;
+    }
+
+    /**
+     * Chooses the pool of the server that an operation with the given read preference should go to.
+     * @throws MongoException if there is no suitable server
+     */
+    DBPortPool choosePool( ReadPreference readPref ){
+        if (getReplicaSetStatus() == null){
+            if (_masterPortPool == null) {
+                // this should only happen in rare case that no master was ever found
+                // may get here at startup if it's a read, slaveOk=true, and ALL servers are down
+                throw new MongoException("Rare case where master=null, probably all servers are down");
+            }
+            return _masterPortPool;
+        }
+
+        ReplicaSetStatus.ReplicaSet replicaSet = getReplicaSetStatus()._replicaSetHolder.get();
+        ConnectionStatus.Node node = readPref.getNode(replicaSet);
+
+        if (node == null)
+            throw new MongoException("No replica set members available in " +  replicaSet + " for " + readPref.toDBObject().toString());
+
+        return _portHolder.get(node.getServerAddress());
+    }
+
+    /**
+     * Sends a read operation on a multiplexed port without waiting for the reply.  The result is completed on one of
+     * the async worker threads.  Unlike {@link #call}, failed operations are not retried, and there is no socket
+     * timeout: a caller that waits on the result bounds the wait itself.
+     * @return the reply it is waiting for, or null if it failed before the message was sent
+     */
+    MultiplexedDBPort.PendingReply callAsync( final DB db, final DBCollection coll, final OutMessage m, final ServerAddress hostNeeded,
+                    ReadPreference readPref, final DBDecoder decoder, final AsyncResult<Response> result ){
+        try {
+            if (readPref == null)
+                readPref = ReadPreference.primary();
+
+            if (readPref == ReadPreference.primary() && m.hasOption( Bytes.QUERYOPTION_SLAVEOK ))
+                readPref = ReadPreference.secondaryPreferred();
+
+            final boolean secondaryOk = !(readPref == ReadPreference.primary());
+
+            _checkClosed();
+            if (!secondaryOk || getReplicaSetStatus() == null)
+                checkMaster( false, !secondaryOk );
+
+            DBPortPool pool = hostNeeded != null ? _portHolder.get( hostNeeded ) : choosePool( readPref );
+            final MultiplexedDBPort port = pool.getMultiplexed();
+
+            final MultiplexedDBPort.PendingReply reply;
+            try {
+                port.checkAuth( db.getMongo() );
+                reply = port.send( m, coll, false, decoder );
+            }
+            catch ( IOException ioe ){
+                asyncFailed( port, ioe, new MongoException.Network( "Read operation to server " + port.host() + " failed on database " + db , ioe ), result );
+                return null;
+            }
+
+            onReply( reply, new Runnable() {
+                public void run() {
+                    try {
+                        Response res = reply.get();
+                        if ( res._responseTo != m.getId() )
+                            throw new MongoException( "ids don't match" );
+
+                        ServerError err = res.getError();
+                        if ( err != null && err.isNotMasterError() ){
+                            _errorAsync();
+                            throw new MongoException( "not talking to master" );
+                        }
+                        result.setResult( res );
+                    }
+                    catch ( IOException ioe ){
+                        asyncFailed( port, ioe, new MongoException.Network( "Read operation to server " + port.host() + " failed on database " + db , ioe ), result );
+                    }
+                    catch ( RuntimeException re ){
+                        result.setError( re );
+                    }
+                }
+            });
+            return reply;
+        }
+        catch ( RuntimeException re ){
+            result.setError( re );
+            return null;
+        }
+        finally {
+            m.doneWithMessage();
+        }
+    }
+
+    /**
+     * Sends a query to the member that the read preference picks and, if that member hasn't replied by the time it
+     * usually has answered the given fraction of its operations, sends the same query to a second eligible member.
+     * The first good reply is returned, and a cursor opened by the other is killed once its reply arrives.
+     * <p>
+     * Falls back to {@link #call} when there is no replica set, no second eligible member, or no latencies recorded
+     * for the first yet.  Only idempotent reads should be hedged, since the query may run twice.
+     * </p>
+     * @param percentile the fraction, such as 0.95, of the first member's operations to wait out before hedging
+     */
+    Response callHedged( DB db , DBCollection coll , OutMessage m , TaggableReadPreference readPref , DBDecoder decoder ,
+                         double percentile ){
+        ReplicaSetStatus replicaSetStatus = getReplicaSetStatus();
+        ReplicaSetStatus.ReplicaSetNode first = null;
+        ReplicaSetStatus.ReplicaSetNode second = null;
+        if ( replicaSetStatus != null ){
+            ReplicaSetStatus.ReplicaSet replicaSet = replicaSetStatus._replicaSetHolder.get();
+            first = readPref.getNode( replicaSet );
+            for ( int i = 0; first != null && second == null && i < HEDGE_CHOICES; i++ ){
+                ReplicaSetStatus.ReplicaSetNode node = readPref.getNode( replicaSet );
+                if ( node != null && ! node.getServerAddress().equals( first.getServerAddress() ) )
+                    second = node;
+            }
+        }
+        ServerStats stats = second != null ? getServerStats( first.getServerAddress() ) : null;
+        long delayMicros = stats != null ? stats.getPercentileMicros( percentile ) : 0;
+        if ( delayMicros == 0 )
+            return call( db , coll , m , null , 2 , readPref , decoder );
+
+        try {
+            _checkClosed();
+            return new HedgedCall( db , coll , m , decoder ).run( first.getServerAddress() , second.getServerAddress() , delayMicros );
+        }
+        finally {
+            m.doneWithMessage();
+        }
+    }
+
+    /**
+     * One query sent on multiplexed ports to up to two members.  Each reply is queued as it arrives; the first good
+     * one wins.
+     */
+    class HedgedCall {
+
+        HedgedCall( DB db , DBCollection coll , OutMessage m , DBDecoder decoder ){
+            _db = db;
+            _coll = coll;
+            _m = m;
+            _decoder = decoder;
+        }
+
+        Response run( ServerAddress first , ServerAddress second , long delayMicros ){
+            Exception error = null;
+            try {
+                _send( first );
+            }
+            catch ( IOException ioe ){
+                error = ioe;
+            }
+
+            try {
+                HedgedLeg answered = _legs.isEmpty() ? null : _answers.poll( delayMicros , TimeUnit.MICROSECONDS );
+                if ( answered == null || _failed( answered ) != null ){
+                    try {
+                        _send( second );
+                    }
+                    catch ( IOException ioe ){
+                        error = ioe;
+                    }
+                }
+                if ( answered != null && _failed( answered ) == null )
+                    return _won( answered );
+
+                int outstanding = _legs.size() - ( answered != null ? 1 : 0 );
+                long timeoutMS = _mongo.getMongoOptions().socketTimeout;
+                while ( outstanding-- > 0 ){
+                    answered = timeoutMS > 0 ? _answers.poll( timeoutMS , TimeUnit.MILLISECONDS ) : _answers.take();
+                    if ( answered == null ){
+                        error = new SocketTimeoutException( "no reply to hedged query after " + timeoutMS + "ms" );
+                        break;
+                    }
+                    Exception e = _failed( answered );
+                    if ( e == null )
+                        return _won( answered );
+                    error = e;
+                }
+            }
+            catch ( InterruptedException e ){
+                _abandon( null );
+                throw new MongoInterruptedException( "Interrupted waiting for a hedged query" , e );
+            }
+
+            _abandon( null );
+            if ( error instanceof RuntimeException )
+                throw (RuntimeException) error;
+            throw new MongoException.Network( "Hedged read operation failed on database " + _db , (IOException) error );
+        }
+
+        private void _send( ServerAddress addr ) throws IOException {
+            DBPortPool pool = _portHolder.get( addr );
+            MultiplexedDBPort port = pool.getMultiplexed();
+            MultiplexedDBPort.PendingReply reply;
+            try {
+                port.checkAuth( _db.getMongo() );
+                reply = port.send( _m , _coll , false , _decoder );
+            }
+            catch ( IOException ioe ){
+                _myPort.error( port , ioe );
+                _errorAsync();
+                throw ioe;
+            }
+
+            final HedgedLeg leg = new HedgedLeg( pool , port , reply );
+            _legs.add( leg );
+            reply.setListener( new Runnable() {
+                public void run() {
+                    _answers.offer( leg );
+                }
+            });
+        }
+
+        // the error of an answered leg, or null if its reply is good
+        private Exception _failed( HedgedLeg leg ){
+            try {
+                Response res = leg._reply.get();
+                leg.finish( true );
+                if ( res._responseTo != _m.getId() )
+                    return new MongoException( "ids don't match" );
+                ServerError err = res.getError();
+                if ( err != null && err.isNotMasterError() ){
+                    _errorAsync();
+                    return new MongoException( "not talking to master or secondary" );
+                }
+                return null;
+            }
+            catch ( IOException ioe ){
+                leg.finish( false );
+                _myPort.error( leg._port , ioe );
+                _errorAsync();
+                return ioe;
+            }
+            catch ( RuntimeException re ){
+                leg.finish( false );
+                return re;
+            }
+        }
+
+        private Response _won( HedgedLeg winner ){
+            _abandon( winner );
+            try {
+                return winner._reply.get();
+            }
+            catch ( IOException ioe ){
+                // _failed has already seen this reply succeed
+                throw new MongoException.Network( ioe );
+            }
+        }
+
+        // once the other member answers, its reply is dropped and any cursor it opened is killed
+        private void _abandon( HedgedLeg winner ){
+            for ( final HedgedLeg leg : _legs ){
+                if ( leg == winner )
+                    continue;
+                onReply( leg._reply , new Runnable() {
+                    public void run() {
+                        try {
+                            Response res = leg._reply.get();
+                            leg.finish( true );
+                            if ( res.cursor() != 0 && _db instanceof DBApiLayer )
+                                ((DBApiLayer) _db).killCursor( res.serverUsed() , res.cursor() );
+                        }
+                        catch ( IOException ioe ){
+                            leg.finish( false );
+                            _myPort.error( leg._port , ioe );
+                        }
+                        catch ( RuntimeException re ){
+                            leg.finish( false );
+                            _logger.log( Level.FINE , "hedged query's other reply failed" , re );
+                        }
+                    }
+                });
+            }
+        }
+
+        private final DB _db;
+        private final DBCollection _coll;
+        private final OutMessage _m;
+        private final DBDecoder _decoder;
+        private final List<HedgedLeg> _legs = new ArrayList<HedgedLeg>( 2 );
+        private final BlockingQueue<HedgedLeg> _answers = new LinkedBlockingQueue<HedgedLeg>();
+    }
+
+    // one member's copy of a hedged query, whose latency counts towards that member's statistics
+    private static class HedgedLeg {
+        HedgedLeg( DBPortPool pool , MultiplexedDBPort port , MultiplexedDBPort.PendingReply reply ){
+            _pool = pool;
+            _port = port;
+            _reply = reply;
+            pool.getStats().started();
+        }
+
+        void finish( boolean replied ){
+            if ( ! _finished.compareAndSet( false , true ) )
+                return;
+            if ( replied )
+                _pool.getStats().finished( System.nanoTime() - _start );
+            else
+                _pool.getStats().failed();
+        }
+
+        final DBPortPool _pool;
+        final MultiplexedDBPort _port;
+        final MultiplexedDBPort.PendingReply _reply;
+        final long _start = System.nanoTime();
+        private final AtomicBoolean _finished = new AtomicBoolean();
+    }
+
+    /**
+     * Sends a write operation to the primary on a multiplexed port without waiting for the reply.  If the write
+     * concern calls for it, the getlasterror command is pipelined right behind the write on the same socket.
+     * <p>
+     * If it doesn't, the result has no getlasterror result and can't fetch one later: the socket is shared, so a later
+     * getlasterror could report another thread's write.
+     * </p>
+     */
+    void sayAsync( final DB db, final OutMessage m, final WriteConcern concern, final AsyncResult<WriteResult> result ){
+        sayAsync( db, m, concern, null, result );
+    }
+
+    /**
+     * @param pinned the primary's multiplexed port to send on, so that a series of writes is applied in the order it
+     *               was sent, or null for the least loaded one
+     * @see #sayAsync(DB, OutMessage, WriteConcern, AsyncResult)
+     */
+    void sayAsync( final DB db, final OutMessage m, final WriteConcern concern, final MultiplexedDBPort pinned,
+                   final AsyncResult<WriteResult> result ){
+        OutMessage getLastError = null;
+        try {
+            if (concern == null) {
+                throw new IllegalArgumentException("Write concern is null");
+            }
+
+            final MultiplexedDBPort port = pinned != null ? pinned : getMasterMultiplexed();
+            try {
+                port.checkAuth( db.getMongo() );
+                if ( ! concern.callGetLastError() ){
+                    port.send( m, null, false, null );
+                    result.setResult( new WriteResult( (CommandResult) null , concern ) );
+                    return;
+                }
+
+                getLastError = OutMessage.query( db.getCollection( "$cmd" ) , 0 , 0 , -1 , concern.getCommand() , null );
+                final MultiplexedDBPort.PendingReply reply = port.sendWithLastError( m, getLastError, db.getCollection( "$cmd" ) );
+                onReply( reply, new Runnable() {
+                    public void run() {
+                        try {
+                            Response res = reply.get();
+                            if ( res.size() != 1 || res.get( 0 ) == null )
+                                throw new MongoInternalException( "something is wrong, no getlasterror result" );
+
+                            CommandResult cr = new CommandResult( res.serverUsed() );
+                            cr.putAll( res.get( 0 ) );
+                            cr.throwOnError();
+                            result.setResult( new WriteResult( cr , concern ) );
+                        }
+                        catch ( IOException ioe ){
+                            writeFailed( db, port, ioe, result );
+                        }
+                        catch ( RuntimeException re ){
+                            result.setError( re );
+                        }
+                    }
+                });
+            }
+            catch ( IOException ioe ){
+                writeFailed( db, port, ioe, result );
+            }
+        }
+        catch ( RuntimeException re ){
+            result.setError( re );
+        }
+        finally {
+            m.doneWithMessage();
+            if ( getLastError != null )
+                getLastError.doneWithMessage();
+        }
+    }
+
+    /**
+     * @return the least loaded multiplexed port of the primary
+     */
+    MultiplexedDBPort getMasterMultiplexed(){
+        _checkClosed();
+        checkMaster( false , true );
+        return _masterPortPool.getMultiplexed();
+    }
+
+    private void writeFailed( DB db, DBPort port, IOException ioe, AsyncResult<WriteResult> result ){
+        asyncFailed( port, ioe, new MongoException.Network( "Write operation to server " + port.host() + " failed on database " + db , ioe ), result );
+    }
+
+    // fails an async operation, completing its result even if dealing with the broken port throws
+    private void asyncFailed( DBPort port, IOException ioe, MongoException error, AsyncResult<?> result ){
+        try {
+            _myPort.error( port, ioe );
+            _errorAsync();
+        }
+        finally {
+            result.setError( error );
+        }
+    }
+
+    // hands the reply off to the async worker threads, since the listener itself runs on the port's reader thread
+    private void onReply( MultiplexedDBPort.PendingReply reply, final Runnable task ){
+        reply.setListener( new Runnable() {
+            public void run() {
+                try {
+                    getAsyncExecutor().execute( task );
+                }
+                catch ( RejectedExecutionException e ){
+                    // closed
+                    task.run();
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getAsyncExecutor(){
+        if ( _asyncExecutor == null ){
+            _asyncExecutor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "MongoAsync-" + _asyncThreadCount.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            });
+        }
+        return _asyncExecutor;
+    }
+
     class MyPort {
 
         DBPort get( boolean keep , ReadPreference readPref, ServerAddress hostNeeded ){
@@ -381,7 +896,7 @@ public class DBTCPConnector implements DBConnector {
                 }
 
                 // asked for a specific host
-                return _portHolder.get( hostNeeded ).get();
+                return getPort( _portHolder.get( hostNeeded ), keep );
             }
 
             if ( pinnedRequestPort != null ){
@@ -398,24 +913,7 @@ public class DBTCPConnector implements DBConnector {
                 setPinnedRequestPortForThread(null);
             }
 
-            DBPort port;
-            if (getReplicaSetStatus() == null){
-                if (_masterPortPool == null) {
-                    // this should only happen in rare case that no master was ever found
-                    // may get here at startup if it's a read, slaveOk=true, and ALL servers are down
-                    throw new MongoException("Rare case where master=null, probably all servers are down");
-                }
-                port = _masterPortPool.get();
-            }
-            else {
-                ReplicaSetStatus.ReplicaSet replicaSet = getReplicaSetStatus()._replicaSetHolder.get();
-                ConnectionStatus.Node node = readPref.getNode(replicaSet);
-
-                if (node == null)
-                    throw new MongoException("No replica set members available in " +  replicaSet + " for " + readPref.toDBObject().toString());
-
-                port = _portHolder.get(node.getServerAddress()).get();
-            }
+            DBPort port = getPort( choosePool( readPref ), keep );
 
             // if within request, remember port to stick to same server
             if (threadHasPinnedRequest()) {
@@ -425,6 +923,13 @@ public class DBTCPConnector implements DBConnector {
             return port;
         }
 
+        // reads that are not part of a request can share a multiplexed port instead of checking one out
+        private DBPort getPort( DBPortPool pool, boolean keep ) {
+            if ( !keep && !threadHasPinnedRequest() && pool.isMultiplexed() )
+                return pool.getMultiplexed();
+            return pool.get();
+        }
+
         void done( DBPort port ) {
             DBPort requestPort = getPinnedRequestPortForThread();
 
@@ -440,12 +945,27 @@ public class DBTCPConnector implements DBConnector {
          * @param e
          */
         void error( DBPort port , Exception e ){
-            port.close();
-            pinnedRequestStatusThreadLocal.remove();
+            if ( port instanceof MultiplexedDBPort ) {
+                // A shared socket closes itself when it fails, and then fails only the requests written to it.  Any
+                // other error, such as a timeout, a reply that doesn't match or a failed authentication, belongs to
+                // this caller alone, and closing the port would fail every other thread's requests with it.
+                if ( !( e instanceof IOException ) || e instanceof InterruptedIOException )
+                    return;
+            }
+            else {
+                port.close();
+                pinnedRequestStatusThreadLocal.remove();
+            }
 
             // depending on type of error, may need to close other connections in pool
             boolean recoverable = port.getPool().gotError(e);
             if (!recoverable && _connectionStatus != null && _masterPortPool._addr.equals(port.serverAddress())) {
+                ReplicaSetStatus replicaSetStatus = getReplicaSetStatus();
+                if (replicaSetStatus != null) {
+                    // the snapshot still names the failed master; have it re-probed rather than reinstalling it
+                    replicaSetStatus.requestUpdate();
+                    return;
+                }
                 ConnectionStatus.Node newMaster = _connectionStatus.ensureMaster();
                 if (newMaster != null) {
                     setMaster(newMaster);
@@ -537,6 +1057,8 @@ public class DBTCPConnector implements DBConnector {
         }
         setMasterAddress(master.getServerAddress());
         _maxBsonObjectSize = master.getMaxBsonObjectSize();
+        // wake threads parked in refreshMaster
+        notifyAll();
     }
 
     /**
@@ -591,6 +1113,11 @@ public class DBTCPConnector implements DBConnector {
 
     public void close(){
         _closed.set( true );
+        synchronized ( this ) {
+            if ( _asyncExecutor != null )
+                _asyncExecutor.shutdown();
+            notifyAll();
+        }
         if ( _portHolder != null ) {
             try {
                 _portHolder.close();
@@ -667,5 +1194,14 @@ public class DBTCPConnector implements DBConnector {
     private volatile int _maxBsonObjectSize;
     private volatile Boolean _isMongosDirectConnection;
 
+    private ExecutorService _asyncExecutor;
+    private final AtomicInteger _asyncThreadCount = new AtomicInteger();
+
     MyPort _myPort = new MyPort();
+
+    // how long refreshMaster waits when the connect timeout is 0, meaning none
+    static final int DEFAULT_MASTER_WAIT_MS = 10000;
+
+    // how many times the read preference is asked for a member other than the first before a query isn't hedged
+    static final int HEDGE_CHOICES = 4;
 }
@@ -14,9 +14,13 @@ package com.mongodb;
 
 import org.bson.BSONObject;
 import org.bson.BasicBSONEncoder;
+import org.bson.LazyBSONObject;
 import org.bson.io.OutputBuffer;
 import org.bson.types.ObjectId;
 
+import java.io.IOException;
+import java.util.List;
+
 import static org.bson.BSON.*;
 
 
@@ -42,6 +46,27 @@ public class DefaultDBEncoder extends BasicBSONEncoder implements DBEncoder {
 
     }
 
+    /**
+     * Writes lazy documents, such as those read with {@link LazyDBDecoder}, by copying their bytes instead of decoding
+     * and re-encoding each field, so documents can be moved between collections as raw BSON.  This holds for embedded
+     * lazy documents as well.  A {@link LazyWriteableDBObject} may hold fields outside its bytes, so it is still
+     * encoded field by field.
+     */
+    @Override
+    protected int putObject( String name , BSONObject o ){
+        if ( ! ( o instanceof LazyBSONObject ) || o instanceof LazyWriteableDBObject )
+            return super.putObject( name , o );
+
+        if ( name != null )
+            _put( o instanceof List ? ARRAY : OBJECT , name );
+        try {
+            return ((LazyBSONObject) o).pipe( _buf );
+        }
+        catch ( IOException e ){
+            throw new MongoException( "Exception serializing a LazyDBObject" , e );
+        }
+    }
+
     protected boolean putSpecial( String name , Object val ){
         if (val instanceof DBRefBase) {
             putDBRef(name, (DBRefBase) val);
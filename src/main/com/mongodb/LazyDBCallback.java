@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.bson.LazyBSONCallback;
+import org.bson.io.BSONByteBuffer;
 import org.bson.types.ObjectId;
 
 /**
@@ -34,7 +35,15 @@ public class LazyDBCallback extends LazyBSONCallback implements DBCallback {
 
     @Override
     public Object createObject( byte[] data, int offset ){
-        LazyDBObject o = new LazyDBObject( data, offset, this );
+        return _refOrObject( new LazyDBObject( data, offset, this ) );
+    }
+
+    @Override
+    public Object createObject( BSONByteBuffer buffer, int offset ){
+        return _refOrObject( new LazyDBObject( buffer, offset, this ) );
+    }
+
+    private Object _refOrObject( LazyDBObject o ){
         //log.info("Created inner BSONObject: " + o);
         // need to detect DBRef but must make sure we dont search through all fields
         // $ref must be 1st key
@@ -51,6 +60,11 @@ public class LazyDBCallback extends LazyBSONCallback implements DBCallback {
         return new LazyDBList(data, offset, this);
     }
 
+    @Override
+    public List createArray(BSONByteBuffer buffer, int offset) {
+        return new LazyDBList(buffer, offset, this);
+    }
+
     public Object createDBRef( String ns, ObjectId id ){
         return new DBRef( _db, ns, id );
     }
@@ -15,6 +15,8 @@
  */
 package com.mongodb;
 
+import org.bson.io.BSONByteBuffer;
+
 import java.util.Iterator;
 import java.util.logging.Logger;
 
@@ -29,7 +31,15 @@ public class LazyWriteableDBCallback extends LazyDBCallback {
 
     @Override
     public Object createObject( byte[] data, int offset ){
-        LazyWriteableDBObject o = new LazyWriteableDBObject( data, offset, this );
+        return _refOrObject( new LazyWriteableDBObject( data, offset, this ) );
+    }
+
+    @Override
+    public Object createObject( BSONByteBuffer buffer, int offset ){
+        return _refOrObject( new LazyWriteableDBObject( buffer, offset, this ) );
+    }
+
+    private Object _refOrObject( LazyWriteableDBObject o ){
         //log.info("Created inner BSONObject: " + o);
         // need to detect DBRef but must make sure we dont search through all fields
         // $ref must be 1st key
@@ -56,6 +56,7 @@ public class MongoClientOptions {
         private SocketFactory socketFactory = SocketFactory.getDefault();
         private boolean cursorFinalizerEnabled = true;
         private boolean alwaysUseMBeans = false;
+        private int multiplexedConnectionsPerHost = 0;
 
         /**
          * Sets the description.
@@ -288,6 +289,22 @@ public class MongoClientOptions {
             return this;
         }
 
+        /**
+         * Sets the number of shared connections per host that reads are multiplexed over.
+         *
+         * @param multiplexedConnectionsPerHost the number of multiplexed connections, 0 to disable multiplexing
+         * @return {@code this}
+         * @throws IllegalArgumentException if <code>multiplexedConnectionsPerHost &lt; 0</code>
+         * @see MongoClientOptions#getMultiplexedConnectionsPerHost()
+         */
+        public Builder multiplexedConnectionsPerHost(final int multiplexedConnectionsPerHost) {
+            if (multiplexedConnectionsPerHost < 0) {
+                throw new IllegalArgumentException("Minimum value is 0");
+            }
+            this.multiplexedConnectionsPerHost = multiplexedConnectionsPerHost;
+            return this;
+        }
+
         /**
          * Sets defaults to be what they are in {@code MongoOptions}.
          *
@@ -511,6 +528,21 @@ public class MongoClientOptions {
         return alwaysUseMBeans;
     }
 
+    /**
+     * Gets the number of shared connections per host that reads are multiplexed over.  Many threads write their
+     * queries back-to-back on each of these connections and the replies are matched up by request id, so a few
+     * connections can carry a large number of concurrent queries.  Writes, and any operations inside
+     * {@link DB#requestStart()}, still use the connection pool sized by {@link #getConnectionsPerHost()}.
+     * <p>
+     * Default is 0, which disables multiplexing.
+     * </p>
+     *
+     * @return the number of multiplexed connections per host
+     */
+    public int getMultiplexedConnectionsPerHost() {
+        return multiplexedConnectionsPerHost;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
@@ -525,6 +557,7 @@ public class MongoClientOptions {
         if (cursorFinalizerEnabled != that.cursorFinalizerEnabled) return false;
         if (maxAutoConnectRetryTime != that.maxAutoConnectRetryTime) return false;
         if (maxWaitTime != that.maxWaitTime) return false;
+        if (multiplexedConnectionsPerHost != that.multiplexedConnectionsPerHost) return false;
         if (socketKeepAlive != that.socketKeepAlive) return false;
         if (socketTimeout != that.socketTimeout) return false;
         if (threadsAllowedToBlockForConnectionMultiplier != that.threadsAllowedToBlockForConnectionMultiplier)
@@ -558,6 +591,7 @@ public class MongoClientOptions {
         result = 31 * result + socketFactory.hashCode();
         result = 31 * result + (cursorFinalizerEnabled ? 1 : 0);
         result = 31 * result + (alwaysUseMBeans ? 1 : 0);
+        result = 31 * result + multiplexedConnectionsPerHost;
         return result;
     }
 
@@ -578,6 +612,7 @@ public class MongoClientOptions {
         socketFactory = builder.socketFactory;
         cursorFinalizerEnabled = builder.cursorFinalizerEnabled;
         alwaysUseMBeans = builder.alwaysUseMBeans;
+        multiplexedConnectionsPerHost = builder.multiplexedConnectionsPerHost;
     }
 
 
@@ -597,4 +632,5 @@ public class MongoClientOptions {
     private final SocketFactory socketFactory;
     private final boolean cursorFinalizerEnabled;
     private final boolean alwaysUseMBeans;
+    private final int multiplexedConnectionsPerHost;
 }
@@ -59,6 +59,7 @@ public class MongoOptions {
         writeConcern = options.getWriteConcern();
         slaveOk = false; // default to false, as readPreference field will be responsible
         alwaysUseMBeans = options.isAlwaysUseMBeans();
+        multiplexedConnectionsPerHost = options.getMultiplexedConnectionsPerHost();
     }
 
     public void reset(){
@@ -84,6 +85,7 @@ public class MongoOptions {
         description = null;
         cursorFinalizerEnabled = true;
         alwaysUseMBeans = false;
+        multiplexedConnectionsPerHost = 0;
     }
 
     public MongoOptions copy() {
@@ -110,6 +112,7 @@ public class MongoOptions {
         m.description = description;
         m.cursorFinalizerEnabled = cursorFinalizerEnabled;
         m.alwaysUseMBeans = alwaysUseMBeans;
+        m.multiplexedConnectionsPerHost = multiplexedConnectionsPerHost;
         return m;
     }
 
@@ -143,6 +146,7 @@ public class MongoOptions {
         if (j != options.j) return false;
         if (maxAutoConnectRetryTime != options.maxAutoConnectRetryTime) return false;
         if (maxWaitTime != options.maxWaitTime) return false;
+        if (multiplexedConnectionsPerHost != options.multiplexedConnectionsPerHost) return false;
         if (safe != options.safe) return false;
         if (slaveOk != options.slaveOk) return false;
         if (socketKeepAlive != options.socketKeepAlive) return false;
@@ -189,6 +193,7 @@ public class MongoOptions {
         result = 31 * result + (socketFactory != null ? socketFactory.hashCode() : 0);
         result = 31 * result + (cursorFinalizerEnabled ? 1 : 0);
         result = 31 * result + (writeConcern != null ? writeConcern.hashCode() : 0);
+        result = 31 * result + multiplexedConnectionsPerHost;
         return result;
     }
 
@@ -359,6 +364,15 @@ public class MongoOptions {
      */
     public boolean alwaysUseMBeans;
 
+    /**
+     * The number of shared connections per host that reads outside of a request are multiplexed over.  Many threads
+     * write their queries back-to-back on each of these connections and the replies are matched up by request id,
+     * so a few connections can carry a large number of concurrent queries without waiting for a pooled connection.
+     * Writes, and any operations inside {@link DB#requestStart()}, still use the pool sized by connectionsPerHost.
+     * Default is 0, which disables multiplexing.
+     */
+    public int multiplexedConnectionsPerHost;
+
     /**
      * @return The description for <code>MongoClient</code> instances created with these options
      */
@@ -690,6 +704,22 @@ public class MongoOptions {
         this.alwaysUseMBeans = alwaysUseMBeans;
     }
 
+    /**
+     *
+     * @return the number of multiplexed connections per host, 0 if multiplexing is disabled
+     */
+    public int getMultiplexedConnectionsPerHost() {
+        return multiplexedConnectionsPerHost;
+    }
+
+    /**
+     *
+     * @param multiplexedConnectionsPerHost the number of multiplexed connections per host, 0 to disable multiplexing
+     */
+    public void setMultiplexedConnectionsPerHost(final int multiplexedConnectionsPerHost) {
+        this.multiplexedConnectionsPerHost = multiplexedConnectionsPerHost;
+    }
+
     @Override
     public String toString() {
         return "MongoOptions{" +
@@ -715,6 +745,7 @@ public class MongoOptions {
                 ", cursorFinalizerEnabled=" + cursorFinalizerEnabled +
                 ", writeConcern=" + writeConcern +
                 ", alwaysUseMBeans=" + alwaysUseMBeans +
+                ", multiplexedConnectionsPerHost=" + multiplexedConnectionsPerHost +
                 '}';
     }
 }
@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.io.Bits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A port that many threads can use at the same time.  Requests are written back-to-back on the socket while holding
+ * only a write lock, and a single reader thread per connection hands each reply to the thread waiting on its
+ * {@code responseTo} id.
+ * <p>
+ * Only used for operations that are not bound to a particular socket, i.e. reads outside of a
+ * {@link DB#requestStart()} block.
+ * </p>
+ */
+class MultiplexedDBPort extends DBPort {
+
+    MultiplexedDBPort( ServerAddress addr , DBPortPool pool , MongoOptions options ){
+        super( addr , pool , options );
+    }
+
+    @Override
+    Response go( OutMessage msg , DBCollection coll , boolean forceResponse , DBDecoder decoder )
+        throws IOException {
+        if ( Thread.holdsLock( _writeLock ) && _authenticatingSocket )
+            return super.go( msg , coll , forceResponse , decoder );  // the new socket has no reader thread yet
+        PendingReply reply = send( msg , coll , forceResponse , decoder );
+        if ( reply == null )
+            return null;
+        return reply.await( _options.socketTimeout );
+    }
+
+    /**
+     * Writes the message and, if a reply is expected, registers for it before any bytes hit the wire.
+     * @return the pending reply, or null if the message does not get one
+     */
+    PendingReply send( OutMessage msg , DBCollection coll , boolean forceResponse , DBDecoder decoder )
+        throws IOException {
+
+        synchronized ( _writeLock ){
+            Connection conn = _getConnection();
+            if ( conn != null ){
+                PendingReply reply = null;
+                if ( coll != null || forceResponse )
+                    reply = conn.expectReply( msg , coll , decoder );
+                conn.write( msg );
+                return reply;
+            }
+        }
+        synchronized ( this ){
+            return send( msg , coll , forceResponse , decoder );
+        }
+    }
+
+    /**
+     * Writes a message that gets no reply immediately followed by a getlasterror command, so that no other thread's
+     * message can come in between them.
+     * @return the pending reply to the getlasterror command
+     */
+    PendingReply sendWithLastError( OutMessage write , OutMessage getLastError , DBCollection cmdCollection )
+        throws IOException {
+
+        synchronized ( _writeLock ){
+            Connection conn = _getConnection();
+            if ( conn != null ){
+                PendingReply reply = conn.expectReply( getLastError , cmdCollection , null );
+                conn.write( write );
+                conn.write( getLastError );
+                return reply;
+            }
+        }
+        synchronized ( this ){
+            return sendWithLastError( write , getLastError , cmdCollection );
+        }
+    }
+
+    /**
+     * Authenticates the shared socket for any credentials it hasn't been authenticated for yet.  The server keeps one
+     * nonce per connection, so only one thread at a time may hold a conversation.  A thread that needs a database
+     * another thread is authenticating waits for it here, and then finds nothing left to do.
+     * <p>
+     * The socket can still be closed by another thread's failure before this thread's request is written, so the
+     * credentials are remembered and a reopened socket is authenticated before anything else is sent on it.
+     * </p>
+     */
+    @Override
+    void checkAuth( Mongo mongo ) throws IOException {
+        _mongo = mongo;
+        if ( authenticatedDatabases.containsAll( mongo.getAuthority().getCredentialsStore().getDatabases() ) )
+            return;
+        synchronized ( _authLock ){
+            // opening the socket authenticates it, so open it first rather than have the conversation below reopen it
+            // and then authenticate it a second time
+            synchronized ( this ){
+                synchronized ( _writeLock ){
+                    _getConnection();
+                }
+            }
+            super.checkAuth( mongo );
+        }
+    }
+
+    /**
+     * @return the number of requests written to this port that are still waiting for their reply
+     */
+    int getNumPending(){
+        Connection conn = _connection;
+        return conn == null ? 0 : conn._pending.size();
+    }
+
+    @Override
+    protected void close(){
+        Connection conn;
+        synchronized ( _writeLock ){
+            conn = _connection;
+            _connection = null;
+            super.close();
+        }
+        if ( conn != null )
+            conn.failPending( new IOException( "connection to " + host() + " was closed" ) );
+    }
+
+    // must hold _writeLock.  Returns null if the socket has to be reopened but the caller doesn't hold the port's
+    // monitor, which authenticating the new socket takes: the caller must take it first and try again, since taking
+    // it while holding _writeLock would deadlock against a thread authenticating through runCommand.
+    private Connection _getConnection() throws IOException {
+        Connection conn = _connection;
+        if ( conn == null && Thread.holdsLock( this ) )
+            conn = _openConnection();
+        return conn;
+    }
+
+    // must hold the port's monitor and then _writeLock
+    private Connection _openConnection() throws IOException {
+        if ( _out == null )
+            _open();
+        _authenticate();
+        Connection conn = new Connection( _in , _out );
+        Thread reader = new Thread( conn , "MultiplexedDBPort-reader:" + host() );
+        reader.setDaemon( true );
+        reader.start();
+        _connection = conn;
+        return conn;
+    }
+
+    // must hold the port's monitor and then _writeLock.  Authenticates the new socket with plain round-trips before its
+    // reader thread starts, so that no other thread's request can be written to it first.
+    private void _authenticate() throws IOException {
+        Mongo mongo = _mongo;
+        if ( mongo == null )
+            return;
+
+        boolean authenticated = false;
+        _authenticatingSocket = true;
+        try {
+            super.checkAuth( mongo );
+            authenticated = true;
+        }
+        finally {
+            _authenticatingSocket = false;
+            if ( ! authenticated )
+                super.close();
+        }
+    }
+
+    /**
+     * One socket's worth of state.  A new instance is created every time the socket is reopened, so that a reader
+     * that dies with an old socket can only fail the requests that were written to that socket.
+     */
+    class Connection implements Runnable {
+
+        Connection( InputStream in , OutputStream out ){
+            _in = in;
+            _out = out;
+        }
+
+        // must hold _writeLock
+        PendingReply expectReply( OutMessage msg , DBCollection coll , DBDecoder decoder ){
+            PendingReply reply = new PendingReply( this , msg.getId() , coll , decoder == null ? _decoder : decoder );
+            _pending.put( reply._requestId , reply );
+            return reply;
+        }
+
+        // must hold _writeLock
+        void write( OutMessage msg ) throws IOException {
+            _calls.incrementAndGet();
+            msg.prepare();
+            try {
+                msg.pipe( _out );
+            }
+            catch ( IOException ioe ){
+                fail( ioe );
+                throw ioe;
+            }
+
+            if ( _pool != null )
+                _pool._everWorked = true;
+        }
+
+        public void run(){
+            try {
+                while ( true ){
+                    byte[] header = readHeader();
+                    if ( header == null )
+                        continue;
+
+                    int len = Response.readLength( header );
+                    if ( len > Response.MAX_LENGTH || len < Response.HEADER_LENGTH )
+                        throw new IOException( "invalid response length: " + len );
+
+                    PendingReply reply = _pending.remove( Response.readResponseTo( header ) );
+                    if ( reply == null ){
+                        // the waiter gave up on this one, but its bytes still have to come off the wire
+                        skipFully( len - Response.HEADER_LENGTH );
+                        continue;
+                    }
+
+                    Response res;
+                    try {
+                        res = new Response( _sa , reply._collection , header , _in , reply._decoder , _readBuffer );
+                    }
+                    catch ( RuntimeException e ){
+                        // the stream position is unknown after a failed decode
+                        reply.complete( null , e );
+                        throw new IOException( "failed to decode reply from " + host() + ": " + e );
+                    }
+                    reply.complete( res , null );
+                }
+            }
+            catch ( IOException ioe ){
+                if ( ! _closed )
+                    _logger.log( Level.FINE , "reader for " + host() + " exiting" , ioe );
+                fail( ioe );
+            }
+            catch ( RuntimeException re ){
+                _logger.log( Level.WARNING , "reader for " + host() + " exiting" , re );
+                fail( new IOException( re.toString() ) );
+            }
+        }
+
+        // returns null if the socket timed out before any byte of the next reply arrived
+        private byte[] readHeader() throws IOException {
+            int first;
+            try {
+                first = _in.read();
+            }
+            catch ( SocketTimeoutException e ){
+                if ( _closed )
+                    throw e;
+                return null;
+            }
+            if ( first < 0 )
+                throw new EOFException();
+
+            byte[] header = new byte[ Response.HEADER_LENGTH ];
+            header[0] = (byte) first;
+            Bits.readFully( _in , header , 1 , header.length - 1 );
+            return header;
+        }
+
+        private void skipFully( int n ) throws IOException {
+            while ( n > 0 ){
+                long skipped = _in.skip( n );
+                if ( skipped <= 0 ){
+                    if ( _in.read() < 0 )
+                        throw new EOFException();
+                    skipped = 1;
+                }
+                n -= skipped;
+            }
+        }
+
+        void fail( IOException ioe ){
+            synchronized ( _writeLock ){
+                if ( _connection == this ){
+                    _connection = null;
+                    MultiplexedDBPort.super.close();
+                }
+            }
+            failPending( ioe );
+        }
+
+        void failPending( IOException ioe ){
+            _closed = true;
+            for ( Map.Entry<Integer, PendingReply> e : _pending.entrySet() ){
+                PendingReply reply = _pending.remove( e.getKey() );
+                if ( reply != null )
+                    reply.complete( null , ioe );
+            }
+        }
+
+        final InputStream _in;
+        final OutputStream _out;
+        final Map<Integer, PendingReply> _pending = new ConcurrentHashMap<Integer, PendingReply>();
+        final Response.ReadBuffer _readBuffer = new Response.ReadBuffer();  // only used by the reader thread
+        volatile boolean _closed;
+    }
+
+    /**
+     * A request that has been written and is waiting for the reader thread to hand it its reply.
+     */
+    static class PendingReply {
+
+        PendingReply( Connection connection , int requestId , DBCollection collection , DBDecoder decoder ){
+            _connection = connection;
+            _requestId = requestId;
+            _collection = collection;
+            _decoder = decoder;
+        }
+
+        void complete( Response response , Exception error ){
+            Runnable listener;
+            synchronized ( this ){
+                _response = response;
+                _error = error;
+                _done.countDown();
+                listener = _listener;
+            }
+            if ( listener != null )
+                listener.run();
+        }
+
+        /**
+         * Sets a listener to run once the reply has arrived or the request has failed.  The listener is run on the
+         * reader thread, or immediately if the reply is already done, so it must hand any real work off elsewhere.
+         */
+        void setListener( Runnable listener ){
+            synchronized ( this ){
+                if ( ! isDone() ){
+                    _listener = listener;
+                    return;
+                }
+            }
+            listener.run();
+        }
+
+        boolean isDone(){
+            return _done.getCount() == 0;
+        }
+
+        /**
+         * @param timeoutMS how long to wait, 0 to wait forever
+         * @throws InterruptedIOException if the timeout elapses or the thread is interrupted.  In both cases the
+         *         connection is left open, and the reply will be discarded when it arrives.
+         */
+        Response await( long timeoutMS ) throws IOException {
+            try {
+                if ( timeoutMS > 0 ){
+                    if ( ! _done.await( timeoutMS , TimeUnit.MILLISECONDS ) ){
+                        abandon();
+                        throw new SocketTimeoutException( "no reply to request " + _requestId + " after " + timeoutMS + "ms" );
+                    }
+                }
+                else {
+                    _done.await();
+                }
+            }
+            catch ( InterruptedException e ){
+                abandon();
+                Thread.currentThread().interrupt();
+                InterruptedIOException iioe = new InterruptedIOException( "interrupted waiting for reply to request " + _requestId );
+                iioe.initCause( e );
+                throw iioe;
+            }
+            return get();
+        }
+
+        Response get() throws IOException {
+            if ( _error instanceof IOException ){
+                IOException ioe = new IOException( _error.getMessage() );
+                ioe.initCause( _error );
+                throw ioe;
+            }
+            if ( _error instanceof RuntimeException )
+                throw (RuntimeException) _error;
+            return _response;
+        }
+
+        void abandon(){
+            _connection._pending.remove( _requestId );
+        }
+
+        /**
+         * Fails a reply that is overdue by closing its socket, which fails every other request on it too: a socket
+         * that stopped answering one request can't be trusted to answer the rest.
+         */
+        void closeConnection( IOException ioe ){
+            _connection.fail( ioe );
+        }
+
+        final Connection _connection;
+        final int _requestId;
+        final DBCollection _collection;
+        final DBDecoder _decoder;
+
+        private final CountDownLatch _done = new CountDownLatch( 1 );
+        private volatile Response _response;
+        private volatile Exception _error;
+        private Runnable _listener;
+    }
+
+    private final Object _writeLock = new Object();
+    private final Object _authLock = new Object();  // held for a whole authentication conversation
+    private volatile Connection _connection;
+    private volatile Mongo _mongo;  // whose credentials a reopened socket is authenticated with
+    private boolean _authenticatingSocket;  // guarded by _writeLock
+}
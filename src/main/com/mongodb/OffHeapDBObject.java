@@ -0,0 +1,193 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.io.BSONByteBuffer;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lazy document whose BSON is held outside the Java heap, in a direct or memory-mapped buffer.  Only the small
+ * wrapper object lives on the heap; fields are decoded from the buffer each time they are read.  This lets a
+ * read-through cache hold far more documents than the heap could without adding to garbage collection work.
+ * <p>
+ * Instances are reference counted.  A new instance has a count of one; {@link #retain()} adds a reference and
+ * {@link #release()} drops one.  When the last reference is dropped the buffer is handed to the {@link Recycler}
+ * given to {@link #wrap(ByteBuffer, Recycler)}, if any, and the document can no longer be read.  Embedded documents
+ * and arrays read from it share its buffer, so they must not be used after it is released.
+ * </p>
+ * <pre>
+ * OffHeapDBObject doc = OffHeapDBObject.copyOf( cursor.next() );
+ * cache.put( key , doc );
+ * ...
+ * cache.remove( key ).release();
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class OffHeapDBObject extends LazyDBObject {
+
+    /**
+     * Takes back the buffer of a document once it has been released, for example to return it to a pool.
+     */
+    public interface Recycler {
+        void recycle( ByteBuffer buffer );
+    }
+
+    /**
+     * Copies a document into a new direct buffer.
+     *
+     * @param o the document to copy
+     * @return the off-heap copy, with a reference count of one
+     */
+    public static OffHeapDBObject copyOf( DBObject o ){
+        BasicOutputBuffer out = new BasicOutputBuffer();
+        DefaultDBEncoder.FACTORY.create().writeObject( out , o );
+        return copyOf( out.toByteArray() , 0 );
+    }
+
+    /**
+     * Copies an encoded document into a new direct buffer.
+     *
+     * @param bson the bytes holding the document
+     * @param offset the offset of the document
+     * @return the off-heap copy, with a reference count of one
+     */
+    public static OffHeapDBObject copyOf( byte[] bson , int offset ){
+        int size = org.bson.io.Bits.readInt( bson , offset );
+        ByteBuffer buffer = ByteBuffer.allocateDirect( size );
+        buffer.put( bson , offset , size );
+        buffer.flip();
+        return new OffHeapDBObject( buffer , null );
+    }
+
+    /**
+     * Wraps a document that starts at the position of a buffer, without copying it.  The buffer must not be changed
+     * while the document is retained.
+     *
+     * @param buffer the buffer, for example a slice of a memory-mapped file
+     * @param recycler called with the buffer when the document is released, or null
+     * @return the document, with a reference count of one
+     */
+    public static OffHeapDBObject wrap( ByteBuffer buffer , Recycler recycler ){
+        return new OffHeapDBObject( buffer , recycler );
+    }
+
+    private OffHeapDBObject( ByteBuffer buffer , Recycler recycler ){
+        super( BSONByteBuffer.wrap( buffer ) , new LazyDBCallback( null ) );
+        _buffer = buffer;
+        _recycler = recycler;
+    }
+
+    /**
+     * Adds a reference.
+     *
+     * @return this document
+     * @throws IllegalStateException if the document has already been released
+     */
+    public synchronized OffHeapDBObject retain(){
+        _check();
+        _refCount++;
+        return this;
+    }
+
+    /**
+     * Drops a reference, recycling the buffer if it was the last one.
+     *
+     * @return true if this was the last reference
+     * @throws IllegalStateException if the document has already been released
+     */
+    public boolean release(){
+        synchronized ( this ){
+            _check();
+            if ( --_refCount > 0 )
+                return false;
+        }
+        if ( _recycler != null )
+            _recycler.recycle( _buffer );
+        return true;
+    }
+
+    /**
+     * @return the number of references, or 0 once the document has been released
+     */
+    public synchronized int refCount(){
+        return _refCount;
+    }
+
+    private synchronized void _check(){
+        if ( _refCount <= 0 )
+            throw new IllegalStateException( "document has been released" );
+    }
+
+    @Override
+    public Object get( String key ){
+        _check();
+        return super.get( key );
+    }
+
+    @Override
+    public boolean containsField( String s ){
+        _check();
+        return super.containsField( s );
+    }
+
+    @Override
+    public Set<String> keySet(){
+        _check();
+        return super.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet(){
+        _check();
+        return super.entrySet();
+    }
+
+    @Override
+    public Map toMap(){
+        _check();
+        return super.toMap();
+    }
+
+    @Override
+    public boolean isEmpty(){
+        _check();
+        return super.isEmpty();
+    }
+
+    @Override
+    public int getBSONSize(){
+        _check();
+        return super.getBSONSize();
+    }
+
+    @Override
+    public int pipe( OutputStream os ) throws IOException {
+        _check();
+        return super.pipe( os );
+    }
+
+    private final ByteBuffer _buffer;
+    private final Recycler _recycler;
+    private int _refCount = 1;
+}
@@ -18,6 +18,8 @@ package com.mongodb;
 
 import org.bson.BSONObject;
 import org.bson.BasicBSONEncoder;
+import org.bson.io.ByteBufferOutputBuffer;
+import org.bson.io.OutputBuffer;
 import org.bson.io.PoolOutputBuffer;
 import org.bson.types.ObjectId;
 
@@ -87,7 +89,17 @@ class OutMessage extends BasicBSONEncoder {
     }
 
     static OutMessage getMore(DBCollection collection, long cursorId, int batchSize) {
-        OutMessage om = new OutMessage(collection, OpCode.OP_GETMORE);
+        return getMore(collection, cursorId, batchSize, 0);
+    }
+
+    /**
+     * @param cursorOptions the options of the query that opened the cursor; only whether it is tailable is kept, as
+     *                      the wire message has no options, so that {@link #hasOption(int)} can tell a getmore that may
+     *                      wait on the server for new data
+     */
+    static OutMessage getMore(DBCollection collection, long cursorId, int batchSize, int cursorOptions) {
+        OutMessage om = new OutMessage(collection, OpCode.OP_GETMORE,
+                                       cursorOptions & (Bytes.QUERYOPTION_TAILABLE | Bytes.QUERYOPTION_AWAITDATA));
         om.writeGetMore(cursorId, batchSize);
 
         return om;
@@ -108,6 +120,10 @@ class OutMessage extends BasicBSONEncoder {
         this(collection, opCode, null);
     }
 
+    private OutMessage(final DBCollection collection, final OpCode opCode, final int options) {
+        this(collection, collection.getDB().getMongo(), opCode, null, null, options, null);
+    }
+
     private OutMessage(final DBCollection collection, final OpCode opCode, final DBEncoder enc) {
         this(collection, collection.getDB().getMongo(), opCode, enc);
     }
@@ -129,8 +145,17 @@ class OutMessage extends BasicBSONEncoder {
         _mongo = m;
         _encoder = enc;
 
-        _buffer = _mongo._bufferPool.get();
-        _buffer.reset();
+        // an encoder with pooled ByteBuffers encodes documents straight into a message buffer of its own
+        _byteBufferPool = enc instanceof ByteBufferDBEncoder ? ((ByteBufferDBEncoder) enc)._pool : null;
+        if (_byteBufferPool != null) {
+            ByteBufferOutputBuffer buffer = _byteBufferPool.get();
+            buffer.reset();
+            _buffer = buffer;
+        } else {
+            PoolOutputBuffer buffer = _mongo._bufferPool.get();
+            buffer.reset();
+            _buffer = buffer;
+        }
         set(_buffer);
 
         _id = REQUEST_ID.getAndIncrement();
@@ -140,7 +165,7 @@ class OutMessage extends BasicBSONEncoder {
 
         if (query == null) {
             _query = null;
-            _queryOptions = 0;
+            _queryOptions = opCode == OpCode.OP_GETMORE ? options : 0;
         } else {
             _query = query;
 
@@ -249,8 +274,15 @@ class OutMessage extends BasicBSONEncoder {
             throw new IllegalStateException("Only call this once per instance");
         }
 
-        _buffer.reset();
-        _mongo._bufferPool.done(_buffer);
+        if (_byteBufferPool != null) {
+            ByteBufferOutputBuffer buffer = (ByteBufferOutputBuffer) _buffer;
+            buffer.reset();
+            _byteBufferPool.done(buffer);
+        } else {
+            PoolOutputBuffer buffer = (PoolOutputBuffer) _buffer;
+            buffer.reset();
+            _mongo._bufferPool.done(buffer);
+        }
         _buffer = null;
         done();
     }
@@ -294,9 +326,31 @@ class OutMessage extends BasicBSONEncoder {
         return objectSize;
     }
 
+    /**
+     * Appends a document that has already been encoded, in one bulk copy.
+     */
+    int putEncoded(OutputBuffer document) {
+        if (_buffer == null) {
+            throw new IllegalStateException("Already closed");
+        }
+
+        int objectSize = document.size();
+        if (objectSize > Math.max(_mongo.getConnector().getMaxBsonObjectSize(), Bytes.MAX_OBJECT_SIZE)) {
+            throw new MongoInternalException("DBObject of size " + objectSize + " is over Max BSON size " + _mongo.getMaxBsonObjectSize());
+        }
+        try {
+            document.pipe(_buf);
+        } catch (IOException e) {
+            throw new MongoInternalException("can't copy encoded document", e);
+        }
+        _numDocuments++;
+        return objectSize;
+    }
+
     private final Mongo _mongo;
     private final DBCollection _collection;
-    private PoolOutputBuffer _buffer;
+    private OutputBuffer _buffer;
+    private final ByteBufferDBEncoder.BufferPool _byteBufferPool;
     private final int _id;
     private final OpCode _opCode;
     private final int _queryOptions;
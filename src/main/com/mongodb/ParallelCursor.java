@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterates over the union of several cursors, each of which is read by its own thread.
+ * <p>
+ * Documents are handed over through a bounded queue, so the reading threads stay at most {@code bufferSize}
+ * documents ahead of the consumer.  Documents from different cursors come out interleaved, in no particular order.
+ * An error on any cursor is thrown from {@link #hasNext()} or {@link #next()}, after which the other cursors are
+ * closed.
+ * </p>
+ * <p>
+ * The iterator must be closed if it is not read to the end.
+ * </p>
+ *
+ * @see DBCollection#parallelScan(DBObject, DBObject, int)
+ * @since 2.12
+ */
+public class ParallelCursor implements Iterator<DBObject>, Iterable<DBObject>, Closeable {
+
+    /**
+     * Starts reading all the cursors.
+     * @param cursors the cursors to read, one thread each
+     * @param bufferSize the number of documents that may be read ahead of the consumer
+     */
+    public ParallelCursor( List<DBCursor> cursors , int bufferSize ){
+        if ( bufferSize <= 0 )
+            throw new IllegalArgumentException( "bufferSize must be > 0" );
+
+        _cursors = Collections.unmodifiableList( new ArrayList<DBCursor>( cursors ) );
+        _queue = new ArrayBlockingQueue<Object>( bufferSize );
+        _running = _cursors.size();
+        _threads = new Thread[ _cursors.size() ];
+        for ( int i = 0; i < _threads.length; i++ ){
+            _threads[i] = new Thread( new Reader( _cursors.get( i ) ) , "ParallelCursor-" + i + ":" + _cursors.get( i ).getCollection().getFullName() );
+            _threads[i].setDaemon( true );
+            _threads[i].start();
+        }
+    }
+
+    /**
+     * @return the cursors being read, one per thread
+     */
+    public List<DBCursor> getCursors(){
+        return _cursors;
+    }
+
+    public boolean hasNext(){
+        if ( _next != null )
+            return true;
+
+        while ( _running > 0 ){
+            Object o;
+            try {
+                o = _queue.take();
+            }
+            catch ( InterruptedException e ){
+                throw new MongoInterruptedException( e );
+            }
+
+            if ( o == DONE ){
+                _running--;
+            }
+            else if ( o instanceof Failure ){
+                close();
+                throw ((Failure) o)._error;
+            }
+            else {
+                _next = (DBObject) o;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public DBObject next(){
+        if ( ! hasNext() )
+            throw new NoSuchElementException( "no more" );
+        DBObject o = _next;
+        _next = null;
+        return o;
+    }
+
+    public void remove(){
+        throw new UnsupportedOperationException( "can't remove from a ParallelCursor" );
+    }
+
+    public Iterator<DBObject> iterator(){
+        return this;
+    }
+
+    /**
+     * Stops the reading threads and closes all the cursors.
+     */
+    public void close(){
+        if ( _closed )
+            return;
+        _closed = true;
+        _running = 0;
+        for ( Thread t : _threads )
+            t.interrupt();
+        _queue.clear();
+    }
+
+    class Reader implements Runnable {
+        Reader( DBCursor cursor ){
+            _cursor = cursor;
+        }
+
+        public void run(){
+            Object last = DONE;
+            try {
+                while ( ! _closed && _cursor.hasNext() )
+                    _queue.put( _cursor.next() );
+            }
+            catch ( InterruptedException e ){
+                return;
+            }
+            catch ( MongoInterruptedException e ){
+                return;
+            }
+            catch ( RuntimeException e ){
+                last = new Failure( e );
+            }
+            finally {
+                _cursor.close();
+            }
+
+            try {
+                if ( ! _closed )
+                    _queue.put( last );
+            }
+            catch ( InterruptedException e ){
+                // closed
+            }
+        }
+
+        final DBCursor _cursor;
+    }
+
+    static class Failure {
+        Failure( RuntimeException error ){
+            _error = error;
+        }
+
+        final RuntimeException _error;
+    }
+
+    private static final Object DONE = new Object();
+
+    private final List<DBCursor> _cursors;
+    private final BlockingQueue<Object> _queue;
+    private final Thread[] _threads;
+    private volatile boolean _closed;
+
+    // only touched by the consuming thread
+    private int _running;
+    private DBObject _next;
+}
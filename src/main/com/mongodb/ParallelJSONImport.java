@@ -0,0 +1,208 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports line-delimited JSON on several threads.  The calling thread only reads: it cuts the input into chunks at
+ * line breaks and queues them.  Each parser thread has its own {@link BulkInsertWriter}, and so its own batches and
+ * connection.
+ *
+ * @see DBCollection#importJSON(Reader, WriteConcern, int)
+ */
+class ParallelJSONImport {
+
+    ParallelJSONImport( DBCollection collection , WriteConcern concern , int numThreads ){
+        if ( concern == null )
+            throw new IllegalArgumentException( "Write concern can not be null" );
+        if ( ! concern.getContinueOnErrorForInsert() )
+            throw new IllegalArgumentException( "importing on more than one thread requires a write concern that continues on error" );
+
+        _collection = collection;
+        _concern = concern;
+        _queue = new ArrayBlockingQueue<char[]>( 2 * numThreads );
+        _parsers = new Thread[ numThreads ];
+    }
+
+    long run( Reader in ) throws IOException {
+        for ( int i = 0; i < _parsers.length; i++ ){
+            _parsers[i] = new Thread( new Parser() , "ParallelJSONImport-parser-" + i + ":" + _collection.getFullName() );
+            _parsers[i].setDaemon( true );
+            _parsers[i].start();
+        }
+
+        try {
+            _read( in );
+        }
+        catch ( IOException e ){
+            _error.compareAndSet( null , e );
+        }
+        catch ( RuntimeException e ){
+            _error.compareAndSet( null , e );
+        }
+        finally {
+            boolean interrupted = false;
+            for ( int i = 0; i < _parsers.length; i++ ){
+                while ( true ){
+                    try {
+                        _queue.put( END );
+                        break;
+                    }
+                    catch ( InterruptedException e ){
+                        interrupted = true;
+                    }
+                }
+            }
+            for ( Thread t : _parsers ){
+                while ( t.isAlive() ){
+                    try {
+                        t.join();
+                    }
+                    catch ( InterruptedException e ){
+                        interrupted = true;
+                    }
+                }
+            }
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+        }
+
+        Exception e = _error.get();
+        if ( e instanceof IOException )
+            throw (IOException) e;
+        if ( e != null )
+            throw (RuntimeException) e;
+        return _numInserted.get();
+    }
+
+    // fills the buffer, queues everything up to the last line break, and keeps the rest for the next chunk
+    private void _read( Reader in ) throws IOException {
+        char[] buf = new char[ CHUNK_SIZE ];
+        int len = 0;
+        boolean first = true;
+        while ( _error.get() == null ){
+            int n = in.read( buf , len , buf.length - len );
+            if ( n < 0 )
+                break;
+            len += n;
+            if ( len < buf.length )
+                continue;
+
+            int end = len - 1;
+            while ( end >= 0 && buf[ end ] != '\n' )
+                end--;
+            if ( end < 0 ){
+                // one line fills the buffer
+                buf = Arrays.copyOf( buf , buf.length * 2 );
+                continue;
+            }
+
+            if ( first ){
+                _checkNotArray( buf , end + 1 );
+                first = false;
+            }
+            _put( Arrays.copyOf( buf , end + 1 ) );
+            len -= end + 1;
+            System.arraycopy( buf , end + 1 , buf , 0 , len );
+        }
+
+        if ( len > 0 && _error.get() == null ){
+            if ( first )
+                _checkNotArray( buf , len );
+            _put( Arrays.copyOf( buf , len ) );
+        }
+    }
+
+    private void _checkNotArray( char[] buf , int len ){
+        for ( int i = 0; i < len; i++ ){
+            if ( Character.isWhitespace( buf[i] ) )
+                continue;
+            if ( buf[i] == '[' )
+                throw new IllegalArgumentException( "a JSON array can only be imported on one thread" );
+            return;
+        }
+    }
+
+    private void _put( char[] chunk ){
+        try {
+            _queue.put( chunk );
+        }
+        catch ( InterruptedException e ){
+            throw new MongoInterruptedException( e );
+        }
+    }
+
+    class Parser implements Runnable {
+        public void run(){
+            BulkInsertWriter writer = _collection.bulkInsertWriter( _concern );
+            try {
+                while ( true ){
+                    char[] chunk;
+                    try {
+                        chunk = _queue.take();
+                    }
+                    catch ( InterruptedException e ){
+                        _error.compareAndSet( null , new MongoInterruptedException( e ) );
+                        return;
+                    }
+                    if ( chunk == END )
+                        return;
+                    // after an error, keep taking chunks so that the reader is never blocked
+                    if ( _error.get() != null )
+                        continue;
+
+                    try {
+                        writer.insertJSON( new CharArrayReader( chunk ) );
+                    }
+                    catch ( IOException e ){
+                        _error.compareAndSet( null , e );
+                    }
+                    catch ( RuntimeException e ){
+                        _error.compareAndSet( null , e );
+                    }
+                }
+            }
+            finally {
+                try {
+                    writer.close();
+                }
+                catch ( RuntimeException e ){
+                    _error.compareAndSet( null , e );
+                }
+                _numInserted.addAndGet( writer.getNumInserted() );
+            }
+        }
+    }
+
+    static final int CHUNK_SIZE = 1 << 16;
+    private static final char[] END = new char[ 0 ];
+
+    final DBCollection _collection;
+    final WriteConcern _concern;
+    private final BlockingQueue<char[]> _queue;
+    private final Thread[] _parsers;
+    private final AtomicLong _numInserted = new AtomicLong();
+    private final AtomicReference<Exception> _error = new AtomicReference<Exception>();
+}
@@ -25,12 +25,21 @@ import java.net.UnknownHostException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -110,6 +119,27 @@ public class ReplicaSetStatus extends ConnectionStatus {
         return node._addr;
     }
 
+    /**
+     * Asks the updater for a pass straight away, rather than after its usual interval.  Requests made while a pass is
+     * running, or before the next one starts, are served by a single pass.
+     * @return the number of the pass that will serve this request
+     * @see #getMasterPass()
+     */
+    long requestUpdate() {
+        synchronized (_updateRequests) {
+            _updateRequested = true;
+            _updateRequests.notifyAll();
+            return _passesStarted + 1;
+        }
+    }
+
+    /**
+     * @return the number of the last pass that passed a master to {@link DBTCPConnector#setMaster}, or 0 if none has
+     */
+    long getMasterPass() {
+        return _masterPass;
+    }
+
     @Override
     boolean hasServerUp() {
         for (ReplicaSetNode node : _replicaSetHolder.get().getAll()) {
@@ -172,7 +202,9 @@ public class ReplicaSetStatus extends ConnectionStatus {
     }
 
     // Immutable snapshot state of a replica set. Since the nodes don't change state, this class pre-computes the list
-    // of good secondaries so that choosing a random good secondary is dead simple
+    // of good secondaries so that choosing a random good secondary is dead simple.  The good members for a tag set are
+    // worked out from an index of members by tag the first time a read asks for that tag set, and kept for the life of
+    // the snapshot.
     @Immutable
     static class ReplicaSet {
         final List<ReplicaSetNode> all;
@@ -184,6 +216,12 @@ public class ReplicaSetStatus extends ConnectionStatus {
         final ReplicaSetErrorStatus errorStatus;
 
         private int acceptableLatencyMS;
+
+        private final Map<Tag, List<ReplicaSetNode>> membersByTag;
+        private final ConcurrentMap<List<Tag>, List<ReplicaSetNode>> goodSecondariesByTags =
+                new ConcurrentHashMap<List<Tag>, List<ReplicaSetNode>>();
+        private final ConcurrentMap<List<Tag>, List<ReplicaSetNode>> goodMembersByTags =
+                new ConcurrentHashMap<List<Tag>, List<ReplicaSetNode>>();
         
         public ReplicaSet(List<ReplicaSetNode> nodeList, Random random, int acceptableLatencyMS) {
             
@@ -200,6 +238,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
             this.acceptableMembers =
                     Collections.unmodifiableList(calculateGoodMembers(all, calculateBestPingTime(all, true), acceptableLatencyMS, true));
             master = findMaster();
+            membersByTag = indexByTag(all);
         }
 
         public List<ReplicaSetNode> getAll() {
@@ -232,7 +271,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
             if (acceptableSecondaries.isEmpty()) {
                 return null;
             }
-            return acceptableSecondaries.get(random.nextInt(acceptableSecondaries.size()));
+            return choose(acceptableSecondaries);
         }
 
         public ReplicaSetNode getASecondary(List<Tag> tags) {
@@ -248,7 +287,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
             if (acceptableTaggedSecondaries.isEmpty()) {
                 return null;
             }
-            return acceptableTaggedSecondaries.get(random.nextInt(acceptableTaggedSecondaries.size()));
+            return choose(acceptableTaggedSecondaries);
         }
         
         public ReplicaSetNode getAMember() {
@@ -257,7 +296,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
             if (acceptableMembers.isEmpty()) {
                 return null;
             }
-            return acceptableMembers.get(random.nextInt(acceptableMembers.size()));
+            return choose(acceptableMembers);
         }
 
         public ReplicaSetNode getAMember(List<Tag> tags) {
@@ -271,7 +310,31 @@ public class ReplicaSetStatus extends ConnectionStatus {
             if (acceptableTaggedMembers.isEmpty())
                 return null;
                 
-            return acceptableTaggedMembers.get(random.nextInt(acceptableTaggedMembers.size()));
+            return choose(acceptableTaggedMembers);
+        }
+
+        /**
+         * Picks two different candidates at random and returns the one with the lower
+         * {@linkplain ServerStats#getCost() cost}, judged by live latencies and in-flight operations.  Comparing two
+         * keeps a single slow member, such as one in a GC pause, from being picked, without herding every client onto
+         * whichever member looks fastest.  Without statistics, this is a uniform random pick.
+         */
+        ReplicaSetNode choose(List<ReplicaSetNode> candidates) {
+            int size = candidates.size();
+            ReplicaSetNode first = candidates.get(random.nextInt(size));
+            if (size == 1 || first._stats == null) {
+                return first;
+            }
+
+            int i = random.nextInt(size - 1);
+            ReplicaSetNode second = candidates.get(i);
+            if (second == first) {
+                second = candidates.get(size - 1);
+            }
+            if (second._stats == null) {
+                return first;
+            }
+            return second._stats.getCost() < first._stats.getCost() ? second : first;
         }
 
         List<ReplicaSetNode> getGoodSecondaries(List<ReplicaSetNode> all) {
@@ -287,18 +350,52 @@ public class ReplicaSetStatus extends ConnectionStatus {
 
         public List<ReplicaSetNode> getGoodSecondariesByTags(final List<Tag> tags) {
             checkStatus();
-            
-            List<ReplicaSetNode> taggedSecondaries = getMembersByTags(all, tags);
-            return calculateGoodMembers(taggedSecondaries,
-                    calculateBestPingTime(taggedSecondaries, false), acceptableLatencyMS, false);
+
+            return getGoodByTags(tags, false);
         }
         
         public List<ReplicaSetNode> getGoodMembersByTags(final List<Tag> tags) {
             checkStatus();
-            
-            List<ReplicaSetNode> taggedMembers = getMembersByTags(all, tags);
-            return calculateGoodMembers(taggedMembers,
-                    calculateBestPingTime(taggedMembers, true), acceptableLatencyMS, true);
+
+            return getGoodByTags(tags, true);
+        }
+
+        private List<ReplicaSetNode> getGoodByTags(List<Tag> tags, boolean includeMaster) {
+            ConcurrentMap<List<Tag>, List<ReplicaSetNode>> cache = includeMaster ? goodMembersByTags : goodSecondariesByTags;
+            List<ReplicaSetNode> good = cache.get(tags);
+            if (good != null) {
+                return good;
+            }
+
+            // only members with the first tag can have them all
+            List<ReplicaSetNode> candidates = tags.isEmpty() ? all : membersByTag.get(tags.get(0));
+            if (candidates == null) {
+                candidates = Collections.emptyList();
+            }
+            List<ReplicaSetNode> taggedMembers = getMembersByTags(candidates, tags);
+            good = Collections.unmodifiableList(calculateGoodMembers(taggedMembers,
+                    calculateBestPingTime(taggedMembers, includeMaster), acceptableLatencyMS, includeMaster));
+
+            // tag sets come from read preferences, so there are few of them, but don't let odd callers grow the cache forever
+            if (cache.size() < MAX_CACHED_TAG_SETS) {
+                cache.putIfAbsent(Collections.unmodifiableList(new ArrayList<Tag>(tags)), good);
+            }
+            return good;
+        }
+
+        private static Map<Tag, List<ReplicaSetNode>> indexByTag(List<ReplicaSetNode> members) {
+            Map<Tag, List<ReplicaSetNode>> index = new HashMap<Tag, List<ReplicaSetNode>>();
+            for (ReplicaSetNode cur : members) {
+                for (Tag tag : cur.getTags()) {
+                    List<ReplicaSetNode> tagged = index.get(tag);
+                    if (tagged == null) {
+                        tagged = new ArrayList<ReplicaSetNode>();
+                        index.put(tag, tagged);
+                    }
+                    tagged.add(cur);
+                }
+            }
+            return index;
         }
 
         public String getSetName() {
@@ -403,6 +500,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
             return membersByTag;
         }
 
+        static final int MAX_CACHED_TAG_SETS = 64;
     }
 
     // Represents the state of a node in the replica set.  Instances of this class are immutable.
@@ -410,12 +508,22 @@ public class ReplicaSetStatus extends ConnectionStatus {
     static class ReplicaSetNode extends Node {
         ReplicaSetNode(ServerAddress addr, Set<String> names, String setName, float pingTime, boolean ok, boolean isMaster, boolean isSecondary,
                        LinkedHashMap<String, String> tags, int maxBsonObjectSize) {
+            this(addr, names, setName, pingTime, ok, isMaster, isSecondary, tags, maxBsonObjectSize, null);
+        }
+
+        /**
+         * @param stats the live statistics of operations sent to this member, which aren't part of its state, or null
+         *              if there are none
+         */
+        ReplicaSetNode(ServerAddress addr, Set<String> names, String setName, float pingTime, boolean ok, boolean isMaster, boolean isSecondary,
+                       LinkedHashMap<String, String> tags, int maxBsonObjectSize, ServerStats stats) {
             super(pingTime, addr, maxBsonObjectSize, ok);
             this._names = Collections.unmodifiableSet(new HashSet<String>(names));
             this._setName = setName;
             this._isMaster = isMaster;
             this._isSecondary = isSecondary;
             this._tags = Collections.unmodifiableSet(getTagsFromMap(tags));
+            this._stats = stats;
         }
 
         private static Set<Tag> getTagsFromMap(LinkedHashMap<String,String> tagMap) {
@@ -511,6 +619,7 @@ public class ReplicaSetStatus extends ConnectionStatus {
         private final boolean _isMaster;
         private final boolean _isSecondary;
         private final String _setName;
+        final ServerStats _stats;
     }
     
     
@@ -586,7 +695,11 @@ public class ReplicaSetStatus extends ConnectionStatus {
         }
 
         void update(Set<UpdatableReplicaSetNode> seenNodes) {
-            CommandResult res = update();
+            update(probe(), seenNodes);
+        }
+
+        void update(Probe probe, Set<UpdatableReplicaSetNode> seenNodes) {
+            CommandResult res = update(probe);
             if (res == null || !isOk()) {
                 return;
             }
@@ -671,6 +784,24 @@ public class ReplicaSetStatus extends ConnectionStatus {
             return null;
         }
 
+        /**
+         * Takes an immutable snapshot of this node.
+         * @param confirmedMaster the node that has said it is master during the current pass, if any; no other node is
+         *                        reported as master, however recently it said so
+         * @param now the current {@code System.nanoTime()}
+         */
+        ReplicaSetNode snapshot(UpdatableReplicaSetNode confirmedMaster, long now, ServerStats stats) {
+            boolean ok = isOk() && !isOverdue(now);
+            boolean isMaster = _isMaster && (confirmedMaster == null || confirmedMaster == this);
+            return new ReplicaSetNode(_addr, _names, _setName, _pingTimeMS, ok, isMaster, _isSecondary, _tags, _maxBsonObjectSize,
+                                      stats);
+        }
+
+        // a node that hasn't answered its probe in time is reported down until it does
+        boolean isOverdue(long now) {
+            return _probing && now - _probeStart > TimeUnit.MILLISECONDS.toNanos(updaterProbeTimeoutMS);
+        }
+
         public void close() {
             _port.close();
             _port = null;
@@ -683,13 +814,19 @@ public class ReplicaSetStatus extends ConnectionStatus {
         boolean _isSecondary = false;
         String _setName;
 
+        // only touched by the updater thread, apart from _probeResult, which a prober thread sets
+        boolean _probing;
+        long _probeStart;
+        volatile Probe _probeResult;
+
         private final AtomicReference<Logger> _logger;
         private final AtomicReference<String> _lastPrimarySignal;
         private final List<UpdatableReplicaSetNode> _all;
     }
 
     // Thread that monitors the state of the replica set.  This thread is responsible for setting a new ReplicaSet
-    // instance on ReplicaSetStatus.members every pass through the members of the set.
+    // instance on ReplicaSetStatus.members every pass through the members of the set.  The isMaster calls of a pass run
+    // at once on a pool of prober threads, and this thread applies their results as they arrive.
     class Updater extends BackgroundUpdater {
 
         Updater(List<ServerAddress> initial){
@@ -698,6 +835,13 @@ public class ReplicaSetStatus extends ConnectionStatus {
             for ( ServerAddress addr : initial ){
                 _all.add( new UpdatableReplicaSetNode( addr, _all,  _logger, _mongo, _mongoOptions, _lastPrimarySignal ) );
             }
+            _probers = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ReplicaSetStatus:Prober");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
         }
 
         @Override
@@ -707,35 +851,65 @@ public class ReplicaSetStatus extends ConnectionStatus {
                     int curUpdateIntervalMS = updaterIntervalNoMasterMS;
 
                     try {
-                        updateAll();
-
-                        ReplicaSet replicaSet = new ReplicaSet(createNodeList(), _random, slaveAcceptableLatencyMS);
-                        _replicaSetHolder.set(replicaSet);
-
-                        if (replicaSet.getErrorStatus().isOk() && replicaSet.hasMaster()) {
-                            _mongo.getConnector().setMaster(replicaSet.getMaster());
+                        if (updateAll(_startPass())) {
                             curUpdateIntervalMS = updaterIntervalMS;
                         }
                     } catch (Exception e) {
                         _logger.get().log(Level.WARNING, "couldn't do update pass", e);
                     }
 
-                    Thread.sleep(curUpdateIntervalMS);
+                    _sleep(curUpdateIntervalMS);
                 }
             }
             catch (InterruptedException e) {
                // Allow thread to exit
             }
 
+            _probers.shutdownNow();
             _replicaSetHolder.close();
             closeAllNodes();
         }
 
-        public synchronized void updateAll(){
+        /**
+         * Probes every node at once and publishes a new snapshot once they have all answered or
+         * {@code updaterProbeTimeoutMS} has passed.  If a node says it is master before then, a snapshot with that
+         * master is published straight away.  A node that misses the deadline is reported down, and isn't probed again
+         * until its probe finishes.
+         * @param pass the number of this pass
+         * @return whether the snapshot has a master
+         */
+        public synchronized boolean updateAll(long pass){
             HashSet<UpdatableReplicaSetNode> seenNodes = new HashSet<UpdatableReplicaSetNode>();
+            Set<UpdatableReplicaSetNode> answered = new HashSet<UpdatableReplicaSetNode>();
+            UpdatableReplicaSetNode confirmedMaster = null;
 
-            for (int i = 0; i < _all.size(); i++) {
-                _all.get(i).update(seenNodes);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(updaterProbeTimeoutMS);
+            _startProbes();
+            try {
+                long remaining;
+                while (answered.size() < _all.size() && (remaining = deadline - System.nanoTime()) > 0) {
+                    UpdatableReplicaSetNode node = _answers.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (node == null) {
+                        break;
+                    }
+                    node._probing = false;
+                    if (!_all.contains(node)) {
+                        continue;
+                    }
+
+                    node.update(node._probeResult, seenNodes);
+                    node._probeResult = null;
+                    answered.add(node);
+
+                    if (node.isOk() && node._isMaster && confirmedMaster == null) {
+                        confirmedMaster = node;
+                        _publish(confirmedMaster, pass);
+                    }
+                    // probe any members this one told us about
+                    _startProbes();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
 
             if (seenNodes.size() > 0) {
@@ -747,12 +921,65 @@ public class ReplicaSetStatus extends ConnectionStatus {
                         it.remove();
                 }
             }
+
+            return _publish(confirmedMaster, pass);
         }
 
-        private List<ReplicaSetNode> createNodeList() {
+        private void _startProbes() {
+            for (int i = 0; i < _all.size(); i++) {
+                final UpdatableReplicaSetNode node = _all.get(i);
+                if (node._probing) {
+                    continue;
+                }
+                node._probing = true;
+                node._probeStart = System.nanoTime();
+                _probers.execute(new Runnable() {
+                    public void run() {
+                        node._probeResult = node.probe();
+                        _answers.add(node);
+                    }
+                });
+            }
+        }
+
+        private long _startPass() {
+            synchronized (_updateRequests) {
+                _updateRequested = false;
+                return ++_passesStarted;
+            }
+        }
+
+        // sleeps for the interval, or until a pass is requested, but never less than the no-master interval so that
+        // a burst of errors can't keep the members under constant probing
+        private void _sleep(int intervalMS) throws InterruptedException {
+            Thread.sleep(Math.min(intervalMS, updaterIntervalNoMasterMS));
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMS - updaterIntervalNoMasterMS);
+            synchronized (_updateRequests) {
+                long remaining;
+                while (!_updateRequested && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(_updateRequests, remaining);
+                }
+            }
+        }
+
+        private boolean _publish(UpdatableReplicaSetNode confirmedMaster, long pass) {
+            ReplicaSet replicaSet = new ReplicaSet(createNodeList(confirmedMaster), _random, slaveAcceptableLatencyMS);
+            _replicaSetHolder.set(replicaSet);
+
+            if (replicaSet.getErrorStatus().isOk() && replicaSet.hasMaster()) {
+                _masterPass = pass;
+                _mongo.getConnector().setMaster(replicaSet.getMaster());
+                return true;
+            }
+            return false;
+        }
+
+        private List<ReplicaSetNode> createNodeList(UpdatableReplicaSetNode confirmedMaster) {
+            long now = System.nanoTime();
             List<ReplicaSetNode> nodeList = new ArrayList<ReplicaSetNode>(_all.size());
             for (UpdatableReplicaSetNode cur : _all) {
-                nodeList.add(new ReplicaSetNode(cur._addr, cur._names, cur._setName, cur._pingTimeMS, cur.isOk(), cur._isMaster, cur._isSecondary, cur._tags, cur._maxBsonObjectSize));
+                nodeList.add(cur.snapshot(confirmedMaster, now, _mongo.getConnector().getServerStats(cur._addr)));
             }
             return nodeList;
         }
@@ -767,6 +994,8 @@ public class ReplicaSetStatus extends ConnectionStatus {
 
         private final List<UpdatableReplicaSetNode> _all;
         private final Random _random = new Random();
+        private final ExecutorService _probers;
+        private final BlockingQueue<UpdatableReplicaSetNode> _answers = new LinkedBlockingQueue<UpdatableReplicaSetNode>();
     }
 
     @Override
@@ -809,10 +1038,17 @@ public class ReplicaSetStatus extends ConnectionStatus {
     private final AtomicReference<Logger> _logger = new AtomicReference<Logger>(_rootLogger);
 
     private final AtomicReference<String> _lastPrimarySignal = new AtomicReference<String>();
+
+    private final Object _updateRequests = new Object();
+    private boolean _updateRequested; // guarded by _updateRequests
+    private long _passesStarted; // guarded by _updateRequests
+    private volatile long _masterPass;
     final static int slaveAcceptableLatencyMS;
+    final static int updaterProbeTimeoutMS;
 
     static {
         slaveAcceptableLatencyMS = Integer.parseInt(System.getProperty("com.mongodb.slaveAcceptableLatencyMS", "15"));
+        updaterProbeTimeoutMS = Integer.parseInt(System.getProperty("com.mongodb.updaterProbeTimeoutMS", "2000"));
     }
 
 }
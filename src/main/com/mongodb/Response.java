@@ -21,7 +21,10 @@ package com.mongodb;
 // Bson
 import org.bson.io.Bits;
 
+import org.bson.LazyBSONCallback;
+
 // Java
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -33,11 +36,28 @@ class Response {
 
     Response( ServerAddress addr , DBCollection collection ,  InputStream in, DBDecoder decoder)
         throws IOException {
+        this( addr , collection , readHeader( in ) , in , decoder , null );
+    }
+
+    Response( ServerAddress addr , DBCollection collection , InputStream in , DBDecoder decoder , ReadBuffer buffer )
+        throws IOException {
+        this( addr , collection , readHeader( in ) , in , decoder , buffer );
+    }
+
+    /**
+     * Creates a response whose header has already been read off the stream, which lets a caller look at
+     * {@code responseTo} before deciding which collection and decoder the documents belong to.
+     * <p>
+     * The whole body is read off the stream with one bulk read.  Lazy documents are then created directly over that
+     * array without copying it again, and so keep it alive.  Other decoders only read from it while the response is
+     * being built, so for them the body goes into {@code buffer}, if one is given, and is reused by the next response.
+     * </p>
+     */
+    Response( ServerAddress addr , DBCollection collection , byte[] b , InputStream in , DBDecoder decoder , ReadBuffer buffer )
+        throws IOException {
 
         _host = addr;
 
-        final byte [] b = new byte[36];
-        Bits.readFully(in, b);
         int pos = 0;
 
         _len = Bits.readInt(b, pos);
@@ -68,28 +88,85 @@ class Response {
         _num = Bits.readInt(b, pos);
         pos += 4;
 
-        final MyInputStream user = new MyInputStream( in , _len - b.length );
+        if ( _len < b.length )
+            throw new IOException( "response too short: " + _len );
+
+        final int bodyLength = _len - b.length;
+        final LazyBSONCallback lazy = lazyCallback( decoder , collection );
+        final byte[] body = lazy == null && buffer != null ? buffer.get( bodyLength ) : new byte[ bodyLength ];
+        Bits.readFully( in , body , 0 , bodyLength );
 
         if ( _num < 2 )
             _objects = new LinkedList<DBObject>();
         else
             _objects = new ArrayList<DBObject>( _num );
 
-        for ( int i=0; i < _num; i++ ){
-            if ( user._toGo < 5 )
-                throw new IOException( "should have more objects, but only " + user._toGo + " bytes left" );
-            // TODO: By moving to generics, you can remove these casts (and requirement to impl DBOBject).
+        if ( lazy != null ){
+            int offset = 0;
+            for ( int i=0; i < _num; i++ ){
+                int size = documentSize( body , offset , bodyLength );
+                _objects.add( (DBObject) lazy.createObject( body , offset ) );
+                offset += size;
+            }
 
-            _objects.add( decoder.decode( user, collection ) );
+            if ( offset != bodyLength )
+                throw new IOException( "finished reading objects but still have: " + ( bodyLength - offset ) + " bytes to read!' " );
         }
+        else {
+            final MyInputStream user = new MyInputStream( new ByteArrayInputStream( body , 0 , bodyLength ) , bodyLength );
+
+            for ( int i=0; i < _num; i++ ){
+                if ( user._toGo < 5 )
+                    throw new IOException( "should have more objects, but only " + user._toGo + " bytes left" );
+                // TODO: By moving to generics, you can remove these casts (and requirement to impl DBOBject).
 
-        if ( user._toGo != 0 )
-            throw new IOException( "finished reading objects but still have: " + user._toGo + " bytes to read!' " );
+                _objects.add( decoder.decode( user, collection ) );
+            }
+
+            if ( user._toGo != 0 )
+                throw new IOException( "finished reading objects but still have: " + user._toGo + " bytes to read!' " );
+        }
 
         if ( _num != _objects.size() )
             throw new RuntimeException( "something is really broken" );
     }
 
+    // returns the callback to create lazy documents with, or null if the decoder copies out what it needs
+    private static LazyBSONCallback lazyCallback( DBDecoder decoder , DBCollection collection ){
+        if ( ! ( decoder instanceof LazyDBDecoder ) )
+            return null;
+        DBCallback cbk = decoder.getDBCallback( collection );
+        if ( ! ( cbk instanceof LazyBSONCallback ) )
+            return null;
+        cbk.reset();
+        return (LazyBSONCallback) cbk;
+    }
+
+    private static int documentSize( byte[] body , int pos , int bodyLength )
+        throws IOException {
+        if ( bodyLength - pos < 5 )
+            throw new IOException( "should have more objects, but only " + ( bodyLength - pos ) + " bytes left" );
+        int size = Bits.readInt( body , pos );
+        if ( size < 5 || size > bodyLength - pos )
+            throw new IOException( "invalid document size " + size + " with " + ( bodyLength - pos ) + " bytes left" );
+        return size;
+    }
+
+    static byte[] readHeader( InputStream in )
+        throws IOException {
+        final byte [] b = new byte[HEADER_LENGTH];
+        Bits.readFully(in, b);
+        return b;
+    }
+
+    static int readLength( byte[] header ){
+        return Bits.readInt( header , 0 );
+    }
+
+    static int readResponseTo( byte[] header ){
+        return Bits.readInt( header , 8 );
+    }
+
     public int size(){
         return _num;
     }
@@ -136,6 +213,28 @@ class Response {
         return new ServerError( obj );
     }
 
+    /**
+     * A body buffer that is reused from one response to the next.  Not thread safe: each one belongs to a single
+     * socket reader.  Buffers larger than {@link #MAX_RETAINED} are not kept, so that one huge reply does not pin its
+     * memory for the life of the connection.
+     */
+    static class ReadBuffer {
+
+        byte[] get( int size ){
+            byte[] b = _buf;
+            if ( b != null && b.length >= size )
+                return b;
+
+            b = new byte[ Math.max( size , 4096 ) ];
+            _buf = b.length <= MAX_RETAINED ? b : null;
+            return b;
+        }
+
+        static final int MAX_RETAINED = 4 * 1024 * 1024;
+
+        private byte[] _buf;
+    }
+
     static class MyInputStream extends InputStream {
         MyInputStream( InputStream in , int max ){
             _in = in;
@@ -196,5 +295,6 @@ class Response {
 
     final List<DBObject> _objects;
 
-    private static final int MAX_LENGTH = ( 32 * 1024 * 1024 );
+    static final int HEADER_LENGTH = 36;
+    static final int MAX_LENGTH = ( 32 * 1024 * 1024 );
 }
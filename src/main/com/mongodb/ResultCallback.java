@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+/**
+ * A callback for the result of an asynchronous operation, such as {@link DBCollection#findAsync(DBObject)}.
+ * <p>
+ * Callbacks are invoked on one of the driver's worker threads, so they should not block for long.
+ * </p>
+ *
+ * @param <T> the type of the result
+ * @since 2.12
+ */
+public interface ResultCallback<T> {
+
+    /**
+     * Called exactly once, when the operation completes.
+     *
+     * @param result the result of the operation, or null if it failed
+     * @param t the reason the operation failed, or null if it succeeded
+     */
+    void onResult(T result, Throwable t);
+}
@@ -0,0 +1,109 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.NewBSONDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A decoder that builds only the fields on the given dotted paths, stepping over the rest of each document by its
+ * encoded length.  Use it when the server has to return whole documents but the application reads a few fields of
+ * each.  Documents that had fields skipped are marked as partial, so they cannot be saved back by accident.
+ * <pre>
+ * cursor.setDecoderFactory( SelectiveDBDecoder.factory( "_id" , "name" , "address.city" ) );
+ * </pre>
+ * Unlike a server-side projection, {@code _id} is only kept if it is one of the paths.
+ *
+ * @since 2.12
+ */
+@SuppressWarnings("deprecation")
+public class SelectiveDBDecoder extends NewBSONDecoder implements DBDecoder {
+
+    static class SelectiveFactory implements DBDecoderFactory {
+        SelectiveFactory( Collection<String> paths ){
+            _paths = Collections.unmodifiableList( new ArrayList<String>( paths ) );
+            new SelectiveDBDecoder( _paths ); // fail here on bad paths rather than on the first batch
+        }
+
+        @Override
+        public DBDecoder create( ){
+            return new SelectiveDBDecoder( _paths );
+        }
+
+        @Override
+        public String toString() {
+            return "SelectiveDBDecoder.SelectiveFactory " + _paths;
+        }
+
+        private final List<String> _paths;
+    }
+
+    /**
+     * @param paths the dotted paths of the fields to decode
+     * @return a factory of decoders for the given paths
+     */
+    public static DBDecoderFactory factory( String... paths ){
+        return new SelectiveFactory( Arrays.asList( paths ) );
+    }
+
+    public SelectiveDBDecoder( String... paths ){
+        this( Arrays.asList( paths ) );
+    }
+
+    public SelectiveDBDecoder( Collection<String> paths ){
+        super( paths );
+        _paths = paths.toString();
+    }
+
+    public DBCallback getDBCallback(DBCollection collection) {
+        return new DefaultDBCallback(collection);
+    }
+
+    public DBObject decode(byte[] b, DBCollection collection) {
+        DBCallback cbk = getDBCallback(collection);
+        cbk.reset();
+        decode(b, cbk);
+        return _done( (DBObject) cbk.get() );
+    }
+
+    public DBObject decode(InputStream in,  DBCollection collection) throws IOException {
+        DBCallback cbk = getDBCallback(collection);
+        cbk.reset();
+        decode(in, cbk);
+        return _done( (DBObject) cbk.get() );
+    }
+
+    private DBObject _done( DBObject o ){
+        if ( isPartial() )
+            o.markAsPartialObject();
+        return o;
+    }
+
+    @Override
+    public String toString() {
+        return "SelectiveDBDecoder " + _paths;
+    }
+
+    private final String _paths;
+}
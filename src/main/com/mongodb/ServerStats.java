@@ -0,0 +1,210 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live statistics for the operations sent to one server: how many are in flight, and a histogram of how long they
+ * took.  The histogram covers the last one to two windows of {@code com.mongodb.latencyWindowMS} (default 10s), so
+ * a member that has stopped being slow is soon chosen again.
+ * <p>
+ * Latencies are kept in buckets that grow by an eighth at a time, so percentiles are within about 12% of the truth.
+ * Recording an operation is two atomic increments; percentiles are recomputed at most every few milliseconds.
+ * </p>
+ */
+final class ServerStats {
+
+    ServerStats(){
+        this( WINDOW_NANOS );
+    }
+
+    ServerStats( long windowNanos ){
+        _windowNanos = windowNanos;
+        _windowStart = System.nanoTime();
+    }
+
+    /**
+     * Counts an operation as in flight.  Must be followed by {@link #finished(long)}.
+     */
+    void started(){
+        _inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records an operation that got a reply and is no longer in flight.
+     * @param elapsedNanos how long it took
+     */
+    void finished( long elapsedNanos ){
+        _inFlight.decrementAndGet();
+        record( elapsedNanos );
+    }
+
+    /**
+     * Counts an operation that failed as no longer in flight.  How long it took is not recorded: a timeout or a
+     * broken connection says nothing about how quickly the server answers.
+     */
+    void failed(){
+        _inFlight.decrementAndGet();
+    }
+
+    void record( long elapsedNanos ){
+        long now = System.nanoTime();
+        if ( now - _windowStart > _windowNanos )
+            _rotate( now );
+        _counts[ _current ].incrementAndGet( bucket( TimeUnit.NANOSECONDS.toMicros( elapsedNanos ) ) );
+    }
+
+    int getInFlight(){
+        return _inFlight.get();
+    }
+
+    /**
+     * @return the median latency, in microseconds, or 0 if nothing has been recorded
+     */
+    long getMedianMicros(){
+        _refresh();
+        return _p50;
+    }
+
+    /**
+     * @return the 99th percentile latency, in microseconds, or 0 if nothing has been recorded
+     */
+    long get99thPercentileMicros(){
+        _refresh();
+        return _p99;
+    }
+
+    /**
+     * Computes any percentile afresh, for callers that want one other than the two kept cached.
+     * @param fraction the fraction of operations, such as 0.95, that took at most the returned latency
+     * @return the latency, in microseconds, or 0 if nothing has been recorded
+     */
+    long getPercentileMicros( double fraction ){
+        long[] counts = new long[ BUCKETS ];
+        long total = _sum( counts );
+        return _percentile( counts , total , fraction );
+    }
+
+    /**
+     * The expected cost of sending this server one more operation: the median latency times the operations that
+     * would be queued ahead of or alongside it, plus the 99th percentile so that, of two equally busy servers, the
+     * one with the worse tail loses.  A server with nothing recorded costs nothing, so it is tried.
+     */
+    long getCost(){
+        _refresh();
+        return ( getInFlight() + 1 ) * _p50 + _p99;
+    }
+
+    // the current window becomes the previous one, and the old previous one is cleared for reuse
+    private synchronized void _rotate( long now ){
+        if ( now - _windowStart <= _windowNanos )
+            return;
+        int next = 1 - _current;
+        AtomicLongArray old = _counts[ next ];
+        for ( int i = 0; i < old.length(); i++ )
+            old.set( i , 0 );
+        // a window that went by with no operations at all leaves nothing behind
+        if ( now - _windowStart > 2 * _windowNanos ){
+            AtomicLongArray cur = _counts[ _current ];
+            for ( int i = 0; i < cur.length(); i++ )
+                cur.set( i , 0 );
+        }
+        _current = next;
+        _windowStart = now;
+        _refreshedAt = now - REFRESH_NANOS - 1;
+    }
+
+    private void _refresh(){
+        long now = System.nanoTime();
+        if ( now - _refreshedAt < REFRESH_NANOS )
+            return;
+        _refreshedAt = now;
+
+        long[] counts = new long[ BUCKETS ];
+        long total = _sum( counts );
+        _p50 = _percentile( counts , total , 0.50 );
+        _p99 = _percentile( counts , total , 0.99 );
+    }
+
+    // adds both windows into counts, and returns the total
+    private long _sum( long[] counts ){
+        long total = 0;
+        for ( AtomicLongArray window : _counts ){
+            for ( int i = 0; i < BUCKETS; i++ ){
+                long c = window.get( i );
+                counts[i] += c;
+                total += c;
+            }
+        }
+        return total;
+    }
+
+    private static long _percentile( long[] counts , long total , double fraction ){
+        if ( total == 0 )
+            return 0;
+        long rank = (long) Math.ceil( total * fraction );
+        long seen = 0;
+        for ( int i = 0; i < counts.length; i++ ){
+            seen += counts[i];
+            if ( seen >= rank )
+                return lowerBound( i );
+        }
+        return lowerBound( counts.length - 1 );
+    }
+
+    /**
+     * Values below 16 get a bucket each.  Above that, each power of two is split into eight buckets.
+     */
+    static int bucket( long micros ){
+        if ( micros < 16 )
+            return (int) Math.max( 0 , micros );
+        int exp = 63 - Long.numberOfLeadingZeros( micros );
+        int index = 16 + ( exp - 4 ) * 8 + (int) ( ( micros >> ( exp - 3 ) ) & 7 );
+        return Math.min( index , BUCKETS - 1 );
+    }
+
+    static long lowerBound( int bucket ){
+        if ( bucket < 16 )
+            return bucket;
+        int exp = ( bucket - 16 ) / 8 + 4;
+        return ( 8L + ( bucket - 16 ) % 8 ) << ( exp - 3 );
+    }
+
+    public String toString(){
+        return "inFlight: " + getInFlight() + " p50: " + getMedianMicros() + "us p99: " + get99thPercentileMicros() + "us";
+    }
+
+    // up to 2^40us, about twelve days
+    static final int BUCKETS = 16 + 36 * 8;
+    static final long WINDOW_NANOS =
+            TimeUnit.MILLISECONDS.toNanos( Long.parseLong( System.getProperty( "com.mongodb.latencyWindowMS" , "10000" ) ) );
+    static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos( 5 );
+
+    private final long _windowNanos;
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private final AtomicLongArray[] _counts = { new AtomicLongArray( BUCKETS ) , new AtomicLongArray( BUCKETS ) };
+    private volatile int _current;
+    private volatile long _windowStart;
+
+    // a stale or doubled refresh only costs a little accuracy, so these aren't synchronized
+    private volatile long _refreshedAt = System.nanoTime() - REFRESH_NANOS - 1;
+    private volatile long _p50;
+    private volatile long _p99;
+}
@@ -14,6 +14,7 @@ public abstract class TaggableReadPreference extends ReadPreference {
 
     TaggableReadPreference() {
         _tags = EMPTY;
+        _tagLists = Collections.emptyList();
     }
 
     TaggableReadPreference(DBObject firstTagSet, DBObject... remainingTagSets) {
@@ -23,6 +24,12 @@ public abstract class TaggableReadPreference extends ReadPreference {
         _tags = new ArrayList<DBObject>();
         _tags.add(firstTagSet);
         Collections.addAll(_tags, remainingTagSets);
+
+        List<List<ReplicaSetStatus.Tag>> tagLists = new ArrayList<List<ReplicaSetStatus.Tag>>(_tags.size());
+        for (DBObject curTagSet : _tags) {
+            tagLists.add(Collections.unmodifiableList(getTagListFromDBObject(curTagSet)));
+        }
+        _tagLists = Collections.unmodifiableList(tagLists);
     }
 
     @Override
@@ -87,6 +94,9 @@ public abstract class TaggableReadPreference extends ReadPreference {
 
     final List<DBObject> _tags;
 
+    // the tag sets as ReplicaSet looks them up, converted once rather than on every read
+    final List<List<ReplicaSetStatus.Tag>> _tagLists;
+
     /**
      * Read from secondary
      *
@@ -111,8 +121,7 @@ public abstract class TaggableReadPreference extends ReadPreference {
             if (_tags.isEmpty())
                 return set.getASecondary();
 
-            for (DBObject curTagSet : _tags) {
-                List<ReplicaSetStatus.Tag> tagList = getTagListFromDBObject(curTagSet);
+            for (List<ReplicaSetStatus.Tag> tagList : _tagLists) {
                 ReplicaSetStatus.ReplicaSetNode node = set.getASecondary(tagList);
                 if (node != null) {
                     return node;
@@ -174,8 +183,7 @@ public abstract class TaggableReadPreference extends ReadPreference {
             if (_tags.isEmpty())
                 return set.getAMember();
 
-            for (DBObject curTagSet : _tags) {
-                List<ReplicaSetStatus.Tag> tagList = getTagListFromDBObject(curTagSet);
+            for (List<ReplicaSetStatus.Tag> tagList : _tagLists) {
                 ReplicaSetStatus.ReplicaSetNode node = set.getAMember(tagList);
                 if (node != null) {
                     return node;
@@ -0,0 +1,425 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import com.mongodb.DefaultDBEncoder;
+import org.bson.BSON;
+import org.bson.BSONCallback;
+import org.bson.BSONObject;
+import org.bson.BasicBSONCallback;
+import org.bson.BasicBSONObject;
+import org.bson.io.ByteBufferOutputBuffer;
+import org.bson.io.OutputBuffer;
+import org.bson.types.Binary;
+import org.bson.types.CodeWScope;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A callback that writes each document it is given as BSON, without building the document.  Used with
+ * {@link JSONStreamParser}, it turns JSON into the same bytes that {@link DefaultDBEncoder} would write for
+ * {@link JSON#parse(String)}'s result.
+ * <p>
+ * Embedded documents in the extended JSON form of a special type, such as <code>{ "$oid" : ... }</code> or
+ * <code>{ "$date" : ... }</code>, are converted as {@link JSONCallback} converts them, but only if the special key
+ * comes first, as it does in the output of {@link JSON#serialize(Object)} and mongoexport.  Those few documents are
+ * built, converted and then written; everything else goes straight to the buffer.
+ * </p>
+ * <p>
+ * Documents are appended to the buffer one after another, and {@link #reset()} does not clear it.  Only documents
+ * can be written: an array at the top level is rejected, and a scalar there never reaches the callback.
+ * </p>
+ * <pre>
+ * ByteBufferOutputBuffer buf = new ByteBufferOutputBuffer();
+ * JSONStreamParser parser = new JSONStreamParser( reader , new BSONWriterCallback( buf , true ) );
+ * while ( parser.hasNext() )
+ *     parser.next();
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class BSONWriterCallback implements BSONCallback {
+
+    /**
+     * Creates a callback that writes into a new heap buffer and leaves documents without an _id as they are.
+     */
+    public BSONWriterCallback(){
+        this( new ByteBufferOutputBuffer() , false );
+    }
+
+    /**
+     * @param out the buffer to write to
+     * @param addId whether to add a new {@link ObjectId} as the _id of each document that doesn't have one, after
+     *              its other fields
+     */
+    public BSONWriterCallback( OutputBuffer out , boolean addId ){
+        _out = out;
+        _addId = addId;
+        _values = new ValueWriter( out );
+    }
+
+    /**
+     * @return the buffer the documents are written to
+     */
+    public OutputBuffer getOutputBuffer(){
+        return _out;
+    }
+
+    public void objectStart(){
+        if ( _depth != 0 )
+            throw new IllegalStateException( "already writing a document" );
+        _hasId = false;
+        _openDocument();
+    }
+
+    public void objectStart( String name ){
+        if ( _delegate( name ) ){
+            _special.objectStart( name );
+            _specialDepth++;
+            return;
+        }
+        // not written until the first key shows whether it is a special type
+        _pending = true;
+        _pendingName = name;
+    }
+
+    public void objectStart( boolean array ){
+        if ( array )
+            arrayStart();
+        else
+            objectStart();
+    }
+
+    public Object objectDone(){
+        if ( _special != null ){
+            if ( _specialDepth > 0 ){
+                _specialDepth--;
+                return _special.objectDone();
+            }
+            Object value = _special.objectDone();
+            _special = null;
+            _values.put( _pendingName , value );
+            return null;
+        }
+        if ( _pending ){
+            _pending = false;
+            _field( BSON.OBJECT , _pendingName );
+            _openDocument();
+        }
+        return _close();
+    }
+
+    public void arrayStart(){
+        throw new IllegalArgumentException( "only documents can be written, not arrays" );
+    }
+
+    public void arrayStart( String name ){
+        if ( _delegate( name ) ){
+            _special.arrayStart( name );
+            _specialDepth++;
+            return;
+        }
+        _field( BSON.ARRAY , name );
+        _openDocument();
+    }
+
+    public Object arrayDone(){
+        if ( _special != null ){
+            _specialDepth--;
+            return _special.arrayDone();
+        }
+        return _close();
+    }
+
+    /**
+     * Forgets any unfinished document.  The buffer is left as it is.
+     */
+    public void reset(){
+        _depth = 0;
+        _pending = false;
+        _special = null;
+        _specialDepth = 0;
+    }
+
+    /**
+     * @return null, since documents are written to the buffer rather than built
+     */
+    public Object get(){
+        return null;
+    }
+
+    // only used by decoders for the scope of code with scope, which is small and rare
+    public BSONCallback createBSONCallback(){
+        return new BasicBSONCallback();
+    }
+
+    public void gotNull( String name ){
+        if ( _delegate( name ) )
+            _special.gotNull( name );
+        else
+            _field( BSON.NULL , name );
+    }
+
+    public void gotUndefined( String name ){
+        if ( _delegate( name ) )
+            _special.gotUndefined( name );
+        else
+            _field( BSON.UNDEFINED , name );
+    }
+
+    public void gotMinKey( String name ){
+        if ( _delegate( name ) )
+            _special.gotMinKey( name );
+        else
+            _values.put( name , new MinKey() );
+    }
+
+    public void gotMaxKey( String name ){
+        if ( _delegate( name ) )
+            _special.gotMaxKey( name );
+        else
+            _values.put( name , new MaxKey() );
+    }
+
+    public void gotBoolean( String name , boolean v ){
+        if ( _delegate( name ) ){
+            _special.gotBoolean( name , v );
+            return;
+        }
+        _field( BSON.BOOLEAN , name );
+        _out.write( v ? 1 : 0 );
+    }
+
+    public void gotDouble( String name , double v ){
+        if ( _delegate( name ) ){
+            _special.gotDouble( name , v );
+            return;
+        }
+        _field( BSON.NUMBER , name );
+        _out.writeDouble( v );
+    }
+
+    public void gotInt( String name , int v ){
+        if ( _delegate( name ) ){
+            _special.gotInt( name , v );
+            return;
+        }
+        _field( BSON.NUMBER_INT , name );
+        _out.writeInt( v );
+    }
+
+    public void gotLong( String name , long v ){
+        if ( _delegate( name ) ){
+            _special.gotLong( name , v );
+            return;
+        }
+        _field( BSON.NUMBER_LONG , name );
+        _out.writeLong( v );
+    }
+
+    public void gotDate( String name , long millis ){
+        if ( _delegate( name ) ){
+            _special.gotDate( name , millis );
+            return;
+        }
+        _field( BSON.DATE , name );
+        _out.writeLong( millis );
+    }
+
+    public void gotString( String name , String v ){
+        if ( _delegate( name ) ){
+            _special.gotString( name , v );
+            return;
+        }
+        _field( BSON.STRING , name );
+        _string( v );
+    }
+
+    public void gotSymbol( String name , String v ){
+        if ( _delegate( name ) ){
+            _special.gotSymbol( name , v );
+            return;
+        }
+        _field( BSON.SYMBOL , name );
+        _string( v );
+    }
+
+    public void gotRegex( String name , String pattern , String flags ){
+        if ( _delegate( name ) ){
+            _special.gotRegex( name , pattern , flags );
+            return;
+        }
+        _field( BSON.REGEX , name );
+        _out.writeCString( pattern );
+        _out.writeCString( flags );
+    }
+
+    public void gotTimestamp( String name , int time , int inc ){
+        if ( _delegate( name ) ){
+            _special.gotTimestamp( name , time , inc );
+            return;
+        }
+        _field( BSON.TIMESTAMP , name );
+        _out.writeInt( inc );
+        _out.writeInt( time );
+    }
+
+    public void gotObjectId( String name , ObjectId id ){
+        if ( _delegate( name ) )
+            _special.gotObjectId( name , id );
+        else
+            _values.put( name , id );
+    }
+
+    public void gotDBRef( String name , String ns , ObjectId id ){
+        if ( _delegate( name ) )
+            _special.gotDBRef( name , ns , id );
+        else
+            _values.put( name , new BasicBSONObject( "$ns" , ns ).append( "$id" , id ) );
+    }
+
+    @Deprecated
+    public void gotBinaryArray( String name , byte[] data ){
+        if ( _delegate( name ) )
+            _special.gotBinaryArray( name , data );
+        else
+            _values.put( name , data );
+    }
+
+    public void gotBinary( String name , byte type , byte[] data ){
+        if ( _delegate( name ) )
+            _special.gotBinary( name , type , data );
+        else
+            _values.put( name , type == BSON.B_GENERAL ? data : new Binary( type , data ) );
+    }
+
+    public void gotUUID( String name , long part1 , long part2 ){
+        if ( _delegate( name ) )
+            _special.gotUUID( name , part1 , part2 );
+        else
+            _values.put( name , new UUID( part1 , part2 ) );
+    }
+
+    public void gotCode( String name , String code ){
+        if ( _delegate( name ) ){
+            _special.gotCode( name , code );
+            return;
+        }
+        _field( BSON.CODE , name );
+        _string( code );
+    }
+
+    public void gotCodeWScope( String name , String code , Object scope ){
+        if ( _delegate( name ) )
+            _special.gotCodeWScope( name , code , scope );
+        else
+            _values.put( name , new CodeWScope( code , (BSONObject) scope ) );
+    }
+
+    /**
+     * Decides where a field goes.  A pending document is opened first, unless the field makes it a special type, in
+     * which case it and everything up to the end of that document go to a {@link JSONCallback}.
+     * @return true if the field belongs to a special type and should be sent to {@code _special}
+     */
+    private boolean _delegate( String name ){
+        if ( _special != null )
+            return true;
+
+        if ( _pending ){
+            _pending = false;
+            if ( SPECIAL_KEYS.contains( name ) ){
+                _special = _converter;
+                _special.reset();
+                _special.objectStart();
+                return true;
+            }
+            _field( BSON.OBJECT , _pendingName );
+            _openDocument();
+        }
+        else if ( _depth == 1 && name.equals( "_id" ) ){
+            _hasId = true;
+        }
+        return false;
+    }
+
+    private void _field( byte type , String name ){
+        _out.write( type );
+        _out.writeCString( name );
+    }
+
+    @SuppressWarnings("deprecation")
+    private void _string( String s ){
+        int lenPos = _out.getPosition();
+        _out.writeInt( 0 );
+        _out.writeInt( lenPos , _out.writeCString( s ) );
+    }
+
+    private void _openDocument(){
+        if ( _depth == _starts.length )
+            _starts = Arrays.copyOf( _starts , _depth * 2 );
+        _starts[ _depth++ ] = _out.getPosition();
+        _out.writeInt( 0 );
+    }
+
+    @SuppressWarnings("deprecation")
+    private Object _close(){
+        if ( _depth == 1 && _addId && ! _hasId )
+            _values.put( "_id" , ObjectId.get() );
+
+        int start = _starts[ --_depth ];
+        _out.write( BSON.EOO );
+        _out.writeInt( start , _out.getPosition() - start );
+        return null;
+    }
+
+    // writes the values that have no shortcut above, exactly as the driver's encoder does
+    static final class ValueWriter extends DefaultDBEncoder {
+        ValueWriter( OutputBuffer out ){
+            set( out );
+        }
+
+        void put( String name , Object value ){
+            _putObjectField( name , value );
+        }
+    }
+
+    // the keys JSONCallback turns into another type
+    static final Set<String> SPECIAL_KEYS = new HashSet<String>( Arrays.asList(
+            "$oid" , "$date" , "$regex" , "$ts" , "$timestamp" , "$code" , "$ref" , "$minKey" , "$maxKey" , "$uuid" ,
+            "$binary" ) );
+
+    private final OutputBuffer _out;
+    private final boolean _addId;
+    private final ValueWriter _values;
+
+    private int[] _starts = new int[ 8 ];
+    private int _depth;
+    private boolean _hasId;
+
+    private boolean _pending;
+    private String _pendingName;
+
+    private final JSONCallback _converter = new JSONCallback();
+    private JSONCallback _special;
+    private int _specialDepth;
+}
@@ -0,0 +1,367 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A pool with the same contract as {@link SimplePool}, but without a pool-wide lock.
+ * <p>
+ * Available members are kept on a number of lock-free stacks.  Each thread checks in to and out of the stack picked
+ * by its identity hash, so threads mostly get back the member they last returned, and only steal from other stacks
+ * when their own is empty.  The maximum size is enforced by a semaphore, as in {@code SimplePool}, and by a
+ * compare-and-set on the total count before a new member is created.
+ * </p>
+ *
+ * @deprecated This class is NOT a part of public API and will be dropped in 3.x versions.
+ */
+@Deprecated
+public abstract class ConcurrentPool<T> {
+
+    /** Initializes a new pool of objects.
+     * @param name name for the pool
+     * @param size max to hold to at any given time
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentPool( String name , int size ){
+        _name = name;
+        _size = size;
+        _sem = new Semaphore( size );
+
+        int stripes = 1;
+        while ( stripes < Runtime.getRuntime().availableProcessors() )
+            stripes <<= 1;
+        _stripes = new Stack[ stripes ];
+        for ( int i = 0; i < stripes; i++ )
+            _stripes[i] = new Stack<T>();
+    }
+
+    /** Creates a new object of this pool's type.  Implementations should throw a runtime exception if unable to create.
+     * @return the new object.
+     */
+    protected abstract T createNew();
+
+    /**
+     * Override this to have a thread that is handed an idle member it didn't use last grow the pool instead, while
+     * the pool is below its maximum size, as {@link SimplePool#pick(int, boolean)} allows.
+     * @return whether the current thread should take this idle member rather than create a new one
+     */
+    protected boolean isPreferred( T t ){
+        return true;
+    }
+
+    /**
+     * override this if you need to do any cleanup
+     */
+    public void cleanup( T t ) {
+    }
+
+    /**
+     * call done when you are done with an object form the pool
+     * if there is room and the object is ok will get added
+     * @param t Object to add
+     */
+    public void done( T t ){
+        if ( _closed ){
+            if ( _out.remove( t ) )
+                _total.decrementAndGet();
+            cleanup( t );
+            return;
+        }
+
+        if ( ! _out.remove( t ) )
+            throw new RuntimeException( "trying to put something back in the pool wasn't checked out" );
+
+        _push( t );
+        _sem.release();
+
+        // close() may have drained the stacks between the check above and the push
+        if ( _closed )
+            drain();
+    }
+
+    public void remove( T t ) {
+        done( t );
+    }
+
+    /** Gets an object from the pool - will block if none are available
+     * @return An object from the pool
+     */
+    public T get() throws InterruptedException {
+        return get( -1 );
+    }
+
+    /** Gets an object from the pool - will block if none are available
+     * @param waitTime
+     *        negative - forever
+     *        0        - return immediately no matter what
+     *        positive ms to wait
+     * @return An object from the pool, or null if can't get one in the given waitTime
+     */
+    public T get( long waitTime ) throws InterruptedException {
+        if ( ! permitAcquired( waitTime ) )
+            return null;
+
+        T t;
+        while ( true ){
+            t = take();
+            if ( t != null ){
+                if ( ! isPreferred( t ) && grow() ){
+                    _push( t );
+                    t = createNewAndReleasePermitIfFailure();
+                }
+                break;
+            }
+
+            if ( grow() ){
+                t = createNewAndReleasePermitIfFailure();
+                break;
+            }
+
+            // the pool is full, so a member is on its way back to one of the stacks
+            Thread.yield();
+        }
+        _out.add( t );
+        return t;
+    }
+
+    // reserves room for a new member, if the pool isn't full
+    private boolean grow(){
+        while ( true ){
+            int total = _total.get();
+            if ( total >= _size )
+                return false;
+            if ( _total.compareAndSet( total , total + 1 ) )
+                return true;
+        }
+    }
+
+    private void _push( T t ){
+        _stripes[ stripe() ].push( t );
+        _avail.incrementAndGet();
+    }
+
+    // pops from this thread's stack, or steals from the others
+    private T take(){
+        int start = stripe();
+        for ( int i = 0; i < _stripes.length; i++ ){
+            T t = _stripes[ ( start + i ) & ( _stripes.length - 1 ) ].pop();
+            if ( t != null ){
+                _avail.decrementAndGet();
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private int stripe(){
+        int h = System.identityHashCode( Thread.currentThread() );
+        h ^= ( h >>> 16 );
+        return h & ( _stripes.length - 1 );
+    }
+
+    private T createNewAndReleasePermitIfFailure() {
+        try {
+            T newMember = createNew();
+            if ( newMember == null ){
+                throw new IllegalStateException( "null pool members are not allowed" );
+            }
+            return newMember;
+        } catch ( RuntimeException e ){
+            _total.decrementAndGet();
+            _sem.release();
+            throw e;
+        } catch ( Error e ){
+            _total.decrementAndGet();
+            _sem.release();
+            throw e;
+        }
+    }
+
+    private boolean permitAcquired( final long waitTime ) throws InterruptedException {
+        if ( waitTime > 0 ){
+            return _sem.tryAcquire( waitTime , TimeUnit.MILLISECONDS );
+        } else if ( waitTime < 0 ){
+            _sem.acquire();
+            return true;
+        } else {
+            return _sem.tryAcquire();
+        }
+    }
+
+    /** Clears the pool of all objects. */
+    protected void close(){
+        _closed = true;
+        drain();
+        _out.clear();
+    }
+
+    private void drain(){
+        for ( Stack<T> s : _stripes ){
+            T t;
+            while ( ( t = s.pop() ) != null ){
+                _avail.decrementAndGet();
+                _total.decrementAndGet();
+                cleanup( t );
+            }
+        }
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public int getTotal(){
+        return getAvailable() + getInUse();
+    }
+
+    public int getInUse(){
+        return _out.size();
+    }
+
+    public int getAvailable(){
+        return _avail.get();
+    }
+
+    public int getMaxSize(){
+        return _size;
+    }
+
+    public String toString(){
+        StringBuilder buf = new StringBuilder();
+        buf.append("pool: ").append(_name)
+            .append(" maxToKeep: ").append(_size)
+            .append(" avail ").append(getAvailable())
+            .append(" out ").append(getInUse())
+            ;
+        return buf.toString();
+    }
+
+    /**
+     * A Treiber stack.  Nodes are never reused, so there is no ABA problem.
+     */
+    static class Stack<T> {
+
+        void push( T t ){
+            Node<T> n = new Node<T>( t );
+            while ( true ){
+                Node<T> top = _top.get();
+                n._next = top;
+                if ( _top.compareAndSet( top , n ) )
+                    return;
+            }
+        }
+
+        T pop(){
+            while ( true ){
+                Node<T> top = _top.get();
+                if ( top == null )
+                    return null;
+                if ( _top.compareAndSet( top , top._next ) )
+                    return top._item;
+            }
+        }
+
+        private final AtomicReference<Node<T>> _top = new AtomicReference<Node<T>>();
+    }
+
+    /**
+     * A concurrent set that compares members by identity.  Members such as ports to one server may all have the same
+     * hash code, which would put them in one bin of a set that uses {@code hashCode()}.
+     */
+    static class IdentitySet<T> extends AbstractSet<T> {
+
+        @Override
+        public boolean add( T t ){
+            return _map.putIfAbsent( new Identity( t ) , t ) == null;
+        }
+
+        @Override
+        public boolean remove( Object o ){
+            return _map.remove( new Identity( o ) ) != null;
+        }
+
+        @Override
+        public boolean contains( Object o ){
+            return _map.containsKey( new Identity( o ) );
+        }
+
+        @Override
+        public Iterator<T> iterator(){
+            return _map.values().iterator();
+        }
+
+        @Override
+        public int size(){
+            return _map.size();
+        }
+
+        @Override
+        public void clear(){
+            _map.clear();
+        }
+
+        private final ConcurrentMap<Identity, T> _map = new ConcurrentHashMap<Identity, T>();
+    }
+
+    static final class Identity {
+        Identity( Object o ){
+            _o = o;
+        }
+
+        @Override
+        public int hashCode(){
+            return System.identityHashCode( _o );
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            return o instanceof Identity && ( (Identity) o )._o == _o;
+        }
+
+        private final Object _o;
+    }
+
+    static class Node<T> {
+        Node( T item ){
+            _item = item;
+        }
+
+        final T _item;
+        Node<T> _next;
+    }
+
+    protected final String _name;
+    protected final int _size;
+
+    /** The members that are checked out. */
+    protected final Set<T> _out = new IdentitySet<T>();
+
+    private final Stack<T>[] _stripes;
+    private final AtomicInteger _avail = new AtomicInteger();
+    private final AtomicInteger _total = new AtomicInteger();
+    private final Semaphore _sem;
+    private volatile boolean _closed;
+}
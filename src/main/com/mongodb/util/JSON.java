@@ -22,6 +22,10 @@ import org.bson.BSONCallback;
 
 import com.mongodb.DBObject;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
 /**
  *   Helper methods for JSON serialization and de-serialization
  */
@@ -81,6 +85,56 @@ public class JSON {
         return p.parse();
     }
 
+    /**
+     * Parses one JSON value from a reader, which is read as far as the end of the value and a little beyond.  Use
+     * {@link JSONStreamParser} to read several values from one reader.
+     *
+     * @param in the input
+     * @param c the callback to send the value to, or null to build the same objects as {@link #parse(String)}
+     * @return the object, or null if the input is empty
+     * @throws IOException if the reader fails
+     * @since 2.12
+     */
+    public static Object parse( Reader in, BSONCallback c ) throws IOException {
+        return new JSONStreamParser(in, c).parseValue();
+    }
+
+    /**
+     * Serializes an object into its JSON form, appending it to {@code out} as it goes.  A document is appended one
+     * field at a time, so only the JSON of its largest field is held in memory at once.
+     *
+     * @param o object to serialize
+     * @param out where to append the JSON, such as a {@code Writer}
+     * @throws IOException if {@code out} fails
+     * @since 2.12
+     */
+    public static void serialize( Object o, Appendable out ) throws IOException {
+        ObjectSerializer serializer = JSONSerializers.getLegacy();
+        StringBuilder buf = new StringBuilder();
+
+        // the same layout as the serializer gives a DBObject; lists that are DBObjects are left to it
+        if (o instanceof DBObject && !(o instanceof List)) {
+            DBObject dbo = (DBObject) o;
+            boolean first = true;
+            out.append("{ ");
+            for (String name : dbo.keySet()) {
+                buf.setLength(0);
+                if (first)
+                    first = false;
+                else
+                    buf.append(" , ");
+                string(buf, name);
+                buf.append(" : ");
+                serializer.serialize(dbo.get(name), buf);
+                out.append(buf);
+            }
+            out.append("}");
+        } else {
+            serializer.serialize(o, buf);
+            out.append(buf);
+        }
+    }
+
     static void string( StringBuilder a , String s ){
         a.append("\"");
         for(int i = 0; i < s.length(); ++i){
@@ -0,0 +1,393 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import org.bson.BSONCallback;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses JSON from a {@link Reader}, one value at a time, without holding the input in memory.  It accepts what
+ * {@link JSON#parse(String)} accepts.  Scalars inside documents go straight to the callback as {@code gotInt},
+ * {@code gotString} and so on, so that a callback which does not build objects, such as one writing BSON, can import
+ * files of any size.
+ * <p>
+ * The input may hold any number of values separated by whitespace, as in the output of mongoexport, or one array of
+ * them, as with mongoexport's {@code --jsonArray}.
+ * </p>
+ * <pre>
+ * JSONStreamParser parser = new JSONStreamParser( new InputStreamReader( in , "UTF-8" ) );
+ * while ( parser.hasNext() )
+ *     collection.insert( (DBObject) parser.next() );
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class JSONStreamParser {
+
+    /**
+     * Creates a parser that builds the same objects as {@link JSON#parse(String)}.
+     */
+    public JSONStreamParser( Reader in ){
+        this( in , null );
+    }
+
+    /**
+     * @param in the input; reads are buffered, so it need not be
+     * @param callback the callback to send each value to, or null to build the same objects as
+     *                 {@link JSON#parse(String)}
+     */
+    public JSONStreamParser( Reader in , BSONCallback callback ){
+        _in = in;
+        _callback = callback == null ? new JSONCallback() : callback;
+    }
+
+    /**
+     * Skips to the next value, if there is one.
+     *
+     * @return true if there is another value
+     * @throws IOException if the reader fails
+     */
+    public boolean hasNext() throws IOException {
+        int c = peek();
+        if ( ! _started ){
+            _started = true;
+            if ( c == '[' ){
+                _pos++;
+                _inArray = true;
+                c = peek();
+            }
+        }
+        if ( _inArray ){
+            if ( c == ',' ){
+                _pos++;
+                c = peek();
+            }
+            if ( c == ']' ){
+                _pos++;
+                _inArray = false;
+                c = peek();
+            }
+        }
+        return c != -1;
+    }
+
+    /**
+     * Parses the next value.
+     *
+     * @return what the callback built for a document or array, or the value itself for a scalar
+     * @throws IOException if the reader fails
+     * @throws JSONParseException if the input is not valid JSON
+     * @throws NoSuchElementException if there are no more values
+     */
+    public Object next() throws IOException {
+        if ( ! hasNext() )
+            throw new NoSuchElementException();
+        return parseValue();
+    }
+
+    /**
+     * Closes the reader.
+     */
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /**
+     * Parses one value, or returns null at the end of the input.
+     */
+    Object parseValue() throws IOException {
+        if ( peek() == -1 )
+            return null;
+        _callback.reset();
+        return value( null );
+    }
+
+    // a document or array goes to the callback; a scalar is sent to it if it has a name and returned if not
+    private Object value( String name ) throws IOException {
+        switch ( peek() ){
+            case '{':
+                return object( name );
+            case '[':
+                return array( name );
+            case '\'':
+            case '"': {
+                String s = string( true );
+                if ( name != null )
+                    _callback.gotString( name , s );
+                return s;
+            }
+            case '0': case '1': case '2': case '3': case '4': case '5':
+            case '6': case '7': case '8': case '9': case '+': case '-':
+                return number( name );
+            case 'n':
+                word( "null" );
+                if ( name != null )
+                    _callback.gotNull( name );
+                return null;
+            case 'N':
+                word( "NaN" );
+                if ( name != null )
+                    _callback.gotDouble( name , Double.NaN );
+                return name == null ? Double.NaN : null;
+            case 't':
+                word( "true" );
+                if ( name != null )
+                    _callback.gotBoolean( name , true );
+                return name == null ? Boolean.TRUE : null;
+            case 'f':
+                word( "false" );
+                if ( name != null )
+                    _callback.gotBoolean( name , false );
+                return name == null ? Boolean.FALSE : null;
+            default:
+                throw error();
+        }
+    }
+
+    private Object object( String name ) throws IOException {
+        if ( name != null )
+            _callback.objectStart( name );
+        else
+            _callback.objectStart();
+
+        expect( '{' );
+        while ( peek() != '}' ){
+            String key = string( false );
+            expect( ':' );
+            value( key );
+            if ( peek() == ',' )
+                _pos++;
+            else
+                break;
+        }
+        expect( '}' );
+        return _callback.objectDone();
+    }
+
+    private Object array( String name ) throws IOException {
+        if ( name != null )
+            _callback.arrayStart( name );
+        else
+            _callback.arrayStart();
+
+        expect( '[' );
+        int i = 0;
+        int c = peek();
+        while ( c != ']' ){
+            value( i < INDEXES.length ? INDEXES[ i ] : String.valueOf( i ) );
+            i++;
+            if ( ( c = peek() ) == ',' )
+                _pos++;
+            else if ( c != ']' )
+                throw error();
+        }
+        expect( ']' );
+        return _callback.arrayDone();
+    }
+
+    private String string( boolean needQuote ) throws IOException {
+        int quote = peek();
+        if ( quote == '\'' || quote == '"' )
+            _pos++;
+        else if ( needQuote )
+            throw error();
+        else
+            quote = 0;
+
+        final StringBuilder buf = _chars;
+        buf.setLength( 0 );
+        while ( true ){
+            if ( _pos == _limit && ! fill() ){
+                if ( quote != 0 )
+                    throw error();
+                break;
+            }
+            char c = _buf[ _pos ];
+            if ( quote != 0 ? c == quote : ( c == ':' || Character.isWhitespace( c ) ) )
+                break;
+            _pos++;
+
+            if ( c != '\\' ){
+                buf.append( c );
+                continue;
+            }
+            char x = read();
+            switch ( x ){
+                case 'u': {
+                    int code = 0;
+                    for ( int i = 0; i < 4; i++ ){
+                        int digit = Character.digit( read() , 16 );
+                        if ( digit < 0 )
+                            throw error();
+                        code = code * 16 + digit;
+                    }
+                    buf.append( (char) code );
+                    break;
+                }
+                case 'n': buf.append( '\n' ); break;
+                case 'r': buf.append( '\r' ); break;
+                case 't': buf.append( '\t' ); break;
+                case 'b': buf.append( '\b' ); break;
+                default: buf.append( x );
+            }
+        }
+        if ( quote != 0 )
+            _pos++;
+        return buf.toString();
+    }
+
+    // integers are accumulated as they are read; only doubles need their text
+    private Object number( String name ) throws IOException {
+        final StringBuilder text = _chars;
+        text.setLength( 0 );
+        boolean negative = false;
+        boolean isDouble = false;
+        boolean overflow = false;
+        int digits = 0;
+        long value = 0;
+
+        char c = _buf[ _pos ];
+        if ( c == '-' || c == '+' ){
+            negative = c == '-';
+            text.append( c );
+            _pos++;
+        }
+        while ( _pos < _limit || fill() ){
+            c = _buf[ _pos ];
+            if ( c >= '0' && c <= '9' ){
+                if ( ! isDouble ){
+                    digits++;
+                    // accumulate as a negative number, whose range includes Long.MIN_VALUE
+                    long next = value * 10 - ( c - '0' );
+                    if ( value < Long.MIN_VALUE / 10 || next > value )
+                        overflow = true;
+                    value = next;
+                }
+            }
+            else if ( c == '.' || c == 'e' || c == 'E' ){
+                isDouble = true;
+            }
+            else if ( ! ( isDouble && ( c == '-' || c == '+' ) ) ){
+                break;
+            }
+            text.append( c );
+            _pos++;
+        }
+
+        if ( isDouble ){
+            double d;
+            try {
+                d = Double.parseDouble( text.toString() );
+            }
+            catch ( NumberFormatException e ){
+                throw error();
+            }
+            if ( name == null )
+                return d;
+            _callback.gotDouble( name , d );
+            return null;
+        }
+
+        if ( digits == 0 || overflow || ( ! negative && value == Long.MIN_VALUE ) )
+            throw error();
+        if ( ! negative )
+            value = -value;
+
+        if ( value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE ){
+            if ( name == null )
+                return (int) value;
+            _callback.gotInt( name , (int) value );
+        }
+        else {
+            if ( name == null )
+                return value;
+            _callback.gotLong( name , value );
+        }
+        return null;
+    }
+
+    private void word( String word ) throws IOException {
+        for ( int i = 0; i < word.length(); i++ )
+            if ( read() != word.charAt( i ) ){
+                _pos--;
+                throw error();
+            }
+    }
+
+    private void expect( char c ) throws IOException {
+        if ( peek() != c )
+            throw error();
+        _pos++;
+    }
+
+    private char read() throws IOException {
+        if ( _pos == _limit && ! fill() )
+            throw error();
+        return _buf[ _pos++ ];
+    }
+
+    // skips whitespace and returns the next character without reading it, or -1 at the end of the input
+    private int peek() throws IOException {
+        while ( true ){
+            if ( _pos == _limit && ! fill() )
+                return -1;
+            char c = _buf[ _pos ];
+            if ( ! Character.isWhitespace( c ) )
+                return c;
+            _pos++;
+        }
+    }
+
+    // keeps the end of what was read before, so that an error can show what led up to it
+    private boolean fill() throws IOException {
+        int keep = Math.min( _limit , CONTEXT );
+        System.arraycopy( _buf , _limit - keep , _buf , 0 , keep );
+        _pos = keep;
+        _limit = keep;
+
+        int n = _in.read( _buf , keep , _buf.length - keep );
+        if ( n <= 0 )
+            return false;
+        _limit += n;
+        return true;
+    }
+
+    private JSONParseException error(){
+        int from = Math.max( 0 , _pos - CONTEXT );
+        int to = Math.min( _limit , _pos + CONTEXT );
+        return new JSONParseException( new String( _buf , from , to - from ) , _pos - from );
+    }
+
+    private static final int CONTEXT = 40;
+    private static final String[] INDEXES = new String[ 256 ];
+    static {
+        for ( int i = 0; i < INDEXES.length; i++ )
+            INDEXES[ i ] = String.valueOf( i );
+    }
+
+    private final Reader _in;
+    private final BSONCallback _callback;
+    private final char[] _buf = new char[ 8192 ];
+    private final StringBuilder _chars = new StringBuilder();
+    private int _pos;
+    private int _limit;
+    private boolean _started;
+    private boolean _inArray;
+}
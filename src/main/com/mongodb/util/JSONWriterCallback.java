@@ -0,0 +1,243 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import com.mongodb.DBRef;
+import org.bson.BSON;
+import org.bson.BSONCallback;
+import org.bson.BasicBSONCallback;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * A callback that writes the JSON form of a BSON document as it is decoded, without building the document.  The text
+ * is the same as {@link JSON#serialize(Object)} would give for the document decoded by the driver's default decoder,
+ * and a different {@link ObjectSerializer}, such as {@link JSONSerializers#getStrict()}, can be given for values
+ * other than strings, numbers and booleans.
+ * <pre>
+ * JSONWriterCallback json = new JSONWriterCallback();
+ * new BasicBSONDecoder().decode( bytes , json );
+ * String s = json.getBuffer().toString();
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class JSONWriterCallback implements BSONCallback {
+
+    public JSONWriterCallback(){
+        this( new StringBuilder() , JSONSerializers.getLegacy() );
+    }
+
+    /**
+     * @param buf the buffer to append to
+     * @param serializer the serializer for values that are not strings, numbers or booleans
+     */
+    public JSONWriterCallback( StringBuilder buf , ObjectSerializer serializer ){
+        _buf = buf;
+        _serializer = serializer;
+    }
+
+    /**
+     * @return the buffer the JSON is appended to
+     */
+    public StringBuilder getBuffer(){
+        return _buf;
+    }
+
+    public void objectStart(){
+        _open( false );
+    }
+
+    public void objectStart( String name ){
+        _name( name );
+        _open( false );
+    }
+
+    public void objectStart( boolean array ){
+        _open( array );
+    }
+
+    public Object objectDone(){
+        _buf.append( '}' );
+        _depth--;
+        return null;
+    }
+
+    public void arrayStart(){
+        _open( true );
+    }
+
+    public void arrayStart( String name ){
+        _name( name );
+        _open( true );
+    }
+
+    public Object arrayDone(){
+        _buf.append( ']' );
+        _depth--;
+        return null;
+    }
+
+    /**
+     * Forgets any unfinished document.  The buffer is left as it is.
+     */
+    public void reset(){
+        _depth = 0;
+    }
+
+    /**
+     * @return the buffer the JSON is appended to
+     */
+    public Object get(){
+        return _buf;
+    }
+
+    // only used for the scope of code with scope, which is small and rare
+    public BSONCallback createBSONCallback(){
+        return new BasicBSONCallback();
+    }
+
+    public void gotNull( String name ){
+        _value( name , null );
+    }
+
+    // the default decoder leaves undefined fields out of the document
+    public void gotUndefined( String name ){
+    }
+
+    public void gotMinKey( String name ){
+        _value( name , new MinKey() );
+    }
+
+    public void gotMaxKey( String name ){
+        _value( name , new MaxKey() );
+    }
+
+    public void gotBoolean( String name , boolean v ){
+        _name( name );
+        _buf.append( v );
+    }
+
+    public void gotDouble( String name , double v ){
+        _name( name );
+        _buf.append( v );
+    }
+
+    public void gotInt( String name , int v ){
+        _name( name );
+        _buf.append( v );
+    }
+
+    public void gotLong( String name , long v ){
+        _name( name );
+        _buf.append( v );
+    }
+
+    public void gotDate( String name , long millis ){
+        _value( name , new Date( millis ) );
+    }
+
+    public void gotString( String name , String v ){
+        _name( name );
+        JSON.string( _buf , v );
+    }
+
+    public void gotSymbol( String name , String v ){
+        gotString( name , v );
+    }
+
+    public void gotRegex( String name , String pattern , String flags ){
+        _value( name , Pattern.compile( pattern , BSON.regexFlags( flags ) ) );
+    }
+
+    public void gotTimestamp( String name , int time , int inc ){
+        _value( name , new BSONTimestamp( time , inc ) );
+    }
+
+    public void gotObjectId( String name , ObjectId id ){
+        _value( name , id );
+    }
+
+    public void gotDBRef( String name , String ns , ObjectId id ){
+        _value( name , new DBRef( null , ns , id ) );
+    }
+
+    @Deprecated
+    public void gotBinaryArray( String name , byte[] data ){
+        gotBinary( name , BSON.B_GENERAL , data );
+    }
+
+    public void gotBinary( String name , byte type , byte[] data ){
+        _value( name , type == BSON.B_GENERAL || type == BSON.B_BINARY ? data : new Binary( type , data ) );
+    }
+
+    public void gotUUID( String name , long part1 , long part2 ){
+        _value( name , new UUID( part1 , part2 ) );
+    }
+
+    public void gotCode( String name , String code ){
+        _value( name , new Code( code ) );
+    }
+
+    public void gotCodeWScope( String name , String code , Object scope ){
+        _value( name , new CodeWScope( code , (org.bson.BSONObject) scope ) );
+    }
+
+    private void _value( String name , Object value ){
+        _name( name );
+        _serializer.serialize( value , _buf );
+    }
+
+    private void _open( boolean array ){
+        _buf.append( array ? "[ " : "{ " );
+        _depth++;
+        if ( _depth == _array.length ){
+            _array = Arrays.copyOf( _array , _depth * 2 );
+            _first = Arrays.copyOf( _first , _depth * 2 );
+        }
+        _array[ _depth ] = array;
+        _first[ _depth ] = true;
+    }
+
+    // separates this value from the one before it and, in a document, writes its name
+    private void _name( String name ){
+        if ( _first[ _depth ] )
+            _first[ _depth ] = false;
+        else
+            _buf.append( " , " );
+        if ( ! _array[ _depth ] ){
+            JSON.string( _buf , name );
+            _buf.append( " : " );
+        }
+    }
+
+    private final StringBuilder _buf;
+    private final ObjectSerializer _serializer;
+    private int _depth;
+    private boolean[] _array = new boolean[ 8 ];
+    private boolean[] _first = new boolean[ 8 ];
+}
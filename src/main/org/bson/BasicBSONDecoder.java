@@ -19,6 +19,7 @@ import static org.bson.BSON.*;
 
 import java.io.*;
 
+import org.bson.io.FieldNameCache;
 import org.bson.io.PoolOutputBuffer;
 import org.bson.types.ObjectId;
 
@@ -169,7 +170,7 @@ public class BasicBSONDecoder implements BSONDecoder {
         if ( type == EOO )
             return false;
 
-        String name = _in.readCStr();
+        String name = _in.readFieldName();
 
         switch ( type ){
         case NULL:
@@ -460,6 +461,27 @@ public class BasicBSONDecoder implements BSONDecoder {
         }
 
         public String readCStr() throws IOException {
+            return _readCStr( null );
+        }
+
+        String readFieldName() throws IOException {
+            return _readCStr( FieldNameCache.getDefault() );
+        }
+
+        private String _readCStr( final FieldNameCache cache ) throws IOException {
+
+            // decode in place when the whole string is already buffered
+            for ( int end = _pos; end < _len; end++ ){
+                if ( _inputBuffer[end] == 0 ){
+                    final int start = _pos;
+                    final int length = end - start;
+                    _pos += length + 1;
+                    _read += length + 1;
+                    if ( cache != null )
+                        return cache.get( _inputBuffer , start , length , _utf8 );
+                    return _utf8.decode( _inputBuffer , start , length );
+                }
+            }
 
             boolean isAscii = true;
 
@@ -515,19 +537,14 @@ public class BasicBSONDecoder implements BSONDecoder {
                     return "";
                 }
 
-                return new String( _inputBuffer , _need(size) , size - 1 , DEFAULT_ENCODING );
+                return _utf8.decode( _inputBuffer , _need(size) , size - 1 );
             }
 
             final byte [] b = size < _random.length ? _random : new byte[size];
 
             fill( b , size );
 
-            try {
-                return new String( b , 0 , size - 1 , DEFAULT_ENCODING );
-            }
-            catch ( java.io.UnsupportedEncodingException uee ){
-                throw new BSONException( "impossible" , uee );
-            }
+            return _utf8.decode( b , 0 , size - 1 );
         }
 
         public int numRead() {
@@ -572,6 +589,9 @@ public class BasicBSONDecoder implements BSONDecoder {
 
     private PoolOutputBuffer _stringBuffer = new PoolOutputBuffer();
 
+    @SuppressWarnings("deprecation")
+    private final org.bson.io.UTF8Decoder _utf8 = new org.bson.io.UTF8Decoder();
+
     /**
      * @deprecated This field should not be a part of API.
      *             Please see the class-level documentation for a migration instructions.
@@ -48,26 +48,25 @@ public class KeyCachingLazyBSONObject extends LazyBSONObject {
             return super.containsField( s );
     }
     
-    synchronized private void ensureFieldList() {
+    private void ensureFieldList() {
+        if (fieldIndex == null) buildFieldList();
+    }
+
+    synchronized private void buildFieldList() {
         //only run once
-        if (fieldIndex == null) return;
+        if (fieldIndex != null) return;
+        HashMap<String, ElementRecord> index = new HashMap<String, ElementRecord>();
         try {
-            int offset = _doc_start_offset + FIRST_ELMT_OFFSET;
-            
-            while ( !isElementEmpty( offset ) ){
-                int fieldSize = sizeCString( offset );
-                int elementSize = getElementBSONSize( offset++ );
-                String name = _input.getCString( offset );
-                ElementRecord _t_record = new ElementRecord( name, offset );
-                fieldIndex.put( name, _t_record );
-                offset += ( fieldSize + elementSize );
-            }
+            // keys come through getElementFieldName, and so from the FieldNameCache when one is set
+            for ( ElementRecord record : getElements() )
+                index.put( record.name, record );
         } catch (Exception e) {
-            fieldIndex = new HashMap<String, ElementRecord>();
+            index = new HashMap<String, ElementRecord>();
         }
+        fieldIndex = index;
     }
     
     
-    private HashMap<String, ElementRecord> fieldIndex = new HashMap<String, ElementRecord>();
+    private volatile HashMap<String, ElementRecord> fieldIndex;
 
 }
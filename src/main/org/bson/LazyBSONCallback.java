@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import com.mongodb.LazyDBObject;
+import org.bson.io.BSONByteBuffer;
 import org.bson.types.ObjectId;
 
 /**
@@ -71,6 +72,23 @@ public class LazyBSONCallback extends EmptyBSONCallback {
         return new LazyBSONList( data, offset, this );
     }
 
+    /**
+     * Creates an embedded document of a lazy object whose buffer has no accessible array, such as a direct buffer.
+     * @since 2.12
+     */
+    public Object createObject( BSONByteBuffer buffer, int offset ){
+        return new LazyDBObject( buffer, offset, this );
+    }
+
+    /**
+     * Creates an embedded array of a lazy object whose buffer has no accessible array, such as a direct buffer.
+     * @since 2.12
+     */
+    @SuppressWarnings("rawtypes")
+    public List createArray( BSONByteBuffer buffer, int offset ){
+        return new LazyBSONList( buffer, offset, this );
+    }
+
     public Object createDBRef( String ns, ObjectId id ){
         return new BasicBSONObject( "$ns", ns ).append( "$id", id );
     }
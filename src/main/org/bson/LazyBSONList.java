@@ -28,7 +28,9 @@ public class LazyBSONList extends LazyBSONObject implements List {
 
     @Override
     public Object get( int pos ){
-        return get("" + pos);
+        // arrays are normally stored with keys "0", "1", ... in order, so try the element at that position first
+        ElementRecord element = getElement( pos, String.valueOf( pos ) );
+        return element == null ? null : getElementValue( element );
     }
     
     @Override
@@ -70,7 +72,7 @@ public class LazyBSONList extends LazyBSONObject implements List {
     @Override
     public int size(){
         //TODO check the last one and get the key/field name to see the ordinal position in case the array is stored with missing elements.
-        return getElements().size();
+        return elementCount();
     }
 
     public class LazyBSONListIterator implements Iterator {
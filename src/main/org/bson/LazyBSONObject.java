@@ -16,6 +16,7 @@
 package org.bson;
 
 import org.bson.io.BSONByteBuffer;
+import org.bson.io.FieldNameCache;
 import org.bson.types.*;
 
 import java.io.IOException;
@@ -79,7 +80,7 @@ public class LazyBSONObject implements BSONObject {
         public String next(){
             int fieldSize = sizeCString( offset + 1);
             int elementSize = getElementBSONSize( offset );
-            String key = _input.getCString( offset + 1);
+            String key = getElementFieldName( offset + 1 );
             offset += fieldSize + elementSize + 1;
             return key;
         }
@@ -98,19 +99,11 @@ public class LazyBSONObject implements BSONObject {
     public class LazyBSONKeySet extends ReadOnlySet<String> {
 
         /**
-         * This method runs in time linear to the total size of all keys in the document.
-         *
          * @return the number of keys in the document
          */
         @Override
         public int size(){
-            int size = 0;
-            Iterator<String> iter = iterator();
-            while(iter.hasNext()) {
-                iter.next();
-                ++size;
-            }
-            return size;
+            return elementCount();
         }
 
         @Override
@@ -120,12 +113,7 @@ public class LazyBSONObject implements BSONObject {
 
         @Override
         public boolean contains( Object o ){
-            for ( String key : this ){
-                if ( key.equals( o ) ){
-                    return true;
-                }
-            }
-            return false;
+            return o instanceof String && getElement( (String) o ) != null;
         }
 
         @Override
@@ -188,7 +176,7 @@ public class LazyBSONObject implements BSONObject {
         public Map.Entry<String, Object> next(){
             int fieldSize = sizeCString(offset + 1);
             int elementSize = getElementBSONSize(offset);
-            String key = _input.getCString(offset + 1);
+            String key = getElementFieldName( offset + 1 );
             final ElementRecord nextElementRecord = new ElementRecord(key, ++offset);
             offset += fieldSize + elementSize;
             return new Map.Entry<String, Object>() {
@@ -365,22 +353,159 @@ public class LazyBSONObject implements BSONObject {
      * @return ElementRecord for key, or null
      */
     ElementRecord getElement(String key){
-        int offset = _doc_start_offset + FIRST_ELMT_OFFSET;
- 
-        while ( !isElementEmpty( offset ) ){
-            int fieldSize = sizeCString( offset + 1 );
-            int elementSize = getElementBSONSize( offset );
-            String name = _input.getCString( ++offset);
+        int offset = elementIndex().find( key );
+        return offset < 0 ? null : new ElementRecord( key, offset );
+    }
+
+    /**
+     * @return the number of elements in this document
+     */
+    int elementCount(){
+        return elementIndex().size();
+    }
+
+    /**
+     * returns the ElementRecord for the given key, checking the element at the given position before looking the key up
+     * @param position where the key is expected to be
+     * @param key the field/key to find
+     * @return ElementRecord for key, or null
+     */
+    ElementRecord getElement( int position, String key ){
+        ElementIndex index = elementIndex();
+        int offset = index.offsetAt( position );
+        if ( offset >= 0 && index.nameEquals( offset, key, null ) )
+            return new ElementRecord( key, offset );
+        return getElement( key );
+    }
+
+    private ElementIndex elementIndex(){
+        ElementIndex index = _index;
+        if ( index == null ){
+            index = new ElementIndex();
+            _index = index;
+        }
+        return index;
+    }
+
+    /**
+     * The offsets of the element names of a document, in order, and an open-addressed table over them keyed by the
+     * hash of each name's UTF-8 bytes.  It is built with one pass over the document that decodes no names, after which
+     * finding a field costs one probe and a byte comparison instead of a walk from the first element.
+     */
+    private final class ElementIndex {
+
+        ElementIndex(){
+            int[] offsets = new int[8];
+            int[] hashes = new int[8];
+            int n = 0;
+
+            int offset = _doc_start_offset + FIRST_ELMT_OFFSET;
+            while ( !isElementEmpty( offset ) ){
+                int name = offset + 1;
+                int hash = 0;
+                int end = name;
+                byte b;
+                while ( ( b = _input.get( end ) ) != 0 ){
+                    hash = 31 * hash + b;
+                    end++;
+                }
+                if ( n == offsets.length ){
+                    offsets = Arrays.copyOf( offsets, n * 2 );
+                    hashes = Arrays.copyOf( hashes, n * 2 );
+                }
+                offsets[n] = name;
+                hashes[n] = hash;
+                n++;
+                offset = end + 1 + getElementBSONSize( offset );
+            }
+
+            int capacity = 4;
+            while ( capacity < n * 2 )
+                capacity <<= 1;
+            // slots hold 1 + the position of an element, so that 0 is empty; a duplicate name lands after the first
+            int[] table = new int[capacity];
+            for ( int i = 0; i < n; i++ ){
+                int slot = mix( hashes[i] ) & ( capacity - 1 );
+                while ( table[slot] != 0 )
+                    slot = ( slot + 1 ) & ( capacity - 1 );
+                table[slot] = i + 1;
+            }
+
+            _offsets = offsets;
+            _hashes = hashes;
+            _table = table;
+            _size = n;
+        }
+
+        int size(){
+            return _size;
+        }
+
+        int offsetAt( int position ){
+            return position < 0 || position >= _size ? -1 : _offsets[position];
+        }
+
+        int find( String key ){
+            byte[] utf8 = null;
+            int hash = 0;
+            for ( int i = 0; i < key.length(); i++ ){
+                char c = key.charAt( i );
+                if ( c == 0 )
+                    return -1;
+                if ( c >= 0x80 ){
+                    utf8 = encode( key );
+                    break;
+                }
+                hash = 31 * hash + c;
+            }
+            if ( utf8 != null ){
+                hash = 0;
+                for ( byte b : utf8 )
+                    hash = 31 * hash + b;
+            }
 
-            if (name.equals(key)) {
-                return new ElementRecord( name, offset );
+            int slot = mix( hash ) & ( _table.length - 1 );
+            while ( _table[slot] != 0 ){
+                int i = _table[slot] - 1;
+                if ( _hashes[i] == hash && nameEquals( _offsets[i], key, utf8 ) )
+                    return _offsets[i];
+                slot = ( slot + 1 ) & ( _table.length - 1 );
             }
-            offset += ( fieldSize + elementSize);
+            return -1;
         }
 
-        return null;
+        // utf8 is the encoded key, or null if the key is ASCII
+        boolean nameEquals( int offset, String key, byte[] utf8 ){
+            if ( utf8 == null ){
+                for ( int i = 0; i < key.length(); i++ )
+                    if ( _input.get( offset + i ) != key.charAt( i ) )
+                        return false;
+                return _input.get( offset + key.length() ) == 0;
+            }
+            for ( int i = 0; i < utf8.length; i++ )
+                if ( _input.get( offset + i ) != utf8[i] )
+                    return false;
+            return _input.get( offset + utf8.length ) == 0;
+        }
+
+        private final int[] _offsets;
+        private final int[] _hashes;
+        private final int[] _table;
+        private final int _size;
+    }
+
+    private static int mix( int hash ){
+        return hash ^ ( hash >>> 16 );
     }
 
+    private static byte[] encode( String key ){
+        try {
+            return key.getBytes( "UTF-8" );
+        }
+        catch ( java.io.UnsupportedEncodingException e ){
+            throw new BSONException( "impossible", e );
+        }
+    }
 
     /**
      * returns all the ElementRecords in this document
@@ -393,7 +518,7 @@ public class LazyBSONObject implements BSONObject {
         while ( !isElementEmpty( offset ) ){
             int fieldSize = sizeCString( offset + 1 );
             int elementSize = getElementBSONSize( offset );
-            String name = _input.getCString( ++offset );
+            String name = getElementFieldName( ++offset );
             ElementRecord rec = new ElementRecord( name, offset );
             elements.add( rec );
             offset += ( fieldSize + elementSize );
@@ -416,7 +541,7 @@ public class LazyBSONObject implements BSONObject {
     }
 
     public boolean containsField( String s ){
-        return keySet().contains( s );
+        return getElement( s ) != null;
     }
 
     /**
@@ -456,12 +581,23 @@ public class LazyBSONObject implements BSONObject {
     }
     
     public int pipe(OutputStream os) throws IOException {
-        os.write(_input.array(), _doc_start_offset, getBSONSize());
-        return getBSONSize();
+        final int size = getBSONSize();
+        if (_input.hasArray()) {
+            os.write(_input.array(), _doc_start_offset, size);
+        } else {
+            byte[] chunk = new byte[Math.min(size, 8192)];
+            for (int done = 0; done < size; done += chunk.length) {
+                int n = Math.min(chunk.length, size - done);
+                _input.get(_doc_start_offset + done, chunk, 0, n);
+                os.write(chunk, 0, n);
+            }
+        }
+        return size;
     }
 
-    private String getElementFieldName( final int offset ){
-        return _input.getCString( offset );
+    String getElementFieldName( final int offset ){
+        FieldNameCache cache = FieldNameCache.getDefault();
+        return cache == null ? _input.getCString( offset ) : _input.getCString( offset , cache );
     }
 
     /**
@@ -595,8 +731,7 @@ public class LazyBSONObject implements BSONObject {
             case BSON.CODE_W_SCOPE:
                 int strsize = _input.getInt( record.valueOffset + 4 );
                 String code = _input.getUTF8String( record.valueOffset + 4 );
-                BSONObject scope =
-                        (BSONObject) _callback.createObject( _input.array(), record.valueOffset + 4 + 4 + strsize );
+                BSONObject scope = (BSONObject) createObject( record.valueOffset + 4 + 4 + strsize );
                 return new CodeWScope( code, scope );
             case BSON.REF:
                 int csize = _input.getInt( record.valueOffset );
@@ -607,9 +742,10 @@ public class LazyBSONObject implements BSONObject {
                                              _input.getIntBE( oidOffset + 8 ) );
                 return _callback.createDBRef( ns, oid );
             case BSON.OBJECT:
-                return _callback.createObject( _input.array(), record.valueOffset );
+                return createObject( record.valueOffset );
             case BSON.ARRAY:
-                return _callback.createArray( _input.array(), record.valueOffset );
+                return _input.hasArray() ? _callback.createArray( _input.array(), record.valueOffset )
+                                         : _callback.createArray( _input, record.valueOffset );
             case BSON.BINARY:
                 return readBinary( record.valueOffset );
             case BSON.REGEX:
@@ -623,6 +759,11 @@ public class LazyBSONObject implements BSONObject {
         }
     }
 
+    // embedded documents share this document's buffer; only heap buffers go through the byte[] callbacks
+    private Object createObject( int offset ){
+        return _input.hasArray() ? _callback.createObject( _input.array(), offset ) : _callback.createObject( _input, offset );
+    }
+
     private Object readBinary( int valueOffset ){
         final int totalLen = _input.getInt( valueOffset );
         valueOffset += 4;
@@ -679,12 +820,40 @@ public class LazyBSONObject implements BSONObject {
 
         LazyBSONObject that = (LazyBSONObject) o;
 
-        return Arrays.equals(this._input.array(), that._input.array());
+        // documents can share a backing array (e.g. all the documents in one reply), so only compare their own bytes
+        int size = getBSONSize();
+        if (size != that.getBSONSize()) return false;
+
+        if (!this._input.hasArray() || !that._input.hasArray()) {
+            for (int i = 0; i < size; i++) {
+                if (this._input.get(this._doc_start_offset + i) != that._input.get(that._doc_start_offset + i)) return false;
+            }
+            return true;
+        }
+
+        byte[] a = this._input.array();
+        byte[] b = that._input.array();
+        for (int i = 0; i < size; i++) {
+            if (a[this._doc_start_offset + i] != b[that._doc_start_offset + i]) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(_input.array());
+        int result = 1;
+        if (!_input.hasArray()) {
+            for (int i = _doc_start_offset, end = _doc_start_offset + getBSONSize(); i < end; i++) {
+                result = 31 * result + _input.get(i);
+            }
+            return result;
+        }
+
+        byte[] a = _input.array();
+        for (int i = _doc_start_offset, end = _doc_start_offset + getBSONSize(); i < end; i++) {
+            result = 31 * result + a[i];
+        }
+        return result;
     }
 
     /**
@@ -722,5 +891,8 @@ public class LazyBSONObject implements BSONObject {
      */
     @Deprecated
     protected final LazyBSONCallback _callback;
+
+    // built on the first lookup; its fields are final, so racing threads at worst build it twice
+    private ElementIndex _index;
     private static final Logger log = Logger.getLogger( "org.bson.LazyBSONObject" );
 }
@@ -17,6 +17,7 @@
 package org.bson;
 
 import org.bson.io.Bits;
+import org.bson.io.FieldNameCache;
 import org.bson.types.ObjectId;
 import static org.bson.BSON.*;
 
@@ -24,7 +25,8 @@ import static org.bson.BSON.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.DataInputStream;
-import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
  * A new implementation of the bson decoder.
@@ -34,6 +36,25 @@ import java.io.UnsupportedEncodingException;
 @Deprecated
 public class NewBSONDecoder implements BSONDecoder {
 
+    public NewBSONDecoder() {
+    }
+
+    /**
+     * Creates a decoder that only decodes the given dotted paths, such as {@code "name"} or {@code "address.city"},
+     * and steps over everything else by its encoded length.  A path into an array applies to each document in it, or
+     * to one element if it names an index, as in {@code "items.0.sku"}.
+     */
+    public NewBSONDecoder(final Collection<String> paths) {
+        _filter = PathNode.of(paths);
+    }
+
+    /**
+     * @return true if the last document decoded by a decoder with paths had fields that were skipped
+     */
+    public boolean isPartial() {
+        return _partial;
+    }
+
     @Override
     public BSONObject readObject(final byte [] pData) {
         _length = pData.length;
@@ -51,6 +72,7 @@ public class NewBSONDecoder implements BSONDecoder {
             _data = new byte[_length];
         }
 
+        _writeLength(_data, _length);
         (new DataInputStream(pIn)).readFully(_data, 4, (_length - 4));
 
         return readObject(_data);
@@ -59,9 +81,17 @@ public class NewBSONDecoder implements BSONDecoder {
     @Override
     public int decode(final byte [] pData, final BSONCallback pCallback) {
         _data = pData;
+        _length = Bits.readInt(pData, 0);
         _pos = 4;
         _callback = pCallback;
-        _decode();
+        if (_filter == null) {
+            _decode();
+        } else {
+            _partial = false;
+            _callback.objectStart();
+            _decodeSelected(_filter);
+            _callback.objectDone();
+        }
         return _length;
     }
 
@@ -73,28 +103,106 @@ public class NewBSONDecoder implements BSONDecoder {
             _data = new byte[_length];
         }
 
+        _writeLength(_data, _length);
         (new DataInputStream(pIn)).readFully(_data, 4, (_length - 4));
 
         return decode(_data, pCallback);
     }
 
+    // the length was read from the stream, so it is put back in front of the rest for decode(byte[]) to read
+    private static void _writeLength(final byte [] pData, final int pLength) {
+        pData[0] = (byte) pLength;
+        pData[1] = (byte) (pLength >> 8);
+        pData[2] = (byte) (pLength >> 16);
+        pData[3] = (byte) (pLength >> 24);
+    }
+
     private final void _decode() {
         _callback.objectStart();
         while (decodeElement());
         _callback.objectDone();
     }
 
+    // decodes the elements of one level that are on a selected path, and skips the rest without reading them
+    private final void _decodeSelected(final PathNode pNode) {
+        while (true) {
+            final int start = _pos;
+            final byte type = _data[_pos];
+            _pos += 1;
+
+            if (type == EOO) return;
+
+            final int nameStart = _pos;
+            while (_data[_pos] != 0) _pos++;
+            PathNode child = pNode.get(_data, nameStart, _pos - nameStart);
+            _pos += 1;
+
+            if (child == null && pNode._base != null && type == OBJECT) child = pNode._base;
+
+            if (child == null) {
+                _partial = true;
+                _skipValue(type);
+            } else if (child._all) {
+                _pos = start;
+                decodeElement();
+            } else if (type == OBJECT || type == ARRAY) {
+                _pos = nameStart;
+                final String name = readFieldName();
+                _pos += 4;
+                if (type == OBJECT) {
+                    _callback.objectStart(name);
+                    _decodeSelected(child);
+                    _callback.objectDone();
+                } else {
+                    _callback.arrayStart(name);
+                    _decodeSelected(child.inArray());
+                    _callback.arrayDone();
+                }
+            } else {
+                _partial = true;
+                _skipValue(type);
+            }
+        }
+    }
+
+    private final void _skipValue(final byte pType) {
+        switch (pType) {
+            case NULL: case UNDEFINED: case MINKEY: case MAXKEY: return;
+            case BOOLEAN: _pos += 1; return;
+            case NUMBER_INT: _pos += 4; return;
+            case NUMBER: case NUMBER_LONG: case DATE: case TIMESTAMP: _pos += 8; return;
+            case OID: _pos += 12; return;
+            case STRING: case SYMBOL: case CODE: _pos += 4 + Bits.readInt(_data, _pos); return;
+            case REF: _pos += 4 + Bits.readInt(_data, _pos) + 12; return;
+            case REGEX:
+                while (_data[_pos++] != 0);
+                while (_data[_pos++] != 0);
+                return;
+            case BINARY: _pos += 4 + 1 + Bits.readInt(_data, _pos); return;
+            case OBJECT: case ARRAY: case CODE_W_SCOPE: _pos += Bits.readInt(_data, _pos); return;
+            default: throw new UnsupportedOperationException( "BSONDecoder doesn't understand type : " + pType );
+        }
+    }
+
     private final String readCstr() {
         int length = 0;
         final int offset = _pos;
 
         while (_data[_pos++] != 0) length++;
 
-        try {
-            return new String(_data, offset, length, DEFAULT_ENCODING);
-        } catch (final UnsupportedEncodingException uee) {
-            return new String(_data, offset, length);
-        }
+        return _utf8.decode(_data, offset, length);
+    }
+
+    private final String readFieldName() {
+        final FieldNameCache cache = FieldNameCache.getDefault();
+        if (cache == null) return readCstr();
+
+        int length = 0;
+        final int offset = _pos;
+
+        while (_data[_pos++] != 0) length++;
+
+        return cache.get(_data, offset, length, _utf8);
     }
 
     private final String readUtf8Str() {
@@ -103,14 +211,9 @@ public class NewBSONDecoder implements BSONDecoder {
 
         if (length <= 0 || length > MAX_STRING) throw new BSONException("String invalid - corruption");
 
-        try {
-            final String str = new String(_data, _pos, (length - 1), DEFAULT_ENCODING);
-            _pos += length;
-            return str;
-
-        } catch (final UnsupportedEncodingException uee) {
-            throw new BSONException("What is in the db", uee);
-        }
+        final String str = _utf8.decode(_data, _pos, (length - 1));
+        _pos += length;
+        return str;
     }
 
     private final Object _readBasicObject() {
@@ -189,7 +292,7 @@ public class NewBSONDecoder implements BSONDecoder {
 
         if (type == EOO) return false;
 
-        final String name = readCstr();
+        final String name = readFieldName();
 
         switch (type) {
             case NULL: { _callback.gotNull(name); return true; }
@@ -295,12 +398,86 @@ public class NewBSONDecoder implements BSONDecoder {
         }
     }
 
+    /**
+     * One level of the selected paths.  Names are kept as UTF-8 so that fields can be matched before decoding them.
+     */
+    static final class PathNode {
+
+        static PathNode of(final Collection<String> pPaths) {
+            if (pPaths == null || pPaths.isEmpty()) throw new IllegalArgumentException("at least one path is required");
+
+            final PathNode root = new PathNode();
+            for (final String path : pPaths) {
+                if (path == null || path.length() == 0) throw new IllegalArgumentException("empty path");
+
+                PathNode node = root;
+                for (final String name : path.split("\\.")) {
+                    node = node.child(name);
+                }
+                node._all = true;
+            }
+            return root;
+        }
+
+        PathNode get(final byte [] pData, final int pOffset, final int pLength) {
+            for (int i = 0; i < _names.length; i++) {
+                final byte [] name = _names[i];
+                if (name.length != pLength) continue;
+
+                int j = 0;
+                while (j < pLength && name[j] == pData[pOffset + j]) j++;
+                if (j == pLength) return _children[i];
+            }
+            return null;
+        }
+
+        // the same paths, applied to each document of an array
+        PathNode inArray() {
+            if (_arrayView == null) {
+                final PathNode view = new PathNode();
+                view._names = _names;
+                view._children = _children;
+                view._base = this;
+                _arrayView = view;
+            }
+            return _arrayView;
+        }
+
+        private PathNode child(final String pName) {
+            final byte [] name;
+            try {
+                name = pName.getBytes("UTF-8");
+            } catch (java.io.UnsupportedEncodingException e) {
+                throw new BSONException("impossible", e);
+            }
+
+            final PathNode found = get(name, 0, name.length);
+            if (found != null) return found;
+
+            final PathNode node = new PathNode();
+            _names = Arrays.copyOf(_names, _names.length + 1);
+            _names[_names.length - 1] = name;
+            _children = Arrays.copyOf(_children, _children.length + 1);
+            _children[_children.length - 1] = node;
+            return node;
+        }
+
+        private byte [][] _names = new byte[0][];
+        private PathNode [] _children = new PathNode[0];
+        private boolean _all;
+        private PathNode _base;
+        private PathNode _arrayView;
+    }
+
     private static final int MAX_STRING = ( 32 * 1024 * 1024 );
-    private static final String DEFAULT_ENCODING = "UTF-8";
 
     private byte [] _data;
     private int _length;
     private int _pos = 0;
     private BSONCallback _callback;
+    @SuppressWarnings("deprecation")
+    private final org.bson.io.UTF8Decoder _utf8 = new org.bson.io.UTF8Decoder();
+    private PathNode _filter;
+    private boolean _partial;
 }
 
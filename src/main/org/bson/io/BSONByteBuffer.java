@@ -41,6 +41,18 @@ public class BSONByteBuffer {
         return new BSONByteBuffer( ByteBuffer.wrap( bytes ) );
     }
 
+    /**
+     * Wraps the remaining bytes of a buffer, which may be direct or memory-mapped, without copying them.  Offsets are
+     * relative to the buffer's current position, and its position, limit and byte order are left as they are.
+     *
+     * @param buffer the buffer holding the BSON
+     * @return the wrapper
+     * @since 2.12
+     */
+    public static BSONByteBuffer wrap( ByteBuffer buffer ){
+        return new BSONByteBuffer( buffer.slice() );
+    }
+
     public byte get( int i ){
         return buf.get(i);
     }
@@ -53,10 +65,33 @@ public class BSONByteBuffer {
         return buf.get(bytes);
     }
 
+    /**
+     * Copies bytes from an absolute offset without changing the position.
+     *
+     * @param i the offset to copy from
+     * @param bytes the destination
+     * @param offset the offset in the destination
+     * @param length the number of bytes to copy
+     * @since 2.12
+     */
+    public void get( int i, byte[] bytes, int offset, int length ){
+        ByteBuffer dup = buf.duplicate();
+        dup.position( i );
+        dup.get( bytes, offset, length );
+    }
+
     public byte[] array(){
         return buf.array();
     }
 
+    /**
+     * @return true if {@link #array()} is available and its indexes are the offsets used by this buffer
+     * @since 2.12
+     */
+    public boolean hasArray(){
+        return buf.hasArray() && buf.arrayOffset() == 0;
+    }
+
     public String toString(){
         return buf.toString();
     }
@@ -110,22 +145,36 @@ public class BSONByteBuffer {
         return buf.getLong( i );
     }
 
+    @SuppressWarnings("deprecation")
     public String getCString(int offset) {
         int end = offset;
         while (get(end) != 0) {
             ++end;
         }
         int len = end - offset;
-        return new String(array(), offset, len);
+        return UTF8Decoder.forCurrentThread().decode(buf, offset, len);
+    }
+
+    /**
+     * Gets the C string at the given offset through a field name cache.
+     *
+     * @param offset the offset of the string
+     * @param cache the cache to look the string up in
+     * @return the string
+     */
+    @SuppressWarnings("deprecation")
+    public String getCString(int offset, FieldNameCache cache) {
+        int end = offset;
+        while (get(end) != 0) {
+            ++end;
+        }
+        return cache.get(buf, offset, end - offset, UTF8Decoder.forCurrentThread());
     }
 
+    @SuppressWarnings("deprecation")
     public String getUTF8String(int valueOffset) {
         int size = getInt(valueOffset) - 1;
-        try {
-            return new String(array(), valueOffset + 4, size, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new BSONException( "Cannot decode string as UTF-8." );
-        }
+        return UTF8Decoder.forCurrentThread().decode(buf, valueOffset + 4, size);
     }
 
     public Buffer position( int i ){
@@ -0,0 +1,269 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import org.bson.BSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An output buffer backed by a single growable {@link ByteBuffer}, which may be direct.
+ * <p>
+ * Numbers are written with single little-endian puts, sizes are backpatched with absolute puts rather than by moving
+ * the position back and forth, and C strings are written straight into the buffer, with a fast path for ASCII.
+ * Nothing is allocated while writing unless the buffer has to grow.  A buffer can be {@link #reset()} and reused.
+ * </p>
+ *
+ * @since 2.12
+ */
+public class ByteBufferOutputBuffer extends OutputBuffer {
+
+    /**
+     * Creates a heap buffer with a default initial capacity.
+     */
+    public ByteBufferOutputBuffer(){
+        this( 1024 , false );
+    }
+
+    /**
+     * @param initialCapacity the initial capacity, in bytes
+     * @param direct whether to allocate direct buffers
+     */
+    public ByteBufferOutputBuffer( int initialCapacity , boolean direct ){
+        if ( initialCapacity <= 0 )
+            throw new IllegalArgumentException( "initialCapacity must be > 0" );
+        _direct = direct;
+        _buffer = _allocate( initialCapacity );
+    }
+
+    /**
+     * Discards everything written so far, keeping the buffer for reuse.
+     */
+    public void reset(){
+        _buffer.clear();
+        _size = 0;
+    }
+
+    /**
+     * @return a read-only view of the bytes written so far
+     */
+    public ByteBuffer getByteBuffer(){
+        ByteBuffer view = _buffer.asReadOnlyBuffer();
+        view.position( 0 ).limit( _size );
+        return view.slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * @return the capacity of the underlying buffer
+     */
+    public int capacity(){
+        return _buffer.capacity();
+    }
+
+    @Override
+    public void write( byte[] b ){
+        write( b , 0 , b.length );
+    }
+
+    @Override
+    public void write( byte[] b , int off , int len ){
+        _ensure( len );
+        _buffer.put( b , off , len );
+        _afterWrite();
+    }
+
+    @Override
+    public void write( int b ){
+        _ensure( 1 );
+        _buffer.put( (byte) b );
+        _afterWrite();
+    }
+
+    @Override
+    public void writeInt( int x ){
+        _ensure( 4 );
+        _buffer.putInt( x );
+        _afterWrite();
+    }
+
+    /**
+     * @deprecated This method is NOT a part of public API and will be dropped in 3.x versions.
+     */
+    @Override
+    @Deprecated
+    public void writeIntBE( int x ){
+        _ensure( 4 );
+        _buffer.put( (byte) ( x >> 24 ) );
+        _buffer.put( (byte) ( x >> 16 ) );
+        _buffer.put( (byte) ( x >> 8 ) );
+        _buffer.put( (byte) x );
+        _afterWrite();
+    }
+
+    /**
+     * @deprecated This method is NOT a part of public API and will be dropped in 3.x versions.
+     */
+    @Override
+    @Deprecated
+    public void writeInt( int pos , int x ){
+        _buffer.putInt( pos , x );
+    }
+
+    @Override
+    public void writeLong( long x ){
+        _ensure( 8 );
+        _buffer.putLong( x );
+        _afterWrite();
+    }
+
+    @Override
+    public void writeDouble( double x ){
+        writeLong( Double.doubleToRawLongBits( x ) );
+    }
+
+    @Override
+    public int writeCString( final String str ){
+        final int len = str.length();
+        // at most 3 bytes per UTF-16 char, plus the terminating null
+        _ensure( 3 * len + 1 );
+
+        final int start = _buffer.position();
+        for ( int i = 0; i < len; ){
+            final char ch = str.charAt( i );
+            if ( ch != 0 && ch < 0x80 ){
+                _buffer.put( (byte) ch );
+                i++;
+                continue;
+            }
+
+            final int c = Character.codePointAt( str , i );
+            if ( c == 0x0 ){
+                _buffer.position( start );
+                throw new BSONException(
+                        String.format( "BSON cstring '%s' is not valid because it contains a null character at index %d", str, i ) );
+            }
+            if ( c < 0x800 ){
+                _buffer.put( (byte) ( 0xc0 + ( c >> 6 ) ) );
+                _buffer.put( (byte) ( 0x80 + ( c & 0x3f ) ) );
+            }
+            else if ( c < 0x10000 ){
+                _buffer.put( (byte) ( 0xe0 + ( c >> 12 ) ) );
+                _buffer.put( (byte) ( 0x80 + ( ( c >> 6 ) & 0x3f ) ) );
+                _buffer.put( (byte) ( 0x80 + ( c & 0x3f ) ) );
+            }
+            else {
+                _buffer.put( (byte) ( 0xf0 + ( c >> 18 ) ) );
+                _buffer.put( (byte) ( 0x80 + ( ( c >> 12 ) & 0x3f ) ) );
+                _buffer.put( (byte) ( 0x80 + ( ( c >> 6 ) & 0x3f ) ) );
+                _buffer.put( (byte) ( 0x80 + ( c & 0x3f ) ) );
+            }
+            i += Character.charCount( c );
+        }
+        _buffer.put( (byte) 0 );
+        _afterWrite();
+        return _buffer.position() - start;
+    }
+
+    @Override
+    public int getPosition(){
+        return _buffer.position();
+    }
+
+    /**
+     * @deprecated This method is NOT a part of public API and will be dropped in 3.x versions.
+     */
+    @Override
+    @Deprecated
+    public void setPosition( int position ){
+        _buffer.position( position );
+    }
+
+    /**
+     * @deprecated This method is NOT a part of public API and will be dropped in 3.x versions.
+     */
+    @Override
+    @Deprecated
+    public void seekEnd(){
+        _buffer.position( _size );
+    }
+
+    /**
+     * @deprecated This method is NOT a part of public API and will be dropped in 3.x versions.
+     */
+    @Override
+    @Deprecated
+    public void seekStart(){
+        _buffer.position( 0 );
+    }
+
+    @Override
+    public int size(){
+        return _size;
+    }
+
+    @Override
+    public int pipe( OutputStream out )
+        throws IOException {
+        if ( _buffer.hasArray() ){
+            out.write( _buffer.array() , _buffer.arrayOffset() , _size );
+            return _size;
+        }
+
+        ByteBuffer view = getByteBuffer();
+        byte[] chunk = new byte[ Math.min( _size , 8192 ) ];
+        while ( view.hasRemaining() ){
+            int n = Math.min( chunk.length , view.remaining() );
+            view.get( chunk , 0 , n );
+            out.write( chunk , 0 , n );
+        }
+        return _size;
+    }
+
+    private void _afterWrite(){
+        if ( _buffer.position() > _size )
+            _size = _buffer.position();
+    }
+
+    private void _ensure( int more ){
+        final int need = _buffer.position() + more;
+        if ( need <= _buffer.capacity() )
+            return;
+
+        int newSize = _buffer.capacity() * 2;
+        if ( newSize < need )
+            newSize = need + 128;
+
+        ByteBuffer n = _allocate( newSize );
+        int pos = _buffer.position();
+        _buffer.position( 0 ).limit( _size );
+        n.put( _buffer );
+        n.position( pos );
+        _buffer = n;
+    }
+
+    private ByteBuffer _allocate( int capacity ){
+        ByteBuffer b = _direct ? ByteBuffer.allocateDirect( capacity ) : ByteBuffer.allocate( capacity );
+        return b.order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    private final boolean _direct;
+    private ByteBuffer _buffer;
+    private int _size;
+}
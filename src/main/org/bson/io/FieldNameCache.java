@@ -0,0 +1,239 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded table of decoded field names, looked up by their raw UTF-8 bytes, so that documents with the same keys
+ * share one {@code String} per key rather than each holding its own copy.
+ * <p>
+ * When a default cache is set with {@link #setDefault(FieldNameCache)}, {@code BasicBSONDecoder},
+ * {@code NewBSONDecoder} and {@code LazyBSONObject} take keys from it.  A hit compares bytes and allocates nothing.
+ * A miss decodes the key and stores it, replacing whatever was in its slot, so the table never holds more than its
+ * size.  Keys longer than the configured maximum are never cached.
+ * </p>
+ * <p>
+ * The table is safe to share between threads without locking: entries are immutable, and a lost update only costs a
+ * later miss.  For the same reason the hit and miss counts are approximate under concurrent use.
+ * </p>
+ * <pre>
+ * FieldNameCache.setDefault( new FieldNameCache() );
+ * ...
+ * System.out.println( FieldNameCache.getDefault().getHitRate() );
+ * </pre>
+ *
+ * @since 2.12
+ */
+public class FieldNameCache {
+
+    /**
+     * Creates a cache of 4096 keys of up to 64 bytes.
+     */
+    public FieldNameCache(){
+        this( 4096 , 64 );
+    }
+
+    /**
+     * @param size the number of keys to hold, rounded up to a power of two
+     * @param maxKeyLength the length, in bytes, of the longest key to cache
+     */
+    public FieldNameCache( int size , int maxKeyLength ){
+        if ( size <= 0 )
+            throw new IllegalArgumentException( "size must be > 0" );
+        if ( maxKeyLength < 0 )
+            throw new IllegalArgumentException( "maxKeyLength must be >= 0" );
+
+        int n = 2;
+        while ( n < size )
+            n <<= 1;
+        _table = new Entry[ n ];
+        _maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * @return the cache used by the decoders, or null if keys are not cached
+     */
+    public static FieldNameCache getDefault(){
+        return _default;
+    }
+
+    /**
+     * Sets the cache used by the decoders.
+     * @param cache the cache, or null to stop caching keys
+     */
+    public static void setDefault( FieldNameCache cache ){
+        _default = cache;
+    }
+
+    /**
+     * Gets the key made of {@code length} bytes of UTF-8, not including the terminating null.
+     * @param decoder the decoder to use on a miss
+     */
+    @SuppressWarnings("deprecation")
+    public String get( byte[] data , int offset , int length , UTF8Decoder decoder ){
+        if ( length > _maxKeyLength )
+            return decoder.decode( data , offset , length );
+
+        int hash = 0;
+        for ( int i = offset; i < offset + length; i++ )
+            hash = 31 * hash + data[i];
+        hash ^= ( hash >>> 16 );
+
+        final int slot = hash & ( _table.length - 1 );
+        Entry e = _table[ slot ];
+        if ( e != null && e._hash == hash && e.matches( data , offset , length ) ){
+            _hits++;
+            return e._key;
+        }
+        Entry other = _table[ slot ^ 1 ];
+        if ( other != null && other._hash == hash && other.matches( data , offset , length ) ){
+            _hits++;
+            return other._key;
+        }
+
+        _misses++;
+        byte[] bytes = new byte[ length ];
+        System.arraycopy( data , offset , bytes , 0 , length );
+        return _put( slot , e , other , bytes , decoder.decode( data , offset , length ) , hash );
+    }
+
+    /**
+     * Gets the key made of {@code length} bytes of UTF-8 at an absolute offset in a buffer, without changing its
+     * position.
+     * @param decoder the decoder to use on a miss
+     */
+    @SuppressWarnings("deprecation")
+    public String get( ByteBuffer buf , int offset , int length , UTF8Decoder decoder ){
+        if ( buf.hasArray() )
+            return get( buf.array() , buf.arrayOffset() + offset , length , decoder );
+
+        if ( length > _maxKeyLength )
+            return decoder.decode( buf , offset , length );
+
+        int hash = 0;
+        for ( int i = offset; i < offset + length; i++ )
+            hash = 31 * hash + buf.get( i );
+        hash ^= ( hash >>> 16 );
+
+        final int slot = hash & ( _table.length - 1 );
+        Entry e = _table[ slot ];
+        if ( e != null && e._hash == hash && e.matches( buf , offset , length ) ){
+            _hits++;
+            return e._key;
+        }
+        Entry other = _table[ slot ^ 1 ];
+        if ( other != null && other._hash == hash && other.matches( buf , offset , length ) ){
+            _hits++;
+            return other._key;
+        }
+
+        _misses++;
+        byte[] bytes = new byte[ length ];
+        for ( int i = 0; i < length; i++ )
+            bytes[i] = buf.get( offset + i );
+        return _put( slot , e , other , bytes , decoder.decode( bytes , 0 , length ) , hash );
+    }
+
+    // each key may live in its slot or the neighbouring one; fill an empty one, else replace the first
+    private String _put( int slot , Entry e , Entry other , byte[] bytes , String key , int hash ){
+        _table[ e != null && other == null ? slot ^ 1 : slot ] = new Entry( bytes , key , hash );
+        return key;
+    }
+
+    /**
+     * @return the number of lookups that found their key
+     */
+    public long getHits(){
+        return _hits;
+    }
+
+    /**
+     * @return the number of lookups of cacheable keys that had to decode them
+     */
+    public long getMisses(){
+        return _misses;
+    }
+
+    /**
+     * @return hits as a fraction of lookups, or 0 if there have been none
+     */
+    public double getHitRate(){
+        long hits = _hits;
+        long total = hits + _misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Sets the hit and miss counts back to zero.
+     */
+    public void resetStatistics(){
+        _hits = 0;
+        _misses = 0;
+    }
+
+    /**
+     * Removes every key.
+     */
+    public void clear(){
+        for ( int i = 0; i < _table.length; i++ )
+            _table[i] = null;
+    }
+
+    public String toString(){
+        return "FieldNameCache size: " + _table.length + " hits: " + _hits + " misses: " + _misses;
+    }
+
+    static final class Entry {
+        Entry( byte[] bytes , String key , int hash ){
+            _bytes = bytes;
+            _key = key;
+            _hash = hash;
+        }
+
+        boolean matches( byte[] data , int offset , int length ){
+            if ( _bytes.length != length )
+                return false;
+            for ( int i = 0; i < length; i++ )
+                if ( _bytes[i] != data[ offset + i ] )
+                    return false;
+            return true;
+        }
+
+        boolean matches( ByteBuffer buf , int offset , int length ){
+            if ( _bytes.length != length )
+                return false;
+            for ( int i = 0; i < length; i++ )
+                if ( _bytes[i] != buf.get( offset + i ) )
+                    return false;
+            return true;
+        }
+
+        final byte[] _bytes;
+        final String _key;
+        final int _hash;
+    }
+
+    private final Entry[] _table;
+    private final int _maxKeyLength;
+
+    // not volatile or atomic: exact counts would cost every decoding thread a contended write
+    private long _hits;
+    private long _misses;
+
+    private static volatile FieldNameCache _default;
+}
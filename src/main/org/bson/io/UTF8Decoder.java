@@ -0,0 +1,117 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes UTF-8 strings for the BSON decoders.
+ * <p>
+ * Pure ASCII strings, which are most keys and most values, are detected with a branch-free scan and copied straight
+ * into the string.  Anything else goes through {@link UTF8Encoding} with a reusable char array.  Malformed input is
+ * decoded by the JDK, with replacement characters, as it always has been.
+ * </p>
+ * <p>
+ * An instance is not thread safe, and so needs no locking.  Decoders own one each; code that is not confined to a
+ * thread, such as {@code LazyBSONObject}, uses {@link #forCurrentThread()}.
+ * </p>
+ *
+ * @deprecated This class is NOT a part of public API and will be dropped in 3.x versions.
+ */
+@Deprecated
+public final class UTF8Decoder {
+
+    /**
+     * @return the decoder owned by the calling thread
+     */
+    public static UTF8Decoder forCurrentThread(){
+        return _perThread.get();
+    }
+
+    /**
+     * Decodes {@code length} bytes of UTF-8, which must not include a terminating null.
+     */
+    public String decode( byte[] data , int offset , int length ){
+        if ( length == 0 )
+            return "";
+        if ( length == 1 && data[offset] >= 0 )
+            return ONE_BYTE_STRINGS[ data[offset] ];
+
+        if ( isAscii( data , offset , length ) )
+            return _ascii( data , offset , length );
+
+        try {
+            return _encoding.decode( data , offset , length );
+        }
+        catch ( IOException e ){
+            return new String( data , offset , length , UTF8 );
+        }
+    }
+
+    /**
+     * Decodes {@code length} bytes of UTF-8 at an absolute offset in a buffer, without changing its position.
+     */
+    public String decode( ByteBuffer buf , int offset , int length ){
+        if ( buf.hasArray() )
+            return decode( buf.array() , buf.arrayOffset() + offset , length );
+
+        if ( _scratch.length < length )
+            _scratch = new byte[ Math.max( length , _scratch.length * 2 ) ];
+        ByteBuffer view = buf.duplicate();
+        view.position( offset );
+        view.get( _scratch , 0 , length );
+        return decode( _scratch , 0 , length );
+    }
+
+    /**
+     * @return whether none of the bytes has its high bit set
+     */
+    public static boolean isAscii( byte[] data , int offset , int length ){
+        // or-ing everything together, rather than breaking out early, keeps the loop simple enough to unroll
+        int bits = 0;
+        final int end = offset + length;
+        for ( int i = offset; i < end; i++ )
+            bits |= data[i];
+        return bits >= 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String _ascii( byte[] data , int offset , int length ){
+        // no charset involved: each byte becomes a char with a zero high byte
+        return new String( data , 0 , offset , length );
+    }
+
+    private final UTF8Encoding _encoding = new UTF8Encoding();
+    private byte[] _scratch = new byte[256];
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final String[] ONE_BYTE_STRINGS = new String[128];
+    static {
+        for ( int i = 0; i < ONE_BYTE_STRINGS.length; i++ )
+            ONE_BYTE_STRINGS[i] = String.valueOf( (char) i ).intern();
+    }
+
+    private static final ThreadLocal<UTF8Decoder> _perThread = new ThreadLocal<UTF8Decoder>(){
+        @Override
+        protected UTF8Decoder initialValue(){
+            return new UTF8Decoder();
+        }
+    };
+}
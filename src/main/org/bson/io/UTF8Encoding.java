@@ -51,6 +51,10 @@ package org.bson.io;
 import java.io.IOException;
 import java.text.MessageFormat;
 
+/**
+ * Not thread safe: each instance reuses its own char array, so it must be confined to one thread, as it is by
+ * {@link PoolOutputBuffer} and {@link UTF8Decoder}.
+ */
 class UTF8Encoding {
 
     private static final int MIN_2_BYTES = 0x80;
@@ -113,7 +117,7 @@ class UTF8Encoding {
      * @return a decoded string
      * @throws IOException if something goes wrong
      */
-    public synchronized String decode(byte[] data, int offset, int length) throws IOException {
+    public String decode(byte[] data, int offset, int length) throws IOException {
         char[] cdata = decoderArray;
         if (cdata.length < length)
             cdata = decoderArray = new char[length];
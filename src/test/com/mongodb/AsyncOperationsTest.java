@@ -0,0 +1,347 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.io.Bits;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncOperationsTest extends Assert {
+
+    private ServerSocket serverSocket;
+    private Mongo mongo;
+    private DBCollection collection;
+
+    // the "i" of the first document of each insert message, in the order the server got them
+    private final List<Integer> insertedBatches = Collections.synchronizedList(new ArrayList<Integer>());
+    private volatile int lastInserted;
+    private volatile int failAt;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        insertedBatches.clear();
+        lastInserted = -1;
+        failAt = -1;
+        serverSocket = new ServerSocket(0);
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        Thread connection = new Thread(new Runnable() {
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        connection.setDaemon(true);
+                        connection.start();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+
+        mongo = new MongoClient(new ServerAddress("127.0.0.1", serverSocket.getLocalPort()),
+                                MongoClientOptions.builder().multiplexedConnectionsPerHost(4).build());
+        collection = mongo.getDB("test").getCollection("async");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        mongo.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testFindDeliversToCallback() throws Exception {
+        final AtomicReference<List<DBObject>> delivered = new AtomicReference<List<DBObject>>();
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        final CountDownLatch called = new CountDownLatch(1);
+
+        Future<List<DBObject>> future = collection.findAsync(new BasicDBObject(), null, 0, ReadPreference.primary(),
+                new ResultCallback<List<DBObject>>() {
+                    public void onResult(List<DBObject> result, Throwable t) {
+                        delivered.set(result);
+                        thread.set(Thread.currentThread().getName());
+                        called.countDown();
+                    }
+                });
+
+        List<DBObject> found = future.get(10, TimeUnit.SECONDS);
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        assertEquals(found.size(), 2);
+        assertEquals(found.get(1).get("x"), 2);
+        assertSame(delivered.get(), found);
+        assertTrue(thread.get().startsWith("MongoAsync-"), thread.get());
+    }
+
+    @Test
+    public void testFindErrorIsPropagated() throws Exception {
+        final AtomicReference<Throwable> delivered = new AtomicReference<Throwable>();
+        final CountDownLatch called = new CountDownLatch(1);
+        Future<List<DBObject>> future = mongo.getDB("test").getCollection("fail").findAsync(new BasicDBObject(), null, 0,
+                ReadPreference.primary(), new ResultCallback<List<DBObject>>() {
+                    public void onResult(List<DBObject> result, Throwable t) {
+                        delivered.set(t);
+                        called.countDown();
+                    }
+                });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("expected the query to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MongoException);
+            assertEquals(((MongoException) e.getCause()).getCode(), 12345);
+            assertTrue(called.await(10, TimeUnit.SECONDS));
+            assertSame(delivered.get(), e.getCause());
+        }
+    }
+
+    @Test
+    public void testDroppedConnectionFailsTheFuture() throws Exception {
+        Future<List<DBObject>> future = mongo.getDB("test").getCollection("drop").findAsync(new BasicDBObject(), null, 0,
+                ReadPreference.primary(), null);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("expected the query to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MongoException.Network, e.getCause().toString());
+        }
+    }
+
+    @Test
+    public void testPrefetchTimesOut() throws Exception {
+        Mongo client = new MongoClient(new ServerAddress("127.0.0.1", serverSocket.getLocalPort()),
+                                       MongoClientOptions.builder().socketTimeout(500).build());
+        try {
+            // the server answers the query, but never the getmores
+            DBCursor cursor = client.getDB("test").getCollection("stall").find().prefetch(1, 1 << 20);
+            assertEquals(cursor.next().get("x"), 1);
+            assertEquals(cursor.next().get("x"), 2);
+
+            long start = System.currentTimeMillis();
+            try {
+                cursor.hasNext();
+                fail("expected the prefetched getmore to time out");
+            } catch (MongoException.Network e) {
+                assertTrue(e.getCause() instanceof java.net.SocketTimeoutException, e.getCause().toString());
+            }
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testOrderedInsertKeepsBatchOrder() throws Exception {
+        List<DBObject> docs = createDocs(200);
+        WriteResult result = collection.insertAsync(docs, WriteConcern.ACKNOWLEDGED, null).get(10, TimeUnit.SECONDS);
+        assertNotNull(result);
+
+        assertTrue(insertedBatches.size() > 5, insertedBatches.toString());
+        assertSorted(insertedBatches);
+    }
+
+    @Test
+    public void testUnacknowledgedOrderedInsertKeepsBatchOrder() throws Exception {
+        List<DBObject> docs = createDocs(200);
+        WriteResult result = collection.insertAsync(docs, WriteConcern.UNACKNOWLEDGED, null).get(10, TimeUnit.SECONDS);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (lastInserted != 199 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(lastInserted, 199);
+        assertTrue(insertedBatches.size() > 5, insertedBatches.toString());
+        assertSorted(insertedBatches);
+
+        // the socket is shared, so there is no telling whose write a later getlasterror would describe
+        try {
+            result.getLastError();
+            fail("expected an unacknowledged result to refuse to call getlasterror");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOrderedInsertStopsAtFirstError() throws Exception {
+        failAt = 50;
+        List<DBObject> docs = createDocs(200);
+        try {
+            collection.insertAsync(docs, WriteConcern.ACKNOWLEDGED, null).get(10, TimeUnit.SECONDS);
+            fail("expected the insert to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MongoException, e.getCause().toString());
+        }
+
+        // no batch after the one holding document 50 was sent
+        int last = insertedBatches.get(insertedBatches.size() - 1);
+        assertTrue(last <= 50, insertedBatches.toString());
+    }
+
+    @Test
+    public void testAsyncResultCompletesOnce() throws Exception {
+        final List<Object> calls = Collections.synchronizedList(new ArrayList<Object>());
+        AsyncResult<String> result = new AsyncResult<String>(new ResultCallback<String>() {
+            public void onResult(String s, Throwable t) {
+                calls.add(s != null ? s : t);
+                throw new RuntimeException("a failing callback doesn't affect the result");
+            }
+        });
+        assertFalse(result.isDone());
+        assertTrue(result.setResult("first"));
+        assertFalse(result.setResult("second"));
+        assertFalse(result.setError(new Exception()));
+        assertTrue(result.isDone());
+        assertEquals(result.get(), "first");
+        assertEquals(calls, Arrays.<Object>asList("first"));
+    }
+
+    private static List<DBObject> createDocs(int n) {
+        List<DBObject> docs = new ArrayList<DBObject>();
+        char[] padding = new char[80];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < n; i++) {
+            docs.add(new BasicDBObject("_id", i).append("i", i).append("padding", new String(padding)));
+        }
+        return docs;
+    }
+
+    private static void assertSorted(List<Integer> list) {
+        synchronized (list) {
+            for (int i = 1; i < list.size(); i++) {
+                assertTrue(list.get(i - 1) < list.get(i), list.toString());
+            }
+        }
+    }
+
+    // Plays the part of a server with a small maxBsonObjectSize, so that inserts are split into many batches
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            boolean lastInsertFailed = false;
+            while (true) {
+                byte[] header = new byte[16];
+                Bits.readFully(in, header);
+                byte[] body = new byte[Bits.readInt(header, 0) - header.length];
+                Bits.readFully(in, body);
+                int requestId = Bits.readInt(header, 4);
+                int opCode = Bits.readInt(header, 12);
+
+                int pos = 4;
+                while (body[pos] != 0) {
+                    pos++;
+                }
+                String ns = new String(body, 4, pos - 4, "UTF-8");
+                pos++;
+
+                if (opCode == 2002) {
+                    BSONObject first = new BasicBSONDecoder().readObject(Arrays.copyOfRange(body, pos, body.length));
+                    insertedBatches.add((Integer) first.get("i"));
+                    lastInsertFailed = false;
+                    for (int end = pos; end < body.length; end += Bits.readInt(body, end)) {
+                        BSONObject doc = new BasicBSONDecoder().readObject(Arrays.copyOfRange(body, end, body.length));
+                        int i = (Integer) doc.get("i");
+                        lastInserted = i;
+                        if (i == failAt) {
+                            lastInsertFailed = true;
+                        }
+                    }
+                    continue;
+                }
+                if (opCode != 2004) {
+                    continue;
+                }
+
+                BSONObject query = new BasicBSONDecoder().readObject(Arrays.copyOfRange(body, pos + 8, body.length));
+                List<BSONObject> reply = new ArrayList<BSONObject>();
+                if (ns.endsWith(".$cmd")) {
+                    if (query.containsField("getlasterror") && lastInsertFailed) {
+                        reply.add(new BasicDBObject("ok", 1).append("err", "E11000 duplicate key").append("code", 11000));
+                    } else {
+                        reply.add(new BasicDBObject("ok", 1).append("ismaster", true).append("maxBsonObjectSize", 1024)
+                                                          .append("err", null).append("n", 0));
+                    }
+                } else if (ns.equals("test.drop")) {
+                    socket.close();
+                    return;
+                } else if (ns.equals("test.fail")) {
+                    reply.add(new BasicDBObject("$err", "boom").append("code", 12345));
+                } else {
+                    reply.add(new BasicDBObject("x", 1));
+                    reply.add(new BasicDBObject("x", 2));
+                }
+                out.write(createReply(requestId, ns.equals("test.stall") ? 42 : 0, reply));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private static byte[] createReply(int responseTo, long cursorId, List<BSONObject> docs) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        for (BSONObject doc : docs) {
+            encoded.write(new BasicBSONEncoder().encode(doc));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, Response.HEADER_LENGTH + encoded.size());
+        writeInt(bytes, 0);
+        writeInt(bytes, responseTo);
+        writeInt(bytes, 1);  // OP_REPLY
+        writeInt(bytes, 0);  // flags
+        writeInt(bytes, (int) cursorId);
+        writeInt(bytes, (int) (cursorId >>> 32));
+        writeInt(bytes, 0);  // starting from
+        writeInt(bytes, docs.size());
+        encoded.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int x) {
+        out.write(x);
+        out.write(x >> 8);
+        out.write(x >> 16);
+        out.write(x >> 24);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BasicBSONEncoder;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class CompactDBObjectTest extends Assert {
+
+    @Test
+    public void testPrimitives(){
+        CompactDBObject o = new CompactDBObject( 1 );
+        o.putInt( "i" , 1 );
+        o.putLong( "l" , 1L << 40 );
+        o.putDouble( "d" , 2.5 );
+        o.putBoolean( "b" , true );
+        o.putDate( "t" , 1000 );
+        o.put( "s" , "x" );
+        o.put( "n" , null );
+
+        assertEquals( o.size() , 7 );
+        assertEquals( o.getInt( "i" ) , 1 );
+        assertEquals( o.getLong( "i" ) , 1 );
+        assertEquals( o.getLong( "l" ) , 1L << 40 );
+        assertEquals( o.getDouble( "d" ) , 2.5 );
+        assertEquals( o.getDouble( "i" ) , 1.0 );
+        assertTrue( o.getBoolean( "b" ) );
+        assertEquals( o.getInt( "missing" , 7 ) , 7 );
+        assertEquals( o.get( "i" ) , 1 );
+        assertEquals( o.get( "l" ) , 1L << 40 );
+        assertEquals( o.get( "b" ) , Boolean.TRUE );
+        assertEquals( o.get( "t" ) , new Date( 1000 ) );
+        assertEquals( o.get( "s" ) , "x" );
+        assertNull( o.get( "n" ) );
+        assertTrue( o.containsField( "n" ) );
+
+        assertEquals( o.put( "i" , "now a string" ) , 1 );
+        assertEquals( o.get( "i" ) , "now a string" );
+        assertEquals( o.removeField( "l" ) , 1L << 40 );
+        assertFalse( o.containsField( "l" ) );
+        assertEquals( Arrays.asList( o.keySet().toArray() ) , Arrays.<Object>asList( "i" , "d" , "b" , "t" , "s" , "n" ) );
+    }
+
+    @Test
+    public void testDateSubclassKeepsItsType(){
+        Timestamp t = new Timestamp( 1000 );
+        t.setNanos( 1234 );
+        CompactDBObject o = new CompactDBObject().append( "t" , t );
+
+        assertSame( o.get( "t" ) , t );
+        assertEquals( o , new BasicDBObject( "t" , t ) );
+        assertEquals( o.hashCode() , new BasicDBObject( "t" , t ).hashCode() );
+    }
+
+    @Test
+    public void testNullKey(){
+        CompactDBObject o = new CompactDBObject().append( null , 1 ).append( "a" , 2 );
+
+        assertEquals( o.get( null ) , 1 );
+        assertEquals( o.get( "a" ) , 2 );
+        assertTrue( o.containsField( null ) );
+        assertEquals( o.put( null , 3 ) , 1 );
+        assertEquals( o.size() , 2 );
+        assertEquals( o.hashCode() , new BasicDBObject( null , 3 ).append( "a" , 2 ).hashCode() );
+    }
+
+    @Test
+    public void testEqualsBasicDBObject(){
+        BasicDBObject basic = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "i" , 1 )
+            .append( "l" , 2L )
+            .append( "d" , 3.5 )
+            .append( "b" , false )
+            .append( "t" , new Date( -5 ) )
+            .append( "n" , null );
+
+        CompactDBObject compact = new CompactDBObject();
+        compact.putAll( (DBObject) basic );
+
+        assertEquals( compact , basic );
+        assertEquals( basic , compact );
+        assertEquals( compact.hashCode() , basic.hashCode() );
+        assertEquals( compact.toString() , basic.toString() );
+        assertEquals( compact.toMap() , basic.toMap() );
+    }
+
+    @Test
+    public void testDoublesHashAndCompareLikeBasicDBObject(){
+        double otherNaN = Double.longBitsToDouble( 0x7ff8000000000001L );
+        for ( double d : new double[]{ Double.NaN , otherNaN , 0.0 , -0.0 } ){
+            CompactDBObject compact = new CompactDBObject().append( "d" , d );
+            BasicDBObject basic = new BasicDBObject( "d" , d );
+
+            assertTrue( compact.equals( basic ) );
+            assertEquals( compact.hashCode() , basic.hashCode() );
+        }
+
+        assertTrue( new CompactDBObject().append( "d" , otherNaN ).equals( new BasicDBObject( "d" , Double.NaN ) ) );
+        assertFalse( new CompactDBObject().append( "d" , 0.0 ).equals( new BasicDBObject( "d" , -0.0 ) ) );
+    }
+
+    @Test
+    public void testDecode(){
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "count" , 42 )
+            .append( "total" , 1234567890123L )
+            .append( "ratio" , 0.25 )
+            .append( "flag" , true )
+            .append( "when" , new Date() )
+            .append( "name" , "compact" )
+            .append( "sub" , new BasicDBObject( "x" , 1 ).append( "y" , 2.0 ) )
+            .append( "list" , Arrays.asList( 1 , 2 , 3 ) )
+            .append( "ref" , new DBRef( null , "other" , 5 ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        DBObject decoded = CompactDBDecoder.FACTORY.create().decode( bytes , (DBCollection) null );
+
+        assertTrue( decoded instanceof CompactDBObject );
+        assertTrue( decoded.get( "sub" ) instanceof CompactDBObject );
+        assertTrue( decoded.get( "list" ) instanceof List );
+        assertTrue( decoded.get( "ref" ) instanceof DBRef );
+        assertEquals( ((CompactDBObject) decoded).getLong( "total" ) , 1234567890123L );
+        assertEquals( ((CompactDBObject) decoded.get( "sub" )).getDouble( "y" ) , 2.0 );
+
+        DBObject expected = DefaultDBDecoder.FACTORY.create().decode( bytes , (DBCollection) null );
+        assertEquals( decoded , expected );
+        assertEquals( new BasicBSONEncoder().encode( decoded ) , bytes );
+    }
+}
@@ -16,14 +16,24 @@
 
 package com.mongodb;
 
+import com.mongodb.util.JSON;
 import com.mongodb.util.TestCase;
 
 import org.bson.types.ObjectId;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DBCollectionTest extends TestCase {
 
@@ -48,6 +58,166 @@ public class DBCollectionTest extends TestCase {
         c.insert(new DBObject[] {inserted1,inserted2});
     }
 
+    @Test(groups = {"basic"})
+    public void testBulkInsertWriter() {
+        DBCollection c = _db.getCollection("testbulkinsertwriter");
+        c.drop();
+
+        BulkInsertWriter writer = c.bulkInsertWriter(WriteConcern.ACKNOWLEDGED).maxBatchSize(7).maxPendingBatches(2);
+        try {
+            for (int i = 0; i < 100; i++) {
+                writer.insert(new BasicDBObject("x", i));
+            }
+            writer.flush();
+            assertEquals(100, writer.getNumInserted());
+            assertEquals(100, c.count());
+
+            for (int i = 0; i < 5; i++) {
+                writer.insert(new BasicDBObject("x", i));
+            }
+        } finally {
+            writer.close();
+        }
+        assertEquals(105, writer.getNumInserted());
+        assertEquals(105, c.count());
+    }
+
+    @Test(groups = {"basic"})
+    public void testBulkInsertWriterReportsFailedBatch() {
+        DBCollection c = _db.getCollection("testbulkinsertwriter");
+        c.drop();
+
+        BulkInsertWriter writer = c.bulkInsertWriter(WriteConcern.ACKNOWLEDGED).maxBatchSize(2);
+        writer.insert(new BasicDBObject("_id", 1));
+        writer.insert(new BasicDBObject("_id", 1));
+        try {
+            writer.close();
+            fail("should have thrown");
+        } catch (MongoException.DuplicateKey e) {
+            // expected
+        }
+        assertEquals(0, writer.getNumInserted());
+    }
+
+    @Test(groups = {"basic"})
+    public void testParallelInsert() {
+        DBCollection c = _db.getCollection("testparallelinsert");
+        c.drop();
+
+        List<DBObject> list = new ArrayList<DBObject>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(new BasicDBObject("_id", i));
+        }
+        list.add(new BasicDBObject("_id", 500));
+
+        try {
+            c.insert(list, WriteConcern.ACKNOWLEDGED.continueOnErrorForInsert(true), 4);
+            fail("should have thrown");
+        } catch (MongoException.DuplicateKey e) {
+            // expected
+        }
+        assertEquals(1000, c.count());
+    }
+
+    @Test(groups = {"basic"}, expectedExceptions = IllegalArgumentException.class)
+    public void testParallelInsertRequiresContinueOnError() {
+        _db.getCollection("testparallelinsert").insert(Arrays.<DBObject>asList(new BasicDBObject()), WriteConcern.ACKNOWLEDGED, 4);
+    }
+
+    @Test(groups = {"basic"}, expectedExceptions = IllegalArgumentException.class)
+    public void testParallelInsertRequiresAConnection() {
+        _db.getCollection("testparallelinsert").insert(Arrays.<DBObject>asList(new BasicDBObject()),
+                                                       WriteConcern.ACKNOWLEDGED.continueOnErrorForInsert(true), 0);
+    }
+
+    @Test
+    public void testParallelScan() {
+        DBCollection c = _db.getCollection("testparallelscan");
+        c.drop();
+        List<DBObject> docs = new ArrayList<DBObject>();
+        for (int i = 0; i < 1000; i++) {
+            docs.add(new BasicDBObject("_id", i).append("x", i % 2));
+        }
+        c.insert(docs, WriteConcern.ACKNOWLEDGED);
+
+        ParallelCursor cursor = c.parallelScan(null, null, 4);
+        assertEquals(4, cursor.getCursors().size());
+        Set<Object> ids = new HashSet<Object>();
+        for (DBObject o : cursor) {
+            assertTrue(ids.add(o.get("_id")));
+        }
+        assertEquals(1000, ids.size());
+
+        List<DBCursor> cursors = c.splitCursors(new BasicDBObject("x", 1), null, 3);
+        assertEquals(3, cursors.size());
+        int count = 0;
+        for (DBCursor cur : cursors) {
+            for (DBObject o : cur) {
+                assertEquals(1, o.get("x"));
+                count++;
+            }
+        }
+        assertEquals(500, count);
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        DBCollection c = _db.getCollection("testexport");
+        c.drop();
+        List<DBObject> docs = new ArrayList<DBObject>();
+        for (int i = 0; i < 1000; i++) {
+            docs.add(new BasicDBObject("_id", i).append("s", "doc " + i).append("sub", new BasicDBObject("x", i)));
+        }
+        c.insert(docs, WriteConcern.ACKNOWLEDGED);
+
+        ByteArrayOutputStream bson = new ByteArrayOutputStream();
+        assertEquals(1000, new CursorExporter(CursorExporter.Format.BSON, false).export(c.find().sort(new BasicDBObject("_id", 1)), bson));
+        DBDecoder decoder = DefaultDBDecoder.FACTORY.create();
+        ByteArrayInputStream in = new ByteArrayInputStream(bson.toByteArray());
+        for (DBObject doc : docs) {
+            assertEquals(doc, decoder.decode(in, c));
+        }
+        assertEquals(0, in.available());
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new CursorExporter(CursorExporter.Format.JSON, false).export(c.find(new BasicDBObject("_id", 7)), json);
+        assertEquals(JSON.serialize(docs.get(7)) + "\n", json.toString("UTF-8"));
+
+        File dir = File.createTempFile("export", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        assertEquals(1000, new CursorExporter(CursorExporter.Format.JSON, true).export(c, null, null, 4, dir, "part"));
+        assertEquals(4, dir.list().length);
+        for (File f : dir.listFiles()) {
+            assertTrue(f.getName().endsWith(".json.gz"));
+            assertTrue(f.delete());
+        }
+        assertTrue(dir.delete());
+    }
+
+    @Test
+    public void testImportJSON() throws IOException {
+        DBCollection c = _db.getCollection("testimportjson");
+        c.drop();
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            json.append(JSON.serialize(new BasicDBObject("_id", i).append("when", new Date(i)).append("list", Arrays.asList(i, "x")))).append('\n');
+        }
+
+        assertEquals(5000, c.importJSON(new StringReader(json.toString()), WriteConcern.ACKNOWLEDGED, 1));
+        assertEquals(5000, c.count());
+        assertEquals(new BasicDBObject("_id", 7).append("when", new Date(7)).append("list", Arrays.asList(7, "x")),
+                     c.findOne(new BasicDBObject("_id", 7)));
+
+        c.drop();
+        WriteConcern concern = WriteConcern.ACKNOWLEDGED.continueOnErrorForInsert(true);
+        assertEquals(5000, c.importJSON(new StringReader(json.toString()), concern, 4));
+        assertEquals(5000, c.count());
+
+        c.drop();
+        assertEquals(2, c.importJSON(new StringReader("[ { \"a\" : 1 } , { \"a\" : 2 } ]"), WriteConcern.ACKNOWLEDGED, 1));
+        assertTrue(c.findOne(new BasicDBObject("a", 2)).get("_id") instanceof ObjectId);
+    }
+
     @Test(groups = {"basic"})
     public void testCappedCollection() {
         String collectionName = "testCapped";
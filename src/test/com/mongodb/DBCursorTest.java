@@ -103,6 +103,46 @@ public class DBCursorTest extends TestCase {
         }
     }
 
+    @Test(groups = {"basic"})
+    public void testPrefetch() {
+        DBCollection c = _db.getCollection("prefetch");
+        c.drop();
+        for (int i = 0; i < 1000; i++) {
+            c.insert(new BasicDBObject("x", i));
+        }
+
+        DBCursor cur = c.find().sort(new BasicDBObject("x", 1)).batchSize(10).prefetch(3, 1024 * 1024);
+        int i = 0;
+        while (cur.hasNext()) {
+            assertEquals(i++, cur.next().get("x"));
+        }
+        assertEquals(1000, i);
+        assertEquals(0, cur.getCursorId());
+
+        cur = c.find().batchSize(10).limit(25).prefetch(5, 1024 * 1024);
+        assertEquals(25, cur.itcount());
+    }
+
+    @Test(groups = {"basic"})
+    public void testPrefetchCanBeTurnedOnWhileIterating() {
+        DBCollection c = _db.getCollection("prefetch");
+        c.drop();
+        for (int i = 0; i < 100; i++) {
+            c.insert(new BasicDBObject("x", i));
+        }
+
+        DBCursor cur = c.find().batchSize(10);
+        cur.next();
+        cur.prefetch(2, 1);
+        int n = 1;
+        while (cur.hasNext()) {
+            cur.next();
+            n++;
+        }
+        assertEquals(100, n);
+        cur.close();
+    }
+
     @Test(groups = {"basic"})
     public void testSnapshot() {
         DBCollection c = _db.getCollection("snapshot1");
@@ -0,0 +1,68 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+
+public class DefaultDBEncoderTest extends Assert {
+
+    @Test
+    public void testLazyDocumentsAreCopiedVerbatim(){
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "name" , "raw" )
+            .append( "sub" , new BasicDBObject( "x" , 1 ) )
+            .append( "list" , Arrays.asList( 1 , 2 ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        // fails if the encoder reads the fields instead of copying the bytes
+        LazyDBObject lazy = new LazyDBObject( bytes , new LazyDBCallback( null ) ){
+            @Override
+            public Set<String> keySet(){
+                throw new AssertionError( "decoded" );
+            }
+        };
+
+        BasicOutputBuffer out = new BasicOutputBuffer();
+        assertEquals( DefaultDBEncoder.FACTORY.create().writeObject( out , lazy ) , bytes.length );
+        assertEquals( out.toByteArray() , bytes );
+
+        DBObject wrapper = new BasicDBObject( "$set" , new BasicDBObject( "copy" , lazy ) );
+        DBObject expected = new BasicDBObject( "$set" , new BasicDBObject( "copy" , doc ) );
+        assertEquals( new DefaultDBEncoder().encode( wrapper ) , new DefaultDBEncoder().encode( expected ) );
+    }
+
+    @Test
+    public void testLazyListsAndWriteableObjects(){
+        byte[] bytes = new DefaultDBEncoder().encode( new BasicDBObject( "list" , Arrays.asList( "a" , "b" ) ) );
+        LazyDBObject lazy = new LazyDBObject( bytes , new LazyDBCallback( null ) );
+        DBObject wrapper = new BasicDBObject( "copy" , lazy.get( "list" ) );
+        assertEquals( new DefaultDBEncoder().encode( wrapper ) ,
+                      new DefaultDBEncoder().encode( new BasicDBObject( "copy" , Arrays.asList( "a" , "b" ) ) ) );
+
+        LazyWriteableDBObject writeable = new LazyWriteableDBObject( bytes , new LazyDBCallback( null ) );
+        writeable.put( "added" , 1 );
+        DBObject decoded = DefaultDBDecoder.FACTORY.create().decode( new DefaultDBEncoder().encode( writeable ) , (DBCollection) null );
+        assertEquals( decoded.get( "added" ) , 1 );
+        assertEquals( decoded.get( "list" ) , Arrays.asList( "a" , "b" ) );
+    }
+}
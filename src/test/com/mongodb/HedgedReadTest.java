@@ -0,0 +1,173 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BasicBSONEncoder;
+import org.bson.io.Bits;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgedReadTest extends Assert {
+
+    private Mongo mongo;
+    private DBCollection collection;
+    private FakeServer fast;
+    private FakeServer slow;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        mongo = new MongoClient("127.0.0.1:1");
+        collection = mongo.getDB("test").getCollection("hedged");
+        fast = new FakeServer("fast", 0);
+        slow = new FakeServer("slow", 2000);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        fast.close();
+        slow.close();
+        mongo.close();
+    }
+
+    @Test
+    public void testSlowMemberIsHedged() throws Exception {
+        long start = System.nanoTime();
+        Response res = call(slow.address(), fast.address());
+        assertEquals(res.get(0).get("server"), "fast");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(slow.requests.get(), 1);
+        assertEquals(fast.requests.get(), 1);
+    }
+
+    @Test
+    public void testFastMemberIsNotHedged() throws Exception {
+        Response res = call(fast.address(), slow.address());
+        assertEquals(res.get(0).get("server"), "fast");
+        assertEquals(slow.requests.get(), 0);
+    }
+
+    @Test
+    public void testUnreachableMemberIsHedgedAtOnce() throws Exception {
+        ServerSocket unused = new ServerSocket(0);
+        ServerAddress unreachable = new ServerAddress("127.0.0.1", unused.getLocalPort());
+        unused.close();
+
+        Response res = call(unreachable, slow.address());
+        assertEquals(res.get(0).get("server"), "slow");
+    }
+
+    @SuppressWarnings("deprecation")
+    private Response call(ServerAddress first, ServerAddress second) throws IOException {
+        DBTCPConnector connector = mongo.getConnector();
+        OutMessage m = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+        try {
+            Response res = connector.new HedgedCall(collection.getDB(), collection, m, null)
+                    .run(first, second, TimeUnit.MILLISECONDS.toMicros(50));
+            assertEquals(res._responseTo, m.getId());
+            assertEquals(res.get(0).get("requestId"), m.getId());
+            return res;
+        } finally {
+            m.doneWithMessage();
+        }
+    }
+
+    // Answers each request on its connection after a delay, with a document naming the server
+    private static class FakeServer implements Runnable {
+        FakeServer(String name, long delayMS) throws IOException {
+            this.name = name;
+            this.delayMS = delayMS;
+            serverSocket = new ServerSocket(0);
+            Thread t = new Thread(this);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        ServerAddress address() throws IOException {
+            return new ServerAddress("127.0.0.1", serverSocket.getLocalPort());
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        public void run() {
+            try {
+                Socket socket = serverSocket.accept();
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    int id = readRequestId(in);
+                    requests.incrementAndGet();
+                    Thread.sleep(delayMS);
+                    out.write(createReply(id, name));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // closed
+            } catch (InterruptedException e) {
+                // done
+            }
+        }
+
+        final String name;
+        final long delayMS;
+        final ServerSocket serverSocket;
+        final AtomicInteger requests = new AtomicInteger();
+    }
+
+    private static int readRequestId(InputStream in) throws IOException {
+        byte[] header = new byte[16];
+        Bits.readFully(in, header);
+        int len = Bits.readInt(header, 0);
+        Bits.readFully(in, new byte[len - header.length]);
+        return Bits.readInt(header, 4);
+    }
+
+    private static byte[] createReply(int responseTo, String server) throws IOException {
+        byte[] doc = new BasicBSONEncoder().encode(new BasicDBObject("requestId", responseTo).append("server", server));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, Response.HEADER_LENGTH + doc.length);
+        writeInt(bytes, 0);
+        writeInt(bytes, responseTo);
+        writeInt(bytes, 1);  // OP_REPLY
+        writeInt(bytes, 0);  // flags
+        writeInt(bytes, 0);  // cursor id
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);  // starting from
+        writeInt(bytes, 1);  // number returned
+        bytes.write(doc);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int x) {
+        out.write(x);
+        out.write(x >> 8);
+        out.write(x >> 16);
+        out.write(x >> 24);
+    }
+}
@@ -42,6 +42,7 @@ public class MongoClientOptionsTest {
         Assert.assertEquals(true, options.isCursorFinalizerEnabled());
         Assert.assertEquals(false, options.isAutoConnectRetry());
         Assert.assertEquals(false, options.isAlwaysUseMBeans());
+        Assert.assertEquals(0, options.getMultiplexedConnectionsPerHost());
     }
 
     @Test
@@ -101,6 +102,12 @@ public class MongoClientOptionsTest {
         } catch (IllegalArgumentException e) {
             // all good
         }
+        try {
+            builder.multiplexedConnectionsPerHost(-1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // all good
+        }
 
     }
 
@@ -119,6 +126,7 @@ public class MongoClientOptionsTest {
         builder.socketKeepAlive(true);
         builder.cursorFinalizerEnabled(true);
         builder.alwaysUseMBeans(true);
+        builder.multiplexedConnectionsPerHost(4);
 
         SocketFactory socketFactory = SSLSocketFactory.getDefault();
         builder.socketFactory(socketFactory);
@@ -150,6 +158,7 @@ public class MongoClientOptionsTest {
         Assert.assertEquals(true, options.isSocketKeepAlive());
         Assert.assertEquals(true, options.isCursorFinalizerEnabled());
         Assert.assertEquals(true, options.isAlwaysUseMBeans());
+        Assert.assertEquals(4, options.getMultiplexedConnectionsPerHost());
 
         Assert.assertEquals(socketFactory, options.getSocketFactory());
         Assert.assertEquals(encoderFactory, options.getDbEncoderFactory());
@@ -52,6 +52,7 @@ public class MongoOptionsTest extends TestCase {
         options.readPreference = ReadPreference.secondary();
         options.cursorFinalizerEnabled = true;
         options.alwaysUseMBeans = true;
+        options.multiplexedConnectionsPerHost = 4;
 
         final MongoOptions copy = options.copy();
         assertEquals(options.connectionsPerHost, copy.connectionsPerHost);
@@ -74,6 +75,7 @@ public class MongoOptionsTest extends TestCase {
         assertEquals(options.description, copy.description);
         assertEquals(options.readPreference, copy.readPreference);
         assertEquals(options.alwaysUseMBeans, copy.alwaysUseMBeans);
+        assertEquals(options.multiplexedConnectionsPerHost, copy.multiplexedConnectionsPerHost);
     }
 
     @Test
@@ -102,6 +104,7 @@ public class MongoOptionsTest extends TestCase {
         options.setReadPreference(ReadPreference.secondary());
         options.setCursorFinalizerEnabled(true);
         options.setAlwaysUseMBeans(true);
+        options.setMultiplexedConnectionsPerHost(4);
 
         assertEquals(options.getConnectionsPerHost(), 100);
         assertEquals(options.getThreadsAllowedToBlockForConnectionMultiplier(), 101);
@@ -123,6 +126,7 @@ public class MongoOptionsTest extends TestCase {
         assertEquals(options.getReadPreference(), ReadPreference.secondary());
         assertEquals(options.isCursorFinalizerEnabled(), true);
         assertEquals(options.isAlwaysUseMBeans(), true);
+        assertEquals(options.getMultiplexedConnectionsPerHost(), 4);
     }
 
     @Test
@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.io.Bits;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MultiplexedDBPortTest {
+
+    private Mongo mongo;
+    private ServerSocket serverSocket;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        mongo = new MongoClient();
+        serverSocket = new ServerSocket(0);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        serverSocket.close();
+        mongo.close();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testRepliesAreMatchedToRequestsOutOfOrder() throws Exception {
+        final int numRequests = 20;
+        startServer(numRequests, false);
+
+        final MultiplexedDBPort port = createPort(0);
+        final DBCollection collection = mongo.getDB("test").getCollection("multiplexed");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numRequests);
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < numRequests; i++) {
+            futures.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                    OutMessage m = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+                    try {
+                        Response res = port.call(m, collection);
+                        return res._responseTo == m.getId() && res.get(0).get("requestId").equals(m.getId());
+                    } finally {
+                        m.doneWithMessage();
+                    }
+                }
+            }));
+        }
+
+        for (Future<Boolean> future : futures) {
+            Assert.assertTrue(future.get());
+        }
+        Assert.assertEquals(port.getNumPending(), 0);
+        executor.shutdown();
+        port.close();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testTimedOutRequestDoesNotCloseConnection() throws Exception {
+        startServer(1, true);
+
+        MultiplexedDBPort port = createPort(200);
+        DBCollection collection = mongo.getDB("test").getCollection("multiplexed");
+
+        OutMessage first = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+        try {
+            port.call(first, collection);
+            Assert.fail("expected a timeout");
+        } catch (SocketTimeoutException e) {
+            // expected
+        } finally {
+            first.doneWithMessage();
+        }
+        Assert.assertEquals(port.getNumPending(), 0);
+
+        // the late reply to the first request is skipped, and the second one still gets its own reply
+        OutMessage second = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+        try {
+            Response res = port.call(second, collection);
+            Assert.assertEquals(res._responseTo, second.getId());
+        } finally {
+            second.doneWithMessage();
+        }
+        port.close();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOneCallersErrorDoesNotCloseTheSharedSocket() throws Exception {
+        startServer(2, false);
+
+        MultiplexedDBPort port = createPort(0);
+        DBCollection collection = mongo.getDB("test").getCollection("multiplexed");
+        DBTCPConnector connector = mongo.getConnector();
+
+        OutMessage first = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+        OutMessage second = OutMessage.query(collection, 0, 0, -1, new BasicDBObject(), null);
+        try {
+            MultiplexedDBPort.PendingReply pending = port.send(first, collection, false, null);
+            connector._myPort.error(port, new MongoException("ids don't match"));
+
+            Assert.assertEquals(port.call(second, collection)._responseTo, second.getId());
+            Assert.assertEquals(pending.await(0)._responseTo, first.getId());
+        } finally {
+            first.doneWithMessage();
+            second.doneWithMessage();
+        }
+        port.close();
+    }
+
+    @Test
+    public void testConcurrentAuthenticationHoldsOneConversation() throws Exception {
+        final AtomicInteger nonces = new AtomicInteger();
+        startAuthServer(nonces);
+
+        final Mongo credentialed = new MongoClient(new ServerAddress("127.0.0.1", serverSocket.getLocalPort()),
+                Arrays.asList(MongoCredential.createMongoCRCredential("user", "test", "pwd".toCharArray())));
+        final MultiplexedDBPort port = createPort(0);
+        try {
+            int numThreads = 8;
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        port.checkAuth(credentialed);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            // had the conversations overlapped, one thread's nonce would have replaced another's and failed it
+            Assert.assertEquals(nonces.get(), 1);
+            Assert.assertTrue(port.authenticatedDatabases.contains("test"));
+        } finally {
+            port.close();
+            credentialed.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testReopenedSocketIsAuthenticatedBeforeItIsUsed() throws Exception {
+        AtomicInteger nonces = new AtomicInteger();
+        startAuthServer(nonces);
+
+        Mongo credentialed = new MongoClient(new ServerAddress("127.0.0.1", serverSocket.getLocalPort()),
+                Arrays.asList(MongoCredential.createMongoCRCredential("user", "test", "pwd".toCharArray())));
+        MultiplexedDBPort port = createPort(0);
+        DBCollection collection = credentialed.getDB("test").getCollection("$cmd");
+        OutMessage ping = OutMessage.query(collection, 0, 0, -1, new BasicDBObject("ping", 1), null);
+        try {
+            port.checkAuth(credentialed);
+
+            // another thread's failure closes the socket after this thread has checked its authentication
+            port.close();
+
+            Response res = port.call(ping, collection);
+            Assert.assertEquals(((Number) res.get(0).get("ok")).intValue(), 1);
+            Assert.assertEquals(nonces.get(), 2);
+            Assert.assertTrue(port.authenticatedDatabases.contains("test"));
+        } finally {
+            ping.doneWithMessage();
+            port.close();
+            credentialed.close();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private MultiplexedDBPort createPort(int socketTimeout) throws UnknownHostException {
+        MongoOptions options = new MongoOptions();
+        options.socketTimeout = socketTimeout;
+        return new MultiplexedDBPort(new ServerAddress("127.0.0.1", serverSocket.getLocalPort()), null, options);
+    }
+
+    // Accepts one connection, waits for batchSize requests, and then answers them in reverse order.
+    // If delayFirst is true, the first reply is only sent once the second request has arrived.
+    private void startServer(final int batchSize, final boolean delayFirst) {
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    List<Integer> ids = new ArrayList<Integer>();
+                    while (true) {
+                        ids.add(readRequestId(in));
+                        if (delayFirst && ids.size() == 1) {
+                            continue;
+                        }
+                        if (ids.size() >= batchSize) {
+                            Collections.reverse(ids);
+                            for (int id : ids) {
+                                out.write(createReply(id));
+                            }
+                            out.flush();
+                            ids.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Accepts connections one after another and answers their commands one at a time.  Like a real server it keeps
+    // only the last nonce it handed out on each connection, fails an authenticate that carries any other, and fails
+    // any other command on a connection that hasn't authenticated.
+    private void startAuthServer(final AtomicInteger nonces) {
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        serve(serverSocket.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }
+
+            private void serve(Socket socket) throws InterruptedException {
+                try {
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    String nonce = null;
+                    boolean authenticated = false;
+                    while (true) {
+                        byte[] header = new byte[16];
+                        Bits.readFully(in, header);
+                        byte[] body = new byte[Bits.readInt(header, 0) - header.length];
+                        Bits.readFully(in, body);
+
+                        // flags, then the namespace, numberToSkip and numberToReturn ahead of the command
+                        int pos = 4;
+                        while (body[pos] != 0) {
+                            pos++;
+                        }
+                        pos += 9;
+                        BSONObject cmd = new BasicBSONDecoder().readObject(Arrays.copyOfRange(body, pos, body.length));
+
+                        BasicDBObject reply;
+                        if (cmd.containsField("getnonce")) {
+                            Thread.sleep(20);
+                            nonce = "nonce" + nonces.incrementAndGet();
+                            reply = new BasicDBObject("nonce", nonce).append("ok", 1);
+                        } else if (cmd.containsField("authenticate")) {
+                            authenticated = nonce != null && nonce.equals(cmd.get("nonce"));
+                            reply = authenticated ? new BasicDBObject("ok", 1)
+                                                  : new BasicDBObject("ok", 0).append("errmsg", "auth fails");
+                        } else if (authenticated) {
+                            reply = new BasicDBObject("ok", 1);
+                        } else {
+                            reply = new BasicDBObject("ok", 0).append("errmsg", "unauthorized");
+                        }
+                        out.write(createReply(Bits.readInt(header, 4), reply));
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // the client went away
+                }
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static int readRequestId(InputStream in) throws IOException {
+        byte[] header = new byte[16];
+        Bits.readFully(in, header);
+        int len = Bits.readInt(header, 0);
+        Bits.readFully(in, new byte[len - header.length]);
+        return Bits.readInt(header, 4);
+    }
+
+    private static byte[] createReply(int responseTo) throws IOException {
+        return createReply(responseTo, new BasicDBObject("requestId", responseTo));
+    }
+
+    private static byte[] createReply(int responseTo, BSONObject reply) throws IOException {
+        byte[] doc = new BasicBSONEncoder().encode(reply);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, Response.HEADER_LENGTH + doc.length);
+        writeInt(bytes, 0);
+        writeInt(bytes, responseTo);
+        writeInt(bytes, 1);  // OP_REPLY
+        writeInt(bytes, 0);  // flags
+        writeInt(bytes, 0);  // cursor id
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);  // starting from
+        writeInt(bytes, 1);  // number returned
+        bytes.write(doc);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int x) {
+        out.write(x);
+        out.write(x >> 8);
+        out.write(x >> 16);
+        out.write(x >> 24);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.types.CodeWScope;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OffHeapDBObjectTest extends Assert {
+
+    @Test
+    public void testReadsLikeTheOriginal() throws Exception {
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "name" , "off heap" )
+            .append( "n" , 1234567890123L )
+            .append( "sub" , new BasicDBObject( "x" , 1 ).append( "list" , Arrays.asList( "a" , "b" ) ) )
+            .append( "code" , new CodeWScope( "f()" , new BasicDBObject( "y" , 2 ) ) )
+            .append( "ref" , new DBRef( null , "other" , 5 ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        OffHeapDBObject o = OffHeapDBObject.copyOf( doc );
+        assertEquals( o.getBSONSize() , bytes.length );
+        assertEquals( o.get( "name" ) , "off heap" );
+        assertEquals( o.get( "n" ) , 1234567890123L );
+        assertEquals( ((DBObject) o.get( "sub" )).get( "x" ) , 1 );
+        assertEquals( ((List) ((DBObject) o.get( "sub" )).get( "list" )).get( 1 ) , "b" );
+        assertEquals( ((CodeWScope) o.get( "code" )).getScope().get( "y" ) , 2 );
+        assertTrue( o.get( "ref" ) instanceof DBRef );
+        assertEquals( new ArrayList<String>( o.keySet() ) , new ArrayList<String>( doc.keySet() ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        o.pipe( out );
+        assertEquals( out.toByteArray() , bytes );
+
+        LazyDBObject onHeap = new LazyDBObject( bytes , new LazyDBCallback( null ) );
+        assertEquals( o , OffHeapDBObject.copyOf( bytes , 0 ) );
+        assertEquals( o.hashCode() , onHeap.hashCode() );
+    }
+
+    @Test
+    public void testWrapsASliceAndRecycles(){
+        byte[] bytes = new DefaultDBEncoder().encode( new BasicDBObject( "a" , "b" ) );
+        ByteBuffer arena = ByteBuffer.allocateDirect( 100 );
+        arena.position( 10 );
+        arena.put( bytes );
+        arena.position( 10 );
+
+        final ByteBuffer[] recycled = new ByteBuffer[1];
+        OffHeapDBObject o = OffHeapDBObject.wrap( arena , new OffHeapDBObject.Recycler(){
+            public void recycle( ByteBuffer buffer ){
+                recycled[0] = buffer;
+            }
+        } );
+        assertEquals( arena.position() , 10 );
+        assertEquals( o.get( "a" ) , "b" );
+
+        assertSame( o.retain() , o );
+        assertFalse( o.release() );
+        assertNull( recycled[0] );
+        assertTrue( o.release() );
+        assertSame( recycled[0] , arena );
+        assertEquals( o.refCount() , 0 );
+
+        try {
+            o.get( "a" );
+            fail( "read after release" );
+        }
+        catch ( IllegalStateException e ){
+            // expected
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 
 public class OutMessageTest {
 
@@ -82,4 +83,32 @@ public class OutMessageTest {
         }
 
     }
+
+    @Test
+    public void testByteBufferEncoderBuildsTheSameMessage() throws IOException {
+        DBCollection collection = m.getDB("OutMessageTest").getCollection("byteBufferEncoder");
+        byte[] expected = encodeInsert(collection, DefaultDBEncoder.FACTORY.create());
+
+        for (DBEncoderFactory factory : Arrays.asList(ByteBufferDBEncoder.FACTORY, ByteBufferDBEncoder.DIRECT_FACTORY)) {
+            // the second message reuses the pooled buffer of the first
+            for (int i = 0; i < 2; i++) {
+                Assert.assertTrue(Arrays.equals(encodeInsert(collection, factory.create()), expected), factory.toString());
+            }
+        }
+    }
+
+    private static byte[] encodeInsert(DBCollection collection, DBEncoder encoder) throws IOException {
+        OutMessage om = OutMessage.insert(collection, encoder, WriteConcern.SAFE);
+        for (int i = 0; i < 100; i++) {
+            om.putObject(new BasicDBObject("_id", i).append("name", "document " + i).append("sub", new BasicDBObject("x", 1.5)));
+        }
+        om.prepare();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        om.pipe(out);
+        om.doneWithMessage();
+
+        byte[] bytes = out.toByteArray();
+        Arrays.fill(bytes, 4, 8, (byte) 0);  // the request id
+        return bytes;
+    }
 }
@@ -7,6 +7,7 @@ import org.testng.annotations.Test;
 
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
@@ -212,6 +213,128 @@ public class ReplicaSetStatusDomainModelTest extends TestCase {
         assertNotNull(set.getASecondary());
     }
 
+    @Test
+    public void testProbeResults() throws Exception {
+        List<ReplicaSetStatus.UpdatableReplicaSetNode> all = new ArrayList<ReplicaSetStatus.UpdatableReplicaSetNode>();
+        ReplicaSetStatus.UpdatableReplicaSetNode a
+                = new ReplicaSetStatus.UpdatableReplicaSetNode(new ServerAddress("127.0.0.1", 27017), all, _logger, null, _mongoOptions, _lastPrimarySignal);
+        all.add(a);
+
+        CommandResult res = new CommandResult(a._addr);
+        res.put("ok", 1);
+        res.put("ismaster", true);
+        res.put("setName", "test");
+        res.put("hosts", Arrays.asList("127.0.0.1:27017", "127.0.0.1:27018"));
+        a.update(new ConnectionStatus.Probe(res, 5000000L, null), new HashSet<ReplicaSetStatus.UpdatableReplicaSetNode>());
+        assertTrue(a.isOk());
+        assertTrue(a._isMaster);
+        assertTrue(Math.abs(a._pingTimeMS - 5) < 0.01);
+        assertEquals(2, all.size());
+
+        // b hasn't answered in this pass, and still says it is master from an earlier one
+        ReplicaSetStatus.UpdatableReplicaSetNode b = all.get(1);
+        b._connectionState = Connected;
+        b._isMaster = true;
+        long now = System.nanoTime();
+        assertTrue(b.snapshot(null, now, null).master());
+        assertFalse(b.snapshot(a, now, null).master());
+        assertTrue(a.snapshot(a, now, null).master());
+
+        b._probing = true;
+        b._probeStart = now;
+        assertTrue(b.snapshot(a, now, null).isOk());
+        b._probeStart = now - TimeUnit.MILLISECONDS.toNanos(ReplicaSetStatus.updaterProbeTimeoutMS + 1);
+        assertFalse(b.snapshot(a, now, null).isOk());
+
+        a.update(new ConnectionStatus.Probe(null, 0, new java.io.IOException("unreachable")), null);
+        assertFalse(a.isOk());
+    }
+
+    @Test
+    public void testRequestedUpdatesShareAPass() throws Exception {
+        Mongo mongo = new MongoClient("127.0.0.1:1");
+        try {
+            ReplicaSetStatus status = new ReplicaSetStatus(mongo, Arrays.asList(new ServerAddress("127.0.0.1:1")));
+            long pass = status.requestUpdate();
+            assertEquals(1, pass);
+            assertEquals(pass, status.requestUpdate());
+            assertEquals(0, status.getMasterPass());
+        } finally {
+            mongo.close();
+        }
+    }
+
+    @Test
+    public void testChooseAvoidsSlowMembers() throws Exception {
+        ServerStats fast = new ServerStats();
+        ServerStats slow = new ServerStats();
+        for (int i = 0; i < 100; i++) {
+            fast.record(TimeUnit.MILLISECONDS.toNanos(1));
+            slow.record(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+
+        LinkedHashMap<String, String> noTags = new LinkedHashMap<String, String>();
+        Set<String> names = new HashSet<String>();
+        List<ReplicaSetNode> nodes = new ArrayList<ReplicaSetNode>();
+        nodes.add(new ReplicaSetNode(new ServerAddress("127.0.0.1"), names, "", 10, true, true, false, noTags, Bytes.MAX_OBJECT_SIZE,
+                                     fast));
+        nodes.add(new ReplicaSetNode(new ServerAddress("127.0.0.2"), names, "", 10, true, false, true, noTags, Bytes.MAX_OBJECT_SIZE,
+                                     fast));
+        nodes.add(new ReplicaSetNode(new ServerAddress("127.0.0.3"), names, "", 10, true, false, true, noTags, Bytes.MAX_OBJECT_SIZE,
+                                     slow));
+        ReplicaSetStatus.ReplicaSet replicaSet = new ReplicaSetStatus.ReplicaSet(nodes, new Random(), 15);
+
+        // of two secondaries, the slow one is never picked
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("127.0.0.2", replicaSet.getASecondary().getServerAddress().getHost());
+        }
+
+        // of three members, it is only picked when it is drawn twice, which can't happen
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(replicaSet.getAMember().getServerAddress().getHost().equals("127.0.0.3"));
+        }
+    }
+
+    @Test
+    public void testTaggedMembersAreCached() throws Exception {
+        List<ReplicaSetStatus.UpdatableReplicaSetNode> updatableNodes = new ArrayList<ReplicaSetStatus.UpdatableReplicaSetNode>();
+        List<ReplicaSetStatus.ReplicaSetNode> nodes = new ArrayList<ReplicaSetStatus.ReplicaSetNode>();
+
+        LinkedHashMap<String, String> ny = new LinkedHashMap<String, String>();
+        ny.put("dc", "ny");
+        LinkedHashMap<String, String> nyRack = new LinkedHashMap<String, String>(ny);
+        nyRack.put("rack", "1");
+        LinkedHashMap<String, String> sf = new LinkedHashMap<String, String>();
+        sf.put("dc", "sf");
+
+        addNodeToLists("127.0.0.1", false, 10, updatableNodes, nodes, ny);
+        addNodeToLists("127.0.0.2", true, 10, updatableNodes, nodes, ny);
+        addNodeToLists("127.0.0.3", true, 10, updatableNodes, nodes, nyRack);
+        addNodeToLists("127.0.0.4", true, 10, updatableNodes, nodes, sf);
+
+        ReplicaSetStatus.ReplicaSet replicaSet = new ReplicaSetStatus.ReplicaSet(nodes, new Random(), 15);
+
+        List<ReplicaSetStatus.Tag> tags = new ArrayList<ReplicaSetStatus.Tag>();
+        tags.add(new ReplicaSetStatus.Tag("dc", "ny"));
+        List<ReplicaSetNode> secondaries = replicaSet.getGoodSecondariesByTags(tags);
+        assertEquals(Arrays.asList(nodes.get(1), nodes.get(2)), secondaries);
+        assertSame(secondaries, replicaSet.getGoodSecondariesByTags(new ArrayList<ReplicaSetStatus.Tag>(tags)));
+        assertEquals(Arrays.asList(nodes.get(0), nodes.get(1), nodes.get(2)), replicaSet.getGoodMembersByTags(tags));
+
+        // changing the caller's list doesn't change what was cached for it
+        tags.add(new ReplicaSetStatus.Tag("rack", "1"));
+        assertEquals(Arrays.asList(nodes.get(2)), replicaSet.getGoodSecondariesByTags(tags));
+        assertEquals(2, secondaries.size());
+
+        tags.clear();
+        tags.add(new ReplicaSetStatus.Tag("dc", "la"));
+        assertTrue(replicaSet.getGoodSecondariesByTags(tags).isEmpty());
+        assertNull(replicaSet.getASecondary(tags));
+
+        DBObject tagSet = new BasicDBObject("dc", "sf");
+        assertEquals(nodes.get(3), ReadPreference.nearest(tagSet).getNode(replicaSet));
+    }
+
     private int getLow(Map<String, AtomicInteger> counters) {
         int low = Integer.MAX_VALUE;
         for (final String host : counters.keySet()) {
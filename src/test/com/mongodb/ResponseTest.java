@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2008 - 2013 10gen, Inc. <http://10gen.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.BasicBSONEncoder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class ResponseTest {
+
+    @Test
+    public void testLazyDocumentsShareTheReplyBody() throws IOException {
+        byte[] reply = createReply(new BasicDBObject("x", 1), new BasicDBObject("x", 2), new BasicDBObject("x", 1));
+
+        Response res = new Response(new ServerAddress(), null, new ByteArrayInputStream(reply), new LazyDBDecoder());
+
+        Assert.assertEquals(res.size(), 3);
+        Assert.assertEquals(res.get(0).get("x"), 1);
+        Assert.assertEquals(res.get(1).get("x"), 2);
+        Assert.assertEquals(res.get(2).get("x"), 1);
+        Assert.assertEquals(res.get(0), res.get(2));
+        Assert.assertEquals(res.get(0).hashCode(), res.get(2).hashCode());
+        Assert.assertFalse(res.get(0).equals(res.get(1)));
+    }
+
+    @Test
+    public void testReadBufferIsReusedAcrossResponses() throws IOException {
+        Response.ReadBuffer buffer = new Response.ReadBuffer();
+        byte[] first = createReply(new BasicDBObject("x", 1));
+        byte[] second = createReply(new BasicDBObject("x", 2), new BasicDBObject("y", "z"));
+
+        Response res1 = new Response(new ServerAddress(), null, new ByteArrayInputStream(first), new DefaultDBDecoder(), buffer);
+        Response res2 = new Response(new ServerAddress(), null, new ByteArrayInputStream(second), new DefaultDBDecoder(), buffer);
+
+        Assert.assertEquals(res1.get(0), new BasicDBObject("x", 1));
+        Assert.assertEquals(res2.get(0), new BasicDBObject("x", 2));
+        Assert.assertEquals(res2.get(1), new BasicDBObject("y", "z"));
+        Assert.assertSame(buffer.get(16), buffer.get(32));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedDocumentIsRejected() throws IOException {
+        byte[] reply = createReply(new BasicDBObject("x", 1));
+        reply[Response.HEADER_LENGTH] = 100;  // document claims to be longer than the reply
+
+        new Response(new ServerAddress(), null, new ByteArrayInputStream(reply), new LazyDBDecoder());
+    }
+
+    private static byte[] createReply(DBObject... docs) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (DBObject doc : docs) {
+            body.write(new BasicBSONEncoder().encode(doc));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, Response.HEADER_LENGTH + body.size());
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);
+        writeInt(bytes, 1);  // OP_REPLY
+        writeInt(bytes, 0);  // flags
+        writeInt(bytes, 0);  // cursor id
+        writeInt(bytes, 0);
+        writeInt(bytes, 0);  // starting from
+        writeInt(bytes, docs.length);
+        body.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int x) {
+        out.write(x);
+        out.write(x >> 8);
+        out.write(x >> 16);
+        out.write(x >> 24);
+    }
+}
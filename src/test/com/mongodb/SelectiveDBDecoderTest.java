@@ -0,0 +1,81 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+public class SelectiveDBDecoderTest extends Assert {
+
+    @Test
+    public void testOnlySelectedPathsAreDecoded() throws Exception {
+        ObjectId id = new ObjectId();
+        DBObject doc = new BasicDBObject( "_id" , id )
+            .append( "regex" , Pattern.compile( "^a" ) )
+            .append( "bin" , new Binary( (byte) 0x80 , new byte[]{ 1 , 2 , 3 } ) )
+            .append( "code" , new CodeWScope( "x" , new BasicDBObject( "y" , 1 ) ) )
+            .append( "js" , new Code( "z" ) )
+            .append( "ref" , new DBRef( null , "other" , new ObjectId() ) )
+            .append( "name" , "selective" )
+            .append( "when" , new Date() )
+            .append( "address" , new BasicDBObject( "city" , "Paris" ).append( "zip" , "75001" ).append( "geo" , Arrays.asList( 2.3 , 48.8 ) ) )
+            .append( "items" , Arrays.asList( new BasicDBObject( "sku" , "a" ).append( "qty" , 1 ) , 7 , new BasicDBObject( "qty" , 2 ) ) )
+            .append( "count" , 42L );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        DBDecoder decoder = SelectiveDBDecoder.factory( "_id" , "address.city" , "items.sku" , "count" ).create();
+        DBObject decoded = decoder.decode( bytes , (DBCollection) null );
+
+        DBObject expected = new BasicDBObject( "_id" , id )
+            .append( "address" , new BasicDBObject( "city" , "Paris" ) )
+            .append( "items" , Arrays.asList( new BasicDBObject( "sku" , "a" ) , null , new BasicDBObject() ) )
+            .append( "count" , 42L );
+        assertEquals( decoded , expected );
+        assertTrue( decoded.isPartialObject() );
+
+        assertEquals( decoder.decode( new ByteArrayInputStream( bytes ) , (DBCollection) null ) , expected );
+    }
+
+    @Test
+    public void testWholeSubtreesAndIndexes(){
+        DBObject doc = new BasicDBObject( "a" , new BasicDBObject( "b" , new BasicDBObject( "c" , 1 ) ).append( "d" , 2 ) )
+            .append( "list" , Arrays.asList( "x" , "y" , "z" ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        DBObject decoded = new SelectiveDBDecoder( "a.b" , "a" , "list.1" ).decode( bytes , (DBCollection) null );
+        assertEquals( decoded.get( "a" ) , doc.get( "a" ) );
+        assertEquals( decoded.get( "list" ) , Arrays.asList( null , "y" ) );
+
+        DBObject all = new SelectiveDBDecoder( "a" , "list" ).decode( bytes , (DBCollection) null );
+        assertEquals( all , doc );
+        assertFalse( all.isPartialObject() );
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoPaths(){
+        SelectiveDBDecoder.factory();
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ServerStatsTest extends Assert {
+
+    @Test
+    public void testBuckets(){
+        for ( long micros = 0; micros < 16; micros++ )
+            assertEquals( ServerStats.lowerBound( ServerStats.bucket( micros ) ) , micros );
+
+        int last = -1;
+        for ( long micros = 1; micros < 1L << 40; micros += micros / 7 + 1 ){
+            int bucket = ServerStats.bucket( micros );
+            assertTrue( bucket >= last );
+            last = bucket;
+
+            long lower = ServerStats.lowerBound( bucket );
+            assertTrue( lower <= micros );
+            assertTrue( micros - lower <= lower / 8 , micros + " in bucket starting at " + lower );
+        }
+        assertEquals( ServerStats.bucket( Long.MAX_VALUE ) , ServerStats.BUCKETS - 1 );
+    }
+
+    @Test
+    public void testPercentiles(){
+        ServerStats stats = new ServerStats();
+        assertEquals( stats.getMedianMicros() , 0 );
+        assertEquals( stats.getCost() , 0 );
+
+        stats = new ServerStats();
+        for ( int i = 0; i < 98; i++ )
+            stats.record( TimeUnit.MICROSECONDS.toNanos( 1000 ) );
+        for ( int i = 0; i < 2; i++ )
+            stats.record( TimeUnit.MICROSECONDS.toNanos( 100000 ) );
+
+        assertEquals( stats.getMedianMicros() , ServerStats.lowerBound( ServerStats.bucket( 1000 ) ) );
+        assertEquals( stats.get99thPercentileMicros() , ServerStats.lowerBound( ServerStats.bucket( 100000 ) ) );
+        assertEquals( stats.getCost() , stats.getMedianMicros() + stats.get99thPercentileMicros() );
+
+        stats.started();
+        stats.started();
+        assertEquals( stats.getInFlight() , 2 );
+        assertEquals( stats.getCost() , 3 * stats.getMedianMicros() + stats.get99thPercentileMicros() );
+        stats.finished( 0 );
+        stats.finished( 0 );
+        assertEquals( stats.getInFlight() , 0 );
+    }
+
+    @Test
+    public void testFailuresAreNotRecorded() throws InterruptedException {
+        ServerStats stats = new ServerStats();
+        stats.record( TimeUnit.MICROSECONDS.toNanos( 1000 ) );
+
+        stats.started();
+        assertEquals( stats.getInFlight() , 1 );
+        stats.failed();
+        assertEquals( stats.getInFlight() , 0 );
+
+        Thread.sleep( 10 );
+        assertEquals( stats.get99thPercentileMicros() , ServerStats.lowerBound( ServerStats.bucket( 1000 ) ) );
+    }
+
+    @Test
+    public void testOldLatenciesAreForgotten() throws InterruptedException {
+        ServerStats stats = new ServerStats( TimeUnit.MILLISECONDS.toNanos( 20 ) );
+        stats.record( TimeUnit.SECONDS.toNanos( 1 ) );
+        assertTrue( stats.getMedianMicros() > 0 );
+
+        Thread.sleep( 50 );
+        stats.record( TimeUnit.MICROSECONDS.toNanos( 10 ) );
+        assertEquals( stats.get99thPercentileMicros() , 10 );
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.io.ByteBufferOutputBuffer;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+public class BSONWriterCallbackTest extends com.mongodb.util.TestCase {
+
+    @org.testng.annotations.Test
+    public void testSameBytesAsParseAndEncode() throws IOException {
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "s" , "quote \" tab \t \u00e9" )
+            .append( "i" , 1 )
+            .append( "l" , 1L << 40 )
+            .append( "d" , 0.1 )
+            .append( "b" , true )
+            .append( "n" , null )
+            .append( "date" , new Date( 1234567890123L ) )
+            .append( "re" , Pattern.compile( "^a" , Pattern.CASE_INSENSITIVE ) )
+            .append( "ts" , new BSONTimestamp( 5 , 6 ) )
+            .append( "uuid" , UUID.randomUUID() )
+            .append( "code" , new Code( "f()" ) )
+            .append( "scope" , new CodeWScope( "g()" , new BasicDBObject( "x" , 1 ) ) )
+            .append( "min" , new MinKey() )
+            .append( "max" , new MaxKey() )
+            .append( "ref" , new DBRef( null , "other" , 5 ) )
+            .append( "empty" , new BasicDBObject() )
+            .append( "query" , new BasicDBObject( "$gt" , 1 ) )
+            .append( "list" , Arrays.asList( 1 , "two" , new BasicDBObject( "three" , 3 ) , Arrays.asList() ) )
+            .append( "sub" , new BasicDBObject( "a" , new BasicDBObject( "b" , new ObjectId() ) ) );
+        String json = JSON.serialize( doc );
+
+        assertTrue( Arrays.equals( _write( json , false ) , new DefaultDBEncoder().encode( (DBObject) JSON.parse( json ) ) ) );
+    }
+
+    @org.testng.annotations.Test
+    public void testAppendsDocuments() throws IOException {
+        String json = "{ \"a\" : 1 }\n{ \"b\" : [ 2 , 3 ] }\n";
+        byte[] a = new DefaultDBEncoder().encode( new BasicDBObject( "a" , 1 ) );
+        byte[] b = new DefaultDBEncoder().encode( new BasicDBObject( "b" , Arrays.asList( 2 , 3 ) ) );
+
+        byte[] both = new byte[ a.length + b.length ];
+        System.arraycopy( a , 0 , both , 0 , a.length );
+        System.arraycopy( b , 0 , both , a.length , b.length );
+        assertTrue( Arrays.equals( _write( json , false ) , both ) );
+        assertTrue( Arrays.equals( _write( "[ { \"a\" : 1 } , { \"b\" : [ 2 , 3 ] } ]" , false ) , both ) );
+    }
+
+    @org.testng.annotations.Test
+    public void testAddId() throws IOException {
+        DBObject withId = new BasicDBObject( "_id" , 5 ).append( "sub" , new BasicDBObject( "_id" , 6 ) );
+        assertTrue( Arrays.equals( _write( JSON.serialize( withId ) , true ) , new DefaultDBEncoder().encode( withId ) ) );
+
+        BSONObject added = new BasicBSONDecoder().readObject( _write( "{ \"x\" : { \"_id\" : 1 } }" , true ) );
+        assertEquals( added.keySet().size() , 2 );
+        assertEquals( added.get( "x" ) , new BasicDBObject( "_id" , 1 ) );
+        assertTrue( added.get( "_id" ) instanceof ObjectId );
+    }
+
+    @org.testng.annotations.Test
+    public void testTranscodesBSON(){
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "date" , new Date() )
+            .append( "list" , Arrays.asList( 1 , 2L , 3.0 ) )
+            .append( "ts" , new BSONTimestamp( 1 , 2 ) )
+            .append( "re" , Pattern.compile( "x" ) )
+            .append( "code" , new CodeWScope( "g()" , new BasicDBObject( "x" , 1 ) ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        BSONWriterCallback callback = new BSONWriterCallback();
+        new BasicBSONDecoder().decode( bytes , callback );
+        assertTrue( Arrays.equals( callback.getOutputBuffer().toByteArray() , bytes ) );
+    }
+
+    @org.testng.annotations.Test
+    public void testOnlyDocuments() throws IOException {
+        try {
+            _write( "[ [ 1 , 2 ] ]" , false );
+            fail( "arrays are not documents" );
+        }
+        catch ( IllegalArgumentException e ){
+            // expected
+        }
+        // a scalar at the top level never reaches the callback
+        assertEquals( _write( "5" , false ).length , 0 );
+    }
+
+    private static byte[] _write( String json , boolean addId ) throws IOException {
+        ByteBufferOutputBuffer buf = new ByteBufferOutputBuffer();
+        JSONStreamParser parser = new JSONStreamParser( new StringReader( json ) , new BSONWriterCallback( buf , addId ) );
+        while ( parser.hasNext() )
+            parser.next();
+        return buf.toByteArray();
+    }
+}
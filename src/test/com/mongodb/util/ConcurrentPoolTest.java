@@ -0,0 +1,291 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("deprecation")
+public class ConcurrentPoolTest extends com.mongodb.util.TestCase {
+
+    class MyPool extends ConcurrentPool<Integer> {
+
+        MyPool( int size ){
+            super( "blah" , size );
+        }
+
+        public Integer createNew(){
+            if (_throwError)
+                throw new OutOfMemoryError();
+
+            if (_returnNull) {
+                return null;
+            }
+
+            return _num.getAndIncrement();
+        }
+
+        @Override
+        public void cleanup( Integer t ){
+            _cleanedUp.add( t );
+        }
+
+        final AtomicInteger _num = new AtomicInteger();
+        final List<Integer> _cleanedUp = new ArrayList<Integer>();
+        boolean _throwError;
+        boolean _returnNull;
+    }
+
+    @org.testng.annotations.Test
+    public void testBasic() throws InterruptedException {
+        MyPool p = new MyPool( 10 );
+
+        int a = p.get();
+        assertEquals( 0 , a );
+
+        int b = p.get();
+        assertEquals( 1 , b );
+
+        p.done( a );
+        a = p.get();
+        assertEquals( 0 , a );
+
+        assertEquals( 2 , p.getInUse() );
+        assertEquals( 0 , p.getAvailable() );
+        assertEquals( 2 , p.getTotal() );
+    }
+
+    @org.testng.annotations.Test
+    public void testMax() throws InterruptedException {
+        MyPool p = new MyPool( 2 );
+
+        assertEquals( 0 , (int) p.get() );
+        assertEquals( 1 , (int) p.get() );
+
+        assertNull( p.get( 0 ) );
+        assertNull( p.get( 10 ) );
+    }
+
+    @org.testng.annotations.Test
+    public void testDoneWithUnknownMemberThrows() throws InterruptedException {
+        MyPool p = new MyPool( 2 );
+        p.get();
+
+        try {
+            p.done( 42 );
+            fail( "Should have thrown" );
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testThrowErrorFromCreate() throws InterruptedException {
+        MyPool p = new MyPool( 1 );
+        p._throwError = true;
+
+        try {
+            p.get();
+            fail("Should have thrown");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+
+        p._throwError = false;
+
+        // now make sure there is still a permit left, and room to create one
+        Integer a = p.get(0);
+        assertEquals( Integer.valueOf(0) , a );
+    }
+
+    @org.testng.annotations.Test
+    public void testReturnNullFromCreate() throws InterruptedException {
+        MyPool p = new MyPool( 1 );
+        p._returnNull = true;
+
+        try {
+            p.get();
+            fail("Should have thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        p._returnNull = false;
+
+        Integer a = p.get(0);
+        assertEquals( Integer.valueOf(0) , a );
+    }
+
+    @org.testng.annotations.Test
+    public void testClose() throws InterruptedException {
+        MyPool p = new MyPool( 2 );
+        Integer a = p.get();
+        Integer b = p.get();
+        p.done( a );
+
+        p.close();
+        assertEquals( 1 , p._cleanedUp.size() );
+
+        p.done( b );
+        assertEquals( 2 , p._cleanedUp.size() );
+        assertEquals( 0 , p.getTotal() );
+    }
+
+    @org.testng.annotations.Test
+    public void testNeverCreatesMoreThanMax() throws Exception {
+        final MyPool p = new MyPool( 4 );
+        int numThreads = 32;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for ( int i = 0; i < numThreads; i++ ){
+            futures.add( executor.submit( new Callable<Void>() {
+                public Void call() throws InterruptedException {
+                    start.await();
+                    for ( int j = 0; j < 1000; j++ ){
+                        Integer t = p.get();
+                        int c = concurrent.incrementAndGet();
+                        if ( c > maxConcurrent.get() )
+                            maxConcurrent.set( c );
+                        concurrent.decrementAndGet();
+                        p.done( t );
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for ( Future<Void> f : futures )
+            f.get();
+        executor.shutdown();
+
+        assertTrue( p._num.get() <= 4 );
+        assertTrue( maxConcurrent.get() <= 4 );
+        assertEquals( 0 , p.getInUse() );
+        assertEquals( p._num.get() , p.getAvailable() );
+    }
+
+    @org.testng.annotations.Test
+    public void testThrowsInterruptedException() throws InterruptedException {
+        final MyPool p = new MyPool(1);
+        p.get();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch ready = new CountDownLatch(1);
+
+        Callable<Boolean> callable = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    ready.countDown();
+                    p.get();
+                    return false;
+                } catch (InterruptedException e) {
+                    // return true if interrupted
+                    return true;
+                }
+            }
+        };
+        Future<Boolean> future = executor.submit(callable);
+
+        ready.await();
+        // Interrupt the thread
+        executor.shutdownNow();
+
+        try {
+            assertEquals(true, future.get());
+        } catch (InterruptedException e) {
+            fail("Should not happen, since this thread was not interrupted");
+        } catch (ExecutionException e) {
+            fail("Should not happen");
+        }
+    }
+    @org.testng.annotations.Test
+    public void testMembersWithEqualHashCodes() throws InterruptedException {
+        ConcurrentPool<Object> p = new ConcurrentPool<Object>( "same hash" , 3 ) {
+            protected Object createNew(){
+                return new Object() {
+                    public int hashCode(){
+                        return 42;
+                    }
+                };
+            }
+        };
+
+        Object a = p.get();
+        Object b = p.get();
+        assertEquals( 2 , p.getInUse() );
+        p.done( a );
+        assertEquals( 1 , p.getInUse() );
+        assertTrue( p._out.contains( b ) );
+        assertFalse( p._out.contains( a ) );
+        p.done( b );
+        assertEquals( 2 , p.getAvailable() );
+    }
+
+    @org.testng.annotations.Test
+    public void testGrowsRatherThanTakeAnotherThreadsMember() throws Exception {
+        final ConcurrentPool<Object> p = new ConcurrentPool<Object>( "owned" , 2 ) {
+            protected Object createNew(){
+                return new AtomicInteger( System.identityHashCode( Thread.currentThread() ) );
+            }
+
+            @Override
+            protected boolean isPreferred( Object t ){
+                return ((AtomicInteger) t).get() == System.identityHashCode( Thread.currentThread() );
+            }
+        };
+
+        final Object mine = p.get();
+        p.done( mine );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Object theirs = executor.submit( new Callable<Object>() {
+            public Object call() throws InterruptedException {
+                Object o = p.get();
+                p.done( o );
+                return o;
+            }
+        }).get();
+        assertTrue( theirs != mine );
+        assertEquals( 2 , p.getTotal() );
+
+        // once the pool is full, another thread's member is taken after all
+        Object third = executor.submit( new Callable<Object>() {
+            public Object call() throws InterruptedException {
+                Object a = p.get();
+                Object b = p.get();
+                p.done( a );
+                p.done( b );
+                return a;
+            }
+        }).get();
+        assertNotNull( third );
+        assertEquals( 2 , p.getTotal() );
+        executor.shutdown();
+    }
+}
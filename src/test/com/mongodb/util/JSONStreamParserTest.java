@@ -0,0 +1,109 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class JSONStreamParserTest extends com.mongodb.util.TestCase {
+
+    @org.testng.annotations.Test
+    public void testSameResultAsParse() throws IOException {
+        String[] inputs = {
+            "{ 'a' : 1 , \"b\" : -2.5e3 , c : [ 1 , 'two' , { d : null } , [ ] ] }",
+            "{ \"big\" : 12345678901 , \"neg\" : -9223372036854775808 , \"t\" : true , \"f\" : false }",
+            "{ \"s\" : \"tab\\t quote\\\" slash\\\\ unicode\\u00e9 \\/\" }",
+            "{ \"_id\" : { \"$oid\" : \"" + new ObjectId() + "\" } , \"when\" : { \"$date\" : 1000 } , }",
+            "[ 1 , 2.0 , \"x\" ]",
+            "{ }",
+            "42",
+            "'str'"
+        };
+        for ( String input : inputs ){
+            assertEquals( JSON.parse( new OneCharReader( input ) , null ) , JSON.parse( input ) );
+        }
+        assertNull( JSON.parse( new StringReader( "  \n " ) , null ) );
+        assertTrue( Double.isNaN( (Double) ((DBObject) JSON.parse( new StringReader( "{ n : NaN }" ) , null )).get( "n" ) ) );
+    }
+
+    @org.testng.annotations.Test
+    public void testSequences() throws IOException {
+        for ( String input : new String[]{ "{ a : 1 }\n{ a : 2 }\n\n{ a : 3 }" , "[ { a : 1 } , { a : 2 } ,\n { a : 3 } ]" } ){
+            JSONStreamParser parser = new JSONStreamParser( new OneCharReader( input ) );
+            List<Object> values = new ArrayList<Object>();
+            while ( parser.hasNext() )
+                values.add( ((DBObject) parser.next()).get( "a" ) );
+            assertEquals( values , Arrays.<Object>asList( 1 , 2 , 3 ) );
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testErrors() throws IOException {
+        for ( String input : new String[]{ "{ a : }" , "{ \"a\" : 1" , "{ \"a\" : tru }" , "[ 1 2 ]" , "{ a : 99999999999999999999 }" , "{ a : - }" } ){
+            try {
+                JSON.parse( new StringReader( input ) , null );
+                fail( input );
+            }
+            catch ( JSONParseException e ){
+                // expected
+            }
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testSerializeToAppendable() throws IOException {
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() ).append( "when" , new Date() )
+            .append( "list" , Arrays.asList( 1 , 2 ) ).append( "sub" , new BasicDBObject( "x" , "y" ) );
+        StringWriter out = new StringWriter();
+        JSON.serialize( doc , out );
+        assertEquals( out.toString() , JSON.serialize( doc ) );
+
+        out = new StringWriter();
+        JSON.serialize( Arrays.asList( doc , 3 ) , out );
+        assertEquals( out.toString() , JSON.serialize( Arrays.asList( doc , 3 ) ) );
+    }
+
+    // hands out one character per read, so that every value crosses a buffer refill
+    static class OneCharReader extends Reader {
+        OneCharReader( String s ){
+            _s = s;
+        }
+
+        public int read( char[] cbuf , int off , int len ){
+            if ( _pos == _s.length() )
+                return -1;
+            cbuf[ off ] = _s.charAt( _pos++ );
+            return 1;
+        }
+
+        public void close(){
+        }
+
+        private final String _s;
+        private int _pos;
+    }
+}
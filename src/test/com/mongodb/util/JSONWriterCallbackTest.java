@@ -0,0 +1,86 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.mongodb.util;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.BasicBSONDecoder;
+import org.bson.NewBSONDecoder;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+@SuppressWarnings("deprecation")
+public class JSONWriterCallbackTest extends com.mongodb.util.TestCase {
+
+    @org.testng.annotations.Test
+    public void testSameTextAsSerialize(){
+        DBObject doc = new BasicDBObject( "_id" , new ObjectId() )
+            .append( "s" , "quote \" tab \t \u00e9" )
+            .append( "i" , 1 )
+            .append( "l" , 1L << 40 )
+            .append( "d" , 0.1 )
+            .append( "b" , true )
+            .append( "n" , null )
+            .append( "date" , new Date() )
+            .append( "re" , Pattern.compile( "^a" , Pattern.CASE_INSENSITIVE ) )
+            .append( "ts" , new BSONTimestamp( 5 , 6 ) )
+            .append( "bin" , new byte[]{ 1 , 2 } )
+            .append( "bin2" , new Binary( (byte) 0x80 , new byte[]{ 3 } ) )
+            .append( "uuid" , UUID.randomUUID() )
+            .append( "code" , new Code( "f()" ) )
+            .append( "scope" , new CodeWScope( "g()" , new BasicDBObject( "x" , 1 ) ) )
+            .append( "min" , new MinKey() )
+            .append( "max" , new MaxKey() )
+            .append( "ref" , new DBRef( null , "other" , new ObjectId() ) )
+            .append( "empty" , new BasicDBObject() )
+            .append( "list" , Arrays.asList( 1 , "two" , new BasicDBObject( "three" , 3 ) , Arrays.asList() ) );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+        String expected = JSON.serialize( DefaultDBDecoder.FACTORY.create().decode( bytes , (DBCollection) null ) );
+
+        JSONWriterCallback json = new JSONWriterCallback();
+        new NewBSONDecoder().decode( bytes , json );
+        assertEquals( json.getBuffer().toString() , expected );
+
+        JSONWriterCallback again = new JSONWriterCallback();
+        new BasicBSONDecoder().decode( bytes , again );
+        assertEquals( again.getBuffer().toString() , expected );
+    }
+
+    @org.testng.annotations.Test
+    public void testStrictSerializer(){
+        DBObject doc = new BasicDBObject( "date" , new Date( 1000 ) ).append( "i" , 2 );
+        byte[] bytes = new DefaultDBEncoder().encode( doc );
+
+        JSONWriterCallback json = new JSONWriterCallback( new StringBuilder( "> " ) , JSONSerializers.getStrict() );
+        new NewBSONDecoder().decode( bytes , json );
+        assertEquals( json.getBuffer().toString() , "> " + JSONSerializers.getStrict().serialize( doc ) );
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson;
+
+import org.bson.io.BasicOutputBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class LazyBSONObjectTest extends Assert {
+
+    @Test
+    public void testFieldLookup(){
+        BSONObject doc = new BasicBSONObject();
+        for ( int i = 0; i < 300; i++ )
+            doc.put( "field" + i , i );
+        doc.put( "cl\u00e9" , "value" );
+        doc.put( "sub" , new BasicBSONObject( "x" , 1 ) );
+
+        LazyBSONObject lazy = new LazyBSONObject( new BasicBSONEncoder().encode( doc ) , new LazyBSONCallback() );
+        for ( int i = 299; i >= 0; i-- )
+            assertEquals( lazy.get( "field" + i ) , i );
+        assertEquals( lazy.get( "cl\u00e9" ) , "value" );
+        assertEquals( ((BSONObject) lazy.get( "sub" )).get( "x" ) , 1 );
+        assertNull( lazy.get( "missing" ) );
+        assertNull( lazy.get( "field" ) );
+        assertNull( lazy.get( "field1\u0000" ) );
+        assertTrue( lazy.containsField( "field150" ) );
+        assertFalse( lazy.containsField( "field300" ) );
+        assertEquals( lazy.keySet().size() , 302 );
+        assertTrue( lazy.keySet().contains( "cl\u00e9" ) );
+    }
+
+    @Test
+    public void testDuplicateKeysFindTheFirst(){
+        BasicOutputBuffer out = new BasicOutputBuffer();
+        out.writeInt( 0 );
+        for ( int i = 0; i < 2; i++ ){
+            out.write( BSON.NUMBER_INT );
+            out.writeCString( "a" );
+            out.writeInt( i );
+        }
+        out.write( BSON.EOO );
+        out.writeInt( 0 , out.size() );
+
+        LazyBSONObject lazy = new LazyBSONObject( out.toByteArray() , new LazyBSONCallback() );
+        assertEquals( lazy.get( "a" ) , 0 );
+        assertEquals( lazy.keySet().size() , 2 );
+    }
+
+    @Test
+    public void testListPositions(){
+        List<Integer> values = Arrays.asList( 10 , 11 , 12 , 13 );
+        byte[] bytes = new BasicBSONEncoder().encode( new BasicBSONObject( "list" , values ) );
+        LazyBSONList list = (LazyBSONList) new LazyBSONObject( bytes , new LazyBSONCallback() ).get( "list" );
+
+        assertEquals( list.size() , 4 );
+        for ( int i = 0; i < values.size(); i++ )
+            assertEquals( list.get( i ) , values.get( i ) );
+        assertNull( list.get( 4 ) );
+        assertNull( list.get( -1 ) );
+
+        // an array with keys out of order is still read by key
+        BSONObject sparse = new BasicBSONObject( "2" , "c" ).append( "0" , "a" );
+        LazyBSONList other = new LazyBSONList( new BasicBSONEncoder().encode( sparse ) , new LazyBSONCallback() );
+        assertEquals( other.get( 0 ) , "a" );
+        assertNull( other.get( 1 ) );
+        assertEquals( other.get( 2 ) , "c" );
+    }
+}
@@ -19,6 +19,11 @@ package org.bson;
 // Bson
 import org.bson.types.ObjectId;
 
+// Java
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
 // TestNg
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -110,5 +115,38 @@ public class NewBSONDecoderTest extends Assert {
         final BasicBSONDecoder decoder = new BasicBSONDecoder();
         testDecoder("current", decoder);
     }
-}
+    @Test
+    public void testDecodeFromStreamTwice() throws Exception {
+        final byte [] big = BSON.encode(new BasicBSONObject("string", "a longer document comes first"));
+        final byte [] small = BSON.encode(new BasicBSONObject("i", 1));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(big);
+        bytes.write(small);
+        final InputStream in = new ByteArrayInputStream(bytes.toByteArray());
+
+        final NewBSONDecoder decoder = new NewBSONDecoder();
+        BasicBSONCallback callback = new BasicBSONCallback();
+        assertEquals(decoder.decode(in, callback), big.length);
+        assertEquals(((BSONObject) callback.get()).get("string"), "a longer document comes first");
+
+        callback = new BasicBSONCallback();
+        assertEquals(decoder.decode(in, callback), small.length);
+        assertEquals(((BSONObject) callback.get()).get("i"), 1);
+    }
+
+    @Test
+    public void testReadObjectFromStreamTwice() throws Exception {
+        final byte [] big = BSON.encode(new BasicBSONObject("string", "a longer document comes first"));
+        final byte [] small = BSON.encode(new BasicBSONObject("i", 1));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(big);
+        bytes.write(small);
+        final InputStream in = new ByteArrayInputStream(bytes.toByteArray());
 
+        final NewBSONDecoder decoder = new NewBSONDecoder();
+        assertEquals(decoder.readObject(in).get("string"), "a longer document comes first");
+        final BSONObject second = decoder.readObject(in);
+        assertEquals(second.get("i"), 1);
+        assertEquals(second.keySet().size(), 1);
+    }
+}
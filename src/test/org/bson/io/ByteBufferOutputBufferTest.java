@@ -0,0 +1,129 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.ByteBufferDBEncoder;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.BSONException;
+import org.bson.BasicBSONEncoder;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+@SuppressWarnings("deprecation")
+public class ByteBufferOutputBufferTest extends Assert {
+
+    @Test
+    public void testSameBytesAsBasicOutputBuffer(){
+        for ( boolean direct : new boolean[]{ false , true } ){
+            DBObject doc = _document();
+
+            BasicOutputBuffer expected = new BasicOutputBuffer();
+            _encode( expected , doc );
+
+            // start small so that the buffer has to grow
+            ByteBufferOutputBuffer actual = new ByteBufferOutputBuffer( 16 , direct );
+            _encode( actual , doc );
+
+            assertEquals( actual.size() , expected.size() );
+            assertEquals( actual.toByteArray() , expected.toByteArray() );
+            assertEquals( actual.getByteBuffer().remaining() , expected.size() );
+        }
+    }
+
+    @Test
+    public void testBackpatchAndReset(){
+        ByteBufferOutputBuffer buf = new ByteBufferOutputBuffer( 8 , false );
+        buf.writeInt( 0 );
+        buf.write( "eliot".getBytes() );
+        buf.writeInt( 0 , 42 );
+        assertEquals( buf.getPosition() , 9 );
+        assertEquals( buf.getByteBuffer().getInt( 0 ) , 42 );
+
+        buf.reset();
+        assertEquals( buf.size() , 0 );
+        buf.writeCString( "a\u00e9\u20ac\ud83d\ude00" );
+        assertEquals( buf.toByteArray() , Arrays.copyOf( _cstring( "a\u00e9\u20ac\ud83d\ude00" ) , buf.size() ) );
+    }
+
+    @Test
+    public void testNullInCStringLeavesBufferUnchanged(){
+        ByteBufferOutputBuffer buf = new ByteBufferOutputBuffer();
+        buf.writeCString( "ok" );
+        try {
+            buf.writeCString( "b\u0000d" );
+            fail( "should have thrown" );
+        }
+        catch ( BSONException e ){
+            // expected
+        }
+        assertEquals( buf.getPosition() , 3 );
+        assertEquals( buf.size() , 3 );
+    }
+
+    @Test
+    public void testDBEncoderWritesSameBytesAsDefault(){
+        DBObject doc = _document();
+
+        PoolOutputBuffer expected = new PoolOutputBuffer();
+        DefaultDBEncoder.FACTORY.create().writeObject( expected , doc );
+
+        PoolOutputBuffer actual = new PoolOutputBuffer();
+        int size = ByteBufferDBEncoder.FACTORY.create().writeObject( actual , doc );
+        ByteBufferDBEncoder.DIRECT_FACTORY.create().writeObject( actual , doc );
+
+        assertEquals( size , expected.size() );
+        byte[] both = actual.toByteArray();
+        assertEquals( Arrays.copyOfRange( both , 0 , size ) , expected.toByteArray() );
+        assertEquals( Arrays.copyOfRange( both , size , 2 * size ) , expected.toByteArray() );
+    }
+
+    private static void _encode( OutputBuffer buf , DBObject doc ){
+        BasicBSONEncoder encoder = new BasicBSONEncoder();
+        encoder.set( buf );
+        encoder.putObject( doc );
+        encoder.done();
+    }
+
+    private static byte[] _cstring( String s ){
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        buf.writeCString( s );
+        return buf.toByteArray();
+    }
+
+    private static DBObject _document(){
+        StringBuilder big = new StringBuilder();
+        while ( big.length() < 5000 )
+            big.append( "caf\u00e9 " );
+
+        return new BasicDBObject( "_id" , new ObjectId() )
+            .append( "i" , 1 )
+            .append( "l" , 2L )
+            .append( "d" , 3.5 )
+            .append( "date" , new Date( 1234567890L ) )
+            .append( "s" , "hello" )
+            .append( "big" , big.toString() )
+            .append( "k\u00e9y" , true )
+            .append( "sub" , new BasicDBObject( "a" , Arrays.asList( 1 , "two" , 3.0 ) ) )
+            .append( "bin" , new byte[]{ 1 , 2 , 3 } );
+    }
+}
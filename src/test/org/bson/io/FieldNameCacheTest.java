@@ -0,0 +1,119 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.BasicBSONObject;
+import org.bson.KeyCachingLazyBSONObject;
+import org.bson.LazyBSONCallback;
+import org.bson.LazyBSONObject;
+import org.bson.NewBSONDecoder;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+@SuppressWarnings("deprecation")
+public class FieldNameCacheTest extends Assert {
+
+    @AfterMethod
+    public void tearDown(){
+        FieldNameCache.setDefault( null );
+    }
+
+    @Test
+    public void testHitReturnsSameInstance(){
+        FieldNameCache cache = new FieldNameCache( 16 , 64 );
+        UTF8Decoder decoder = new UTF8Decoder();
+        byte[] a = "xx_idyy".getBytes( UTF8 );
+        byte[] b = "_id".getBytes( UTF8 );
+
+        String first = cache.get( a , 2 , 3 , decoder );
+        String second = cache.get( b , 0 , 3 , decoder );
+        assertEquals( first , "_id" );
+        assertSame( second , first );
+        assertEquals( cache.getHits() , 1 );
+        assertEquals( cache.getMisses() , 1 );
+        assertEquals( cache.getHitRate() , 0.5 );
+
+        cache.resetStatistics();
+        assertEquals( cache.getHitRate() , 0.0 );
+    }
+
+    @Test
+    public void testDirectBuffer(){
+        FieldNameCache cache = new FieldNameCache( 16 , 64 );
+        UTF8Decoder decoder = new UTF8Decoder();
+        byte[] bytes = "cl\u00e9".getBytes( UTF8 );
+        ByteBuffer direct = ByteBuffer.allocateDirect( bytes.length );
+        direct.put( bytes );
+
+        String first = cache.get( direct , 0 , bytes.length , decoder );
+        assertEquals( first , "cl\u00e9" );
+        assertSame( cache.get( bytes , 0 , bytes.length , decoder ) , first );
+        assertSame( cache.get( direct , 0 , bytes.length , decoder ) , first );
+    }
+
+    @Test
+    public void testBoundedAndLongKeysNotCached(){
+        FieldNameCache cache = new FieldNameCache( 2 , 4 );
+        UTF8Decoder decoder = new UTF8Decoder();
+
+        for ( int i = 0; i < 100; i++ ){
+            byte[] key = ( "k" + i ).getBytes( UTF8 );
+            assertEquals( cache.get( key , 0 , key.length , decoder ) , "k" + i );
+        }
+        assertEquals( cache.getMisses() , 100 );
+
+        byte[] longKey = "longer".getBytes( UTF8 );
+        String first = cache.get( longKey , 0 , longKey.length , decoder );
+        assertEquals( first , "longer" );
+        assertNotSame( cache.get( longKey , 0 , longKey.length , decoder ) , first );
+        assertEquals( cache.getHits() + cache.getMisses() , 100 );
+    }
+
+    @Test
+    public void testDecodersShareKeys() throws Exception {
+        FieldNameCache.setDefault( new FieldNameCache() );
+
+        BSONObject doc = new BasicBSONObject( "userId" , 1 ).append( "ts" , 2 ).append( "cl\u00e9" , "value" );
+        byte[] bytes = new BasicBSONEncoder().encode( doc );
+
+        BSONObject a = new BasicBSONDecoder().readObject( bytes );
+        BSONObject b = new NewBSONDecoder().readObject( bytes );
+        LazyBSONObject c = new LazyBSONObject( bytes , new LazyBSONCallback() );
+        KeyCachingLazyBSONObject d = new KeyCachingLazyBSONObject( bytes , new LazyBSONCallback() );
+
+        assertEquals( a , doc );
+        assertEquals( b , doc );
+        assertEquals( c.get( "cl\u00e9" ) , "value" );
+        assertTrue( d.containsField( "ts" ) );
+        assertFalse( d.containsField( "missing" ) );
+        assertEquals( d.get( "userId" ) , 1 );
+
+        String key = a.keySet().iterator().next();
+        assertSame( b.keySet().iterator().next() , key );
+        assertSame( c.keySet().iterator().next() , key );
+        assertTrue( FieldNameCache.getDefault().getHits() > 0 );
+    }
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+}
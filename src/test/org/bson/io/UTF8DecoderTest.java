@@ -0,0 +1,110 @@
+/**
+ *      Copyright (C) 2013 10gen Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.bson.io;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.BasicBSONObject;
+import org.bson.LazyBSONCallback;
+import org.bson.LazyBSONObject;
+import org.bson.NewBSONDecoder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+@SuppressWarnings("deprecation")
+public class UTF8DecoderTest extends Assert {
+
+    @Test
+    public void testDecodesLikeTheJDK(){
+        UTF8Decoder decoder = new UTF8Decoder();
+        for ( String s : new String[]{ "" , "a" , "plain ascii" , "caf\u00e9" , "\u20ac100" , "\ud834\udd1e clef" , "\u65e5\u672c\u8a9e\u30c6\u30ad\u30b9\u30c8" } ){
+            byte[] bytes = ( "xx" + s + "yy" ).getBytes( UTF8 );
+            assertEquals( decoder.decode( bytes , 2 , bytes.length - 4 ) , s );
+        }
+    }
+
+    @Test
+    public void testMalformedInputIsReplacedLikeTheJDK(){
+        UTF8Decoder decoder = new UTF8Decoder();
+        byte[][] malformed = {
+            { 'a' , (byte) 0x80 , 'b' },                 // stray continuation byte
+            { 'a' , (byte) 0xc3 },                       // truncated sequence
+            { (byte) 0xc0 , (byte) 0x80 },               // overlong encoding
+            { (byte) 0xed , (byte) 0xa0 , (byte) 0x80 }  // encoded surrogate
+        };
+        for ( byte[] bytes : malformed )
+            assertEquals( decoder.decode( bytes , 0 , bytes.length ) , new String( bytes , UTF8 ) );
+    }
+
+    @Test
+    public void testDirectBuffer(){
+        byte[] bytes = "key\u0000caf\u00e9\u0000".getBytes( UTF8 );
+        ByteBuffer direct = ByteBuffer.allocateDirect( bytes.length );
+        direct.put( bytes );
+        direct.position( 1 );
+
+        UTF8Decoder decoder = new UTF8Decoder();
+        assertEquals( decoder.decode( direct , 0 , 3 ) , "key" );
+        assertEquals( decoder.decode( direct , 4 , 5 ) , "caf\u00e9" );
+        assertEquals( direct.position() , 1 );
+    }
+
+    @Test
+    public void testEachThreadHasItsOwnDecoder() throws InterruptedException {
+        final UTF8Decoder[] other = new UTF8Decoder[1];
+        Thread t = new Thread(){
+            public void run(){
+                other[0] = UTF8Decoder.forCurrentThread();
+            }
+        };
+        t.start();
+        t.join();
+
+        assertSame( UTF8Decoder.forCurrentThread() , UTF8Decoder.forCurrentThread() );
+        assertNotSame( other[0] , UTF8Decoder.forCurrentThread() );
+    }
+
+    @Test
+    public void testDecoders() throws IOException {
+        StringBuilder big = new StringBuilder();
+        while ( big.length() < 3000 )
+            big.append( "na\u00efve " );
+
+        BSONObject doc = new BasicBSONObject( "ascii" , "value" )
+            .append( "cl\u00e9" , "caf\u00e9" )
+            .append( "big" , big.toString() )
+            .append( "\ud834\udd1e" , "" );
+        byte[] bytes = new BasicBSONEncoder().encode( doc );
+
+        assertEquals( new BasicBSONDecoder().readObject( new ByteArrayInputStream( bytes ) ) , doc );
+        assertEquals( new NewBSONDecoder().readObject( bytes ) , doc );
+
+        LazyBSONObject lazy = new LazyBSONObject( bytes , new LazyBSONCallback() );
+        assertEquals( new ArrayList<String>( lazy.keySet() ) , new ArrayList<String>( doc.keySet() ) );
+        assertEquals( lazy.get( "cl\u00e9" ) , "caf\u00e9" );
+        assertEquals( lazy.get( "big" ) , big.toString() );
+    }
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+}